@@ -22,18 +22,29 @@ package com.here.xyz.connectors;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
 import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.here.xyz.Payload;
 import com.here.xyz.Typed;
 import com.here.xyz.XyzSerializable;
+import com.here.xyz.events.CancelEvent;
 import com.here.xyz.events.Event;
 import com.here.xyz.events.RelocatedEvent;
 import com.here.xyz.models.geojson.implementation.XyzError;
 import com.here.xyz.responses.ErrorResponse;
 import com.here.xyz.responses.NotModifiedResponse;
+import com.here.xyz.responses.SuccessResponse;
+import com.here.xyz.responses.XyzResponse;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +70,10 @@ public abstract class AbstractConnectorHandler implements RequestStreamHandler {
    * The relocation client
    */
   private static final RelocationClient relocationClient = new RelocationClient(System.getenv("S3_BUCKET"));
+  /**
+   * The handlers, which are currently processing an event, by the stream id of the event.
+   */
+  private static final Map<String, AbstractConnectorHandler> runningRequests = new ConcurrentHashMap<>();
   /**
    * The number of the bytes to read from an input stream and preview as a String in the logs.
    */
@@ -88,6 +103,18 @@ public abstract class AbstractConnectorHandler implements RequestStreamHandler {
    * A flag to inform, if the lambda is running in embedded mode.
    */
   private boolean embedded = false;
+  /**
+   * A flag to inform, if the current event was passed as object by {@link #handleEvent(Event, Context)}.
+   */
+  private boolean direct = false;
+  /**
+   * A flag to inform, if the processing of the current event was cancelled.
+   */
+  private volatile boolean cancelled = false;
+  /**
+   * The size of the serialized response of the last event, which was passed as object.
+   */
+  private long responseByteSize;
 
   /**
    * Returns the number of milliseconds that have passed since the request started (for time measuring inside the lambda).
@@ -109,6 +136,23 @@ public abstract class AbstractConnectorHandler implements RequestStreamHandler {
     this.embedded = embedded;
   }
 
+  /**
+   * Returns true, if the current event was passed as object by a caller in the same process. The response is not written into a stream
+   * then, so the connector should return the complete response instead of a {@link StreamingResponse}.
+   */
+  protected boolean isDirect() {
+    return direct;
+  }
+
+  /**
+   * Returns the size of the serialized response of the last event, which was processed by {@link #handleEvent(Event, Context)}.
+   *
+   * @return the size in bytes or 0, if the response was not serialized.
+   */
+  public long getResponseByteSize() {
+    return responseByteSize;
+  }
+
   /**
    * The entry point for processing an event.
    *
@@ -118,10 +162,12 @@ public abstract class AbstractConnectorHandler implements RequestStreamHandler {
    */
   @Override
   public void handleRequest(InputStream input, OutputStream output, Context context) {
+    String runningStreamId = null;
     try {
       start = System.currentTimeMillis();
       Typed dataOut;
       this.context = context;
+      direct = false;
       String ifNoneMatch = null;
       try {
         Event event = readEvent(input);
@@ -132,6 +178,14 @@ public abstract class AbstractConnectorHandler implements RequestStreamHandler {
           handleRequest(relocationClient.processRelocatedEvent((RelocatedEvent) event), output, context);
           return;
         }
+        if (event instanceof CancelEvent) {
+          dataOut = new SuccessResponse().withStatus(cancel(streamId) ? "OK" : "NOT_RUNNING");
+          writeDataOut(output, dataOut, null);
+          return;
+        }
+
+        // The event stays cancellable until the response was written, because streamed responses are read while being written
+        runningStreamId = registerRunning();
         initialize(event);
         dataOut = processEvent(event);
       } catch (ErrorResponseException e) {
@@ -146,9 +200,139 @@ public abstract class AbstractConnectorHandler implements RequestStreamHandler {
       writeDataOut(output, dataOut, ifNoneMatch);
     } catch (Exception e) {
       logger.error("{} - Unexpected exception occurred: {}\n{}", streamId, e.getMessage(), e.getStackTrace());
+    } finally {
+      if (runningStreamId != null) {
+        runningRequests.remove(runningStreamId, this);
+      }
     }
   }
 
+  /**
+   * The entry point for processing an event, which is passed as object by a caller in the same process. The event is not deserialized
+   * and the response is only serialized once to calculate its e-tag and size, without keeping the bytes. The caller must not modify the
+   * event, while it is processed.
+   *
+   * @param event the event
+   * @param context the execution environment context object
+   * @return the response
+   */
+  public Typed handleEvent(Event event, Context context) {
+    start = System.currentTimeMillis();
+    this.context = context;
+    direct = true;
+    streamId = event.getStreamId();
+    responseByteSize = 0;
+    logger.info("{} [{} ms] - Received event of type: {}", streamId, ms(), event.getClass().getSimpleName());
+
+    if (event instanceof CancelEvent) {
+      return new SuccessResponse().withStatus(cancel(streamId) ? "OK" : "NOT_RUNNING");
+    }
+
+    final String runningStreamId = registerRunning();
+    try {
+      initialize(event);
+      Typed dataOut = processEvent(event);
+      // Calculate the same ETag as for the serialized response
+      String hash = null;
+      if (dataOut instanceof StreamingResponse) {
+        // Connectors, which do not support direct calls, might still stream the response, it can only be written as JSON and read back
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        hash = writeHashed(bytes, (StreamingResponse) dataOut);
+        dataOut = XyzSerializable.deserialize(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+      } else if (dataOut instanceof XyzResponse && !(dataOut instanceof ErrorResponse)) {
+        hash = writeHashed(ByteStreams.nullOutputStream(), dataOut);
+      }
+      if (hash != null) {
+        if (hash.equals(event.getIfNoneMatch())) {
+          dataOut = new NotModifiedResponse();
+        }
+        ((XyzResponse) dataOut).setEtag(hash);
+      }
+      return dataOut;
+    } catch (ErrorResponseException e) {
+      return e.getErrorResponse();
+    } catch (Exception e) {
+      logger.error("{} - Unexpected exception occurred: {}\n{}", streamId, e.getMessage(), e.getStackTrace());
+      return new ErrorResponse()
+          .withStreamId(streamId)
+          .withError(XyzError.EXCEPTION)
+          .withErrorMessage("Unexpected exception occurred.");
+    } finally {
+      if (runningStreamId != null) {
+        runningRequests.remove(runningStreamId, this);
+      }
+    }
+  }
+
+  /**
+   * Writes the serialized response into the output stream, calculates its e-tag and stores its size as {@link #getResponseByteSize()}.
+   *
+   * @return the e-tag.
+   */
+  @SuppressWarnings("UnstableApiUsage")
+  private String writeHashed(OutputStream os, Typed dataOut) throws Exception {
+    final CountingOutputStream countingOs = new CountingOutputStream(os);
+    final HashingOutputStream hashingOs = new HashingOutputStream(Hashing.murmur3_128(), countingOs);
+    try (OutputStream bufferedOs = new BufferedOutputStream(hashingOs)) {
+      if (dataOut instanceof StreamingResponse) {
+        ((StreamingResponse) dataOut).writeTo(bufferedOs);
+      } else {
+        XyzSerializable.DEFAULT_MAPPER.get().writeValue(bufferedOs, dataOut);
+      }
+    } finally {
+      if (dataOut instanceof StreamingResponse) {
+        ((StreamingResponse) dataOut).close();
+      }
+    }
+    responseByteSize = countingOs.getCount();
+    return hashingOs.hash().toString();
+  }
+
+  /**
+   * Registers this handler as processing the event with the current stream id, so that the processing can be cancelled.
+   *
+   * @return the stream id, by which this handler was registered, or null, if the event has no stream id.
+   */
+  private String registerRunning() {
+    cancelled = false;
+    if (streamId == null) {
+      return null;
+    }
+    runningRequests.put(streamId, this);
+    return streamId;
+  }
+
+  /**
+   * Cancels the processing of the event with the given stream id, if it is currently processed by a handler of this process.
+   *
+   * @param streamId the stream id of the event.
+   * @return true, if the event was processed and is cancelled now, false otherwise.
+   */
+  public static boolean cancel(String streamId) {
+    final AbstractConnectorHandler handler = streamId != null ? runningRequests.get(streamId) : null;
+    if (handler == null) {
+      return false;
+    }
+    logger.info("{} - Cancelling the processing of the event", streamId);
+    handler.cancel();
+    return true;
+  }
+
+  /**
+   * Cancels the processing of the current event. Sub-classes should override this method to stop the running work, for example the
+   * running queries, but they must call the super method.
+   */
+  protected void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Returns true, if the processing of the current event was cancelled.
+   */
+  protected boolean isCancelled() {
+    return cancelled;
+  }
+
   /**
    * Read the connector event from the provided input stream
    *
@@ -179,6 +363,11 @@ public abstract class AbstractConnectorHandler implements RequestStreamHandler {
    */
   @SuppressWarnings("UnstableApiUsage")
   void writeDataOut(OutputStream output, Typed dataOut, String ifNoneMatch) {
+    if (dataOut instanceof StreamingResponse && ifNoneMatch == null) {
+      writeStreamingDataOut(output, (StreamingResponse) dataOut);
+      return;
+    }
+
     try {
       byte[] bytes = dataOut == null ? null : dataOut.serialize().getBytes();
       if (bytes == null) {
@@ -215,6 +404,118 @@ public abstract class AbstractConnectorHandler implements RequestStreamHandler {
     }
   }
 
+  /**
+   * Write the streaming response to the output stream, while it is produced.
+   *
+   * The ETag is calculated while the bytes pass through. When running embedded, the response is written directly into the output stream.
+   * Otherwise the final size is not known upfront, so the response is always compressed and held back until it is complete, as it might
+   * need to be relocated. Only up to {@link #MAX_RESPONSE_SIZE} bytes are held in memory, larger responses are moved into a temporary
+   * file, from which they are relocated.
+   */
+  private void writeStreamingDataOut(OutputStream output, StreamingResponse dataOut) {
+    logger.info("{} - Writing streaming data out for response with type: {}", streamId, dataOut.getClass().getSimpleName());
+    final CountingOutputStream countingOutput = new CountingOutputStream(output);
+    SpillingOutputStream buffer = null;
+    try {
+      if (embedded) {
+        writeStreamingResponse(countingOutput, dataOut);
+        return;
+      }
+
+      buffer = new SpillingOutputStream(MAX_RESPONSE_SIZE);
+      try (OutputStream gzipOs = Payload.gzip(buffer)) {
+        writeStreamingResponse(gzipOs, dataOut);
+      }
+
+      // Relocate
+      if (buffer.isSpilled()) {
+        try (InputStream is = buffer.getInputStream()) {
+          countingOutput.write(relocationClient.relocate(streamId, is, buffer.size()));
+        }
+      } else {
+        buffer.writeTo(countingOutput);
+      }
+    } catch (Exception e) {
+      final ErrorResponse errorResponse;
+      if (e instanceof ErrorResponseException) {
+        errorResponse = ((ErrorResponseException) e).getErrorResponse();
+      } else {
+        logger.error("{} - Unexpected exception occurred: {}\n{}", streamId, e.getMessage(), e.getStackTrace());
+        errorResponse = new ErrorResponse()
+            .withStreamId(streamId)
+            .withError(XyzError.EXCEPTION)
+            .withErrorMessage("Unexpected exception occurred.");
+      }
+      // The error can only be reported, if no part of the response was sent already
+      if (countingOutput.getCount() == 0) {
+        writeDataOut(output, errorResponse, null);
+      } else {
+        logger.error("{} - Unable to report the error, the response was partially written already: {}", streamId,
+            errorResponse.getErrorMessage());
+      }
+    } finally {
+      try {
+        dataOut.close();
+      } catch (Exception e) {
+        logger.warn("{} - Unable to close the streaming response: {}", streamId, e.getMessage());
+      }
+      if (buffer != null) {
+        buffer.dispose();
+      }
+    }
+  }
+
+  /**
+   * Writes the streaming response into the output stream and injects the ETag, which is calculated while the bytes pass through.
+   */
+  @SuppressWarnings("UnstableApiUsage")
+  private void writeStreamingResponse(OutputStream os, StreamingResponse dataOut) throws Exception {
+    final HashingOutputStream hashingOs = new HashingOutputStream(Hashing.murmur3_128(), new LastByteHoldingOutputStream(os));
+    try (OutputStream bufferedOs = new BufferedOutputStream(hashingOs)) {
+      dataOut.writeTo(bufferedOs);
+    }
+    os.write(ETAG_STRING.replace("_", hashingOs.hash().toString()).getBytes());
+    os.flush();
+  }
+
+  /**
+   * An output stream, which holds back the last written byte, so that the closing bracket of a JSON object is not written and the e-tag can
+   * be injected. Closing this stream does not close the underlying stream.
+   */
+  private static class LastByteHoldingOutputStream extends FilterOutputStream {
+
+    private int last = -1;
+
+    LastByteHoldingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (last != -1) {
+        out.write(last);
+      }
+      last = b & 0xFF;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len <= 0) {
+        return;
+      }
+      if (last != -1) {
+        out.write(last);
+      }
+      out.write(b, off, len - 1);
+      last = b[off + len - 1] & 0xFF;
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+
   /**
    * The event processor.
    *
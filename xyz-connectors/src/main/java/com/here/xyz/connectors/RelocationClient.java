@@ -66,7 +66,19 @@ public class RelocationClient {
     if (!Payload.isCompressed(is)) {
       bytes = Payload.compress(bytes);
     }
+    return relocate(streamId, new ByteArrayInputStream(bytes), bytes.length);
+  }
 
+  /**
+   * Relocates a compressed request or response, which is read from the input stream, without holding it in memory.
+   *
+   * @param streamId The streamId of the original request or response
+   * @param compressed the gzip compressed bytes
+   * @param length the number of the compressed bytes
+   * @return the serialized RelocatedEvent as bytes
+   * @throws Exception if any error occurred.
+   */
+  public byte[] relocate(String streamId, InputStream compressed, long length) throws Exception {
     String name = UUID.randomUUID().toString();
     RelocatedEvent event = new RelocatedEvent();
     event.setStreamId(streamId);
@@ -76,7 +88,7 @@ public class RelocationClient {
     event.setURI("s3://" + bucket + "/" + S3_PATH + name);
 
     logger.info("{} - Relocating data to: {}", streamId, event.getURI());
-    uploadToS3(new AmazonS3URI(event.getURI()), bytes);
+    uploadToS3(new AmazonS3URI(event.getURI()), compressed, length);
 
     return event.toString().getBytes();
   }
@@ -116,9 +128,9 @@ public class RelocationClient {
   /**
    * Uploads the data, which should be relocated to S3.
    */
-  private void uploadToS3(AmazonS3URI amazonS3URI, byte[] content) {
+  private void uploadToS3(AmazonS3URI amazonS3URI, InputStream content, long length) {
     ObjectMetadata metaData = new ObjectMetadata();
-    metaData.setContentLength(content.length);
-    getS3client().putObject(amazonS3URI.getBucket(), amazonS3URI.getKey(), new ByteArrayInputStream(content), metaData);
+    metaData.setContentLength(length);
+    getS3client().putObject(amazonS3URI.getBucket(), amazonS3URI.getKey(), content, metaData);
   }
 }
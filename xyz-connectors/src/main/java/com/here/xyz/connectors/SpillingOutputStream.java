@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.connectors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An output stream, which keeps the written bytes in memory up to the given threshold. When more bytes are written, all bytes are moved
+ * into a temporary file, so that the memory usage stays bounded. Closing this stream keeps the written bytes, they are removed by
+ * {@link #dispose()}.
+ */
+class SpillingOutputStream extends OutputStream {
+
+  private final int threshold;
+  private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+  private File file;
+  private OutputStream fileOs;
+  private long size;
+
+  SpillingOutputStream(int threshold) {
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    prepare(1).write(b);
+    size++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    prepare(len).write(b, off, len);
+    size += len;
+  }
+
+  private OutputStream prepare(int len) throws IOException {
+    if (file == null && size + len > threshold) {
+      file = File.createTempFile("xyz-response-", ".tmp");
+      fileOs = new BufferedOutputStream(new FileOutputStream(file));
+      memory.writeTo(fileOs);
+      memory = null;
+    }
+    return file == null ? memory : fileOs;
+  }
+
+  /**
+   * Returns true, if the written bytes exceeded the threshold and were moved into a temporary file.
+   */
+  boolean isSpilled() {
+    return file != null;
+  }
+
+  /**
+   * Returns the number of the written bytes.
+   */
+  long size() {
+    return size;
+  }
+
+  /**
+   * Returns the written bytes, the stream must be closed before.
+   */
+  InputStream getInputStream() throws IOException {
+    return file == null ? new ByteArrayInputStream(memory.toByteArray()) : new BufferedInputStream(new FileInputStream(file));
+  }
+
+  /**
+   * Writes the bytes, which are kept in memory, into the given output stream.
+   *
+   * @throws IllegalStateException if the bytes were moved into a temporary file.
+   */
+  void writeTo(OutputStream os) throws IOException {
+    if (file != null) {
+      throw new IllegalStateException("The bytes were moved into a temporary file.");
+    }
+    memory.writeTo(os);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (fileOs != null) {
+      fileOs.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (fileOs != null) {
+      fileOs.close();
+    }
+  }
+
+  /**
+   * Closes the stream and removes the written bytes.
+   */
+  void dispose() {
+    try {
+      close();
+    } catch (IOException ignored) {
+    }
+    if (file != null) {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+    memory = null;
+  }
+}
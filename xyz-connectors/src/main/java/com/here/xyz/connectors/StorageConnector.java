@@ -30,6 +30,7 @@ import com.here.xyz.events.GetFeaturesByIdEvent;
 import com.here.xyz.events.GetFeaturesByTileEvent;
 import com.here.xyz.events.GetStatisticsEvent;
 import com.here.xyz.events.HealthCheckEvent;
+import com.here.xyz.events.IndexMaintenanceEvent;
 import com.here.xyz.events.IterateFeaturesEvent;
 import com.here.xyz.events.LoadFeaturesEvent;
 import com.here.xyz.events.ModifyFeaturesEvent;
@@ -93,6 +94,9 @@ public abstract class StorageConnector extends AbstractConnectorHandler {
     if (event instanceof HealthCheckEvent) {
       return processHealthCheckEvent((HealthCheckEvent) event);
     }
+    if (event instanceof IndexMaintenanceEvent) {
+      return processIndexMaintenanceEvent((IndexMaintenanceEvent) event);
+    }
     if (event instanceof GetFeaturesByIdEvent) {
       return processGetFeaturesByIdEvent((GetFeaturesByIdEvent) event);
     }
@@ -127,6 +131,20 @@ public abstract class StorageConnector extends AbstractConnectorHandler {
     return new HealthStatus();
   }
 
+  /**
+   * Processes an IndexMaintenanceEvent event.
+   *
+   * This type of events is sent periodically by a scheduler, if the storage supports it, so that the maintenance of the indices and
+   * statistics can be done outside of the processing of the requests.
+   */
+  @SuppressWarnings("WeakerAccess")
+  protected XyzResponse processIndexMaintenanceEvent(IndexMaintenanceEvent event) throws Exception {
+    return new ErrorResponse()
+        .withStreamId(streamId)
+        .withError(XyzError.NOT_IMPLEMENTED)
+        .withErrorMessage("The index maintenance is not supported by this storage connector.");
+  }
+
   /**
    * Processes a GetStatistics event.
    */
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.connectors;
+
+import com.here.xyz.responses.XyzResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response, which is not serialized as a whole, but written directly into the output stream of the connector. This allows a connector
+ * to write large results while reading them, without keeping the complete serialized response in memory.
+ *
+ * The response is written only once, because the implementation may read the data from a resource, which is consumed while writing.
+ * Such a resource should be opened, before the response is returned, so that errors are reported as usual, and released by
+ * {@link #close()}, which is called after the response was written or if it is not written at all.
+ */
+public abstract class StreamingResponse extends XyzResponse<StreamingResponse> implements AutoCloseable {
+
+  /**
+   * Writes the response as serialized JSON object into the given output stream.
+   *
+   * @param os the output stream.
+   * @throws Exception if any error occurred.
+   */
+  public abstract void writeTo(OutputStream os) throws Exception;
+
+  /**
+   * Releases the resources of the response.
+   *
+   * @throws IOException if any error occurred.
+   */
+  @Override
+  public void close() throws IOException {
+  }
+
+  /**
+   * Writes the response into a byte array.
+   *
+   * @return the serialized JSON object.
+   * @throws Exception if any error occurred.
+   */
+  public byte[] toByteArray() throws Exception {
+    try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+      writeTo(os);
+      return os.toByteArray();
+    } finally {
+      close();
+    }
+  }
+
+  @Override
+  public String serialize() {
+    try {
+      return new String(toByteArray(), StandardCharsets.UTF_8);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
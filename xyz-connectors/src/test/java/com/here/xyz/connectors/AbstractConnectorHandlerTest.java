@@ -19,10 +19,14 @@
 
 package com.here.xyz.connectors;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.io.ByteStreams;
 import com.here.xyz.Payload;
 import com.here.xyz.Typed;
 import com.here.xyz.XyzSerializable;
@@ -34,16 +38,21 @@ import com.here.xyz.models.geojson.implementation.Feature;
 import com.here.xyz.models.geojson.implementation.FeatureCollection;
 import com.here.xyz.models.geojson.implementation.Point;
 import com.here.xyz.models.geojson.implementation.Properties;
+import com.here.xyz.models.geojson.implementation.XyzError;
+import com.here.xyz.responses.ErrorResponse;
+import com.here.xyz.responses.NotModifiedResponse;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -130,6 +139,141 @@ public class AbstractConnectorHandlerTest {
     FeatureCollection result = XyzSerializable.deserialize(stringBuilder.toString());
   }
 
+  @Test
+  public void testWriteStreamingDataOut() throws IOException {
+    TestStorageConnector testStorageConnector = new TestStorageConnector();
+    // The rows of a query, which are passed through as raw JSON by the buffered and by the streamed result handler of a connector
+    final List<String> rows = new ArrayList<>();
+    for (Feature feature : generateRandomFeatures(417, 100).getFeatures()) {
+      rows.add(feature.serialize());
+    }
+
+    FeatureCollection fc = new FeatureCollection();
+    fc._setFeatures("[" + String.join(",", rows) + "]");
+    ByteArrayOutputStream bufferedOs = new ByteArrayOutputStream();
+    testStorageConnector.writeDataOut(bufferedOs, fc, null);
+    FeatureCollection expected = XyzSerializable.deserialize(Payload.prepareInputStream(new ByteArrayInputStream(bufferedOs.toByteArray())));
+
+    // Write the rows with the hand-written framing of a streamed feature collection
+    ByteArrayOutputStream streamingOs = new ByteArrayOutputStream();
+    testStorageConnector.writeDataOut(streamingOs, new StreamingResponse() {
+      @Override
+      public void writeTo(OutputStream os) throws IOException {
+        os.write("{\"type\":\"FeatureCollection\",\"features\":[".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < rows.size(); i++) {
+          os.write(((i > 0 ? "," : "") + rows.get(i)).getBytes(StandardCharsets.UTF_8));
+        }
+        os.write("]}".getBytes(StandardCharsets.UTF_8));
+      }
+    }, null);
+    FeatureCollection result = XyzSerializable.deserialize(Payload.prepareInputStream(new ByteArrayInputStream(streamingOs.toByteArray())));
+
+    assertEquals(expected.getEtag(), result.getEtag());
+    assertEquals(rows.size(), result.getFeatures().size());
+  }
+
+  @Test
+  public void testWriteStreamingDataOutError() throws IOException {
+    TestStorageConnector testStorageConnector = new TestStorageConnector();
+    final AtomicBoolean closed = new AtomicBoolean();
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    testStorageConnector.writeDataOut(os, new StreamingResponse() {
+      @Override
+      public void writeTo(OutputStream os) throws Exception {
+        os.write("{\"type\":\"FeatureCollection\",\"features\":[".getBytes(StandardCharsets.UTF_8));
+        throw new ErrorResponseException("STREAM_ID_EXAMPLE", XyzError.TIMEOUT, "The request timed out.");
+      }
+
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    }, null);
+
+    // The partially written response is replaced by the error
+    ErrorResponse result = XyzSerializable.deserialize(new String(os.toByteArray(), StandardCharsets.UTF_8));
+    assertEquals(XyzError.TIMEOUT, result.getError());
+    assertTrue(closed.get());
+  }
+
+  @Test
+  public void testSpillingOutputStream() throws IOException {
+    final byte[] bytes = RandomStringUtils.randomAlphanumeric(100).getBytes();
+
+    SpillingOutputStream small = new SpillingOutputStream(100);
+    small.write(bytes);
+    small.close();
+    assertFalse(small.isSpilled());
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    small.writeTo(os);
+    assertArrayEquals(bytes, os.toByteArray());
+    small.dispose();
+
+    SpillingOutputStream large = new SpillingOutputStream(100);
+    large.write(bytes, 0, 60);
+    large.write(bytes, 60, 40);
+    large.write('!');
+    large.close();
+    assertTrue(large.isSpilled());
+    assertEquals(101, large.size());
+    try (InputStream is = large.getInputStream()) {
+      assertEquals(new String(bytes) + "!", new String(ByteStreams.toByteArray(is), StandardCharsets.UTF_8));
+    }
+    large.dispose();
+  }
+
+  @Test
+  public void testHandleEvent() throws Exception {
+    final String serialized = generateRandomFeatures(10, 5).serialize();
+    final AtomicBoolean direct = new AtomicBoolean();
+    final AtomicBoolean streaming = new AtomicBoolean();
+    final AbstractConnectorHandler testStorageConnector = new AbstractConnectorHandler() {
+      @Override
+      public Typed processEvent(Event event) throws Exception {
+        direct.set(isDirect());
+        if (streaming.get()) {
+          return new StreamingResponse() {
+            @Override
+            public void writeTo(OutputStream os) throws IOException {
+              os.write(serialized.getBytes(StandardCharsets.UTF_8));
+            }
+          };
+        }
+        return XyzSerializable.deserialize(serialized);
+      }
+
+      @Override
+      protected void initialize(Event event) {
+      }
+    };
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    testStorageConnector.handleRequest(new ByteArrayInputStream(HealthCheckEventString.getBytes()), os, null);
+    FeatureCollection expected = XyzSerializable.deserialize(Payload.prepareInputStream(new ByteArrayInputStream(os.toByteArray())));
+    assertFalse(direct.get());
+
+    // The response object has the same ETag and size as the serialized response
+    final HealthCheckEvent event = new HealthCheckEvent().withStreamId("STREAM_ID_EXAMPLE");
+    FeatureCollection result = (FeatureCollection) testStorageConnector.handleEvent(event, null);
+    assertTrue(direct.get());
+    assertEquals(expected.getEtag(), result.getEtag());
+    assertEquals(expected.getFeatures().size(), result.getFeatures().size());
+    assertEquals(serialized.getBytes(StandardCharsets.UTF_8).length, testStorageConnector.getResponseByteSize());
+
+    // A streamed response is read back with the same ETag
+    streaming.set(true);
+    result = (FeatureCollection) testStorageConnector.handleEvent(event, null);
+    assertEquals(expected.getEtag(), result.getEtag());
+    assertEquals(expected.getFeatures().size(), result.getFeatures().size());
+    assertEquals(serialized.getBytes(StandardCharsets.UTF_8).length, testStorageConnector.getResponseByteSize());
+    streaming.set(false);
+
+    // A matching ETag results in a "Not Modified" response
+    event.setIfNoneMatch(expected.getEtag());
+    assertTrue(testStorageConnector.handleEvent(event, null) instanceof NotModifiedResponse);
+  }
+
   //This is a test for the relocation client. To run it, an S3 bucket and valid credentials are required.
   //@Test
   public void testRelocatedEvent() throws Exception {
@@ -288,6 +288,7 @@ public class Service implements Logging {
     public String HOST_NAME;
 
     public int GLOBAL_MAX_QUEUE_SIZE; //MB
+    public int REMOTE_FUNCTION_MIN_QUEUE_SIZE; //MB
     public int REMOTE_FUNCTION_REQUEST_TIMEOUT; //seconds
 
     public String FS_WEB_ROOT;
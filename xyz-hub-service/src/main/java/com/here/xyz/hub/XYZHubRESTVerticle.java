@@ -20,6 +20,7 @@
 package com.here.xyz.hub;
 
 import static com.here.xyz.hub.rest.Api.HeaderValues.APPLICATION_JSON;
+import static com.here.xyz.hub.rest.Api.HeaderValues.REQUEST_PRIORITY;
 import static com.here.xyz.hub.rest.Api.HeaderValues.STREAM_ID;
 import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
@@ -96,7 +97,7 @@ public class XYZHubRESTVerticle extends AbstractVerticle implements Logging {
    * The headers the client is allowed to send.
    */
   private final List<CharSequence> allowHeaders = Arrays.asList(
-      AUTHORIZATION, CONTENT_TYPE, USER_AGENT, IF_MODIFIED_SINCE, IF_NONE_MATCH, CACHE_CONTROL, STREAM_ID
+      AUTHORIZATION, CONTENT_TYPE, USER_AGENT, IF_MODIFIED_SINCE, IF_NONE_MATCH, CACHE_CONTROL, STREAM_ID, REQUEST_PRIORITY
   );
 
   private FeatureApi featureApi;
@@ -20,12 +20,14 @@
 package com.here.xyz.hub.connectors;
 
 import com.here.xyz.events.HealthCheckEvent;
+import com.here.xyz.events.IndexMaintenanceEvent;
 import com.here.xyz.hub.Service;
 import com.here.xyz.hub.connectors.models.Connector;
 import com.here.xyz.hub.util.logging.Logging;
 import io.vertx.core.AsyncResult;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -42,7 +44,17 @@ public class BurstAndUpdateThread extends Thread implements Logging {
      */
     private static final long WARM_UP_INTERVAL_MILLISECONDS = TimeUnit.MINUTES.toMillis(2);
     private static final long CONNECTOR_UPDATE_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * The interval, in which the index maintenance events are sent to the connectors, which support them. The same interval is sent as
+     * the minimal interval of the event, so that the storage skips the maintenance, if another service instance triggered it recently.
+     */
+    private static final long INDEX_MAINTENANCE_INTERVAL_MILLISECONDS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * The maximal amount of spaces, for which the connector creates indices by one index maintenance run.
+     */
+    private static final int INDEX_MAINTENANCE_MAX_SPACES = 10;
     private static BurstAndUpdateThread instance;
+    private final Map<String, Long> lastIndexMaintenance = new HashMap<>();
 
     private BurstAndUpdateThread() throws NullPointerException {
         super(name);
@@ -120,6 +132,37 @@ public class BurstAndUpdateThread extends Thread implements Logging {
                     logger().error("Unexpected exception while trying to send lambda warm-up requests", e);
                 }
             }
+
+            if (connector.capabilities.indexMaintenance) {
+                sendIndexMaintenance(client);
+            }
+        }
+    }
+
+    private void sendIndexMaintenance(RpcClient client) {
+        final String connectorId = client.connector.id;
+        final long now = System.currentTimeMillis();
+        final Long lastRun = lastIndexMaintenance.get(connectorId);
+        if (lastRun != null && now - lastRun < INDEX_MAINTENANCE_INTERVAL_MILLISECONDS) {
+            return;
+        }
+        lastIndexMaintenance.put(connectorId, now);
+
+        try {
+            final IndexMaintenanceEvent indexMaintenance = new IndexMaintenanceEvent()
+                .withMaxSpaces(INDEX_MAINTENANCE_MAX_SPACES)
+                .withMinInterval(INDEX_MAINTENANCE_INTERVAL_MILLISECONDS);
+            // Just generate a stream ID here as the stream actually "begins" here
+            final String pseudoStreamId = UUID.randomUUID().toString();
+            indexMaintenance.setStreamId(pseudoStreamId);
+            logger().info("Send index maintenance request to connector '{}'", connectorId);
+            client.execute(MarkerFactory.getMarker(pseudoStreamId), indexMaintenance, r -> {
+                if (r.failed()) {
+                    logger().warn("Index maintenance of connector '{}' failed", connectorId, r.cause());
+                }
+            });
+        } catch (Exception e) {
+            logger().error("Unexpected exception while trying to send the index maintenance request", e);
         }
     }
 
@@ -20,8 +20,14 @@
 package com.here.xyz.hub.connectors;
 
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.here.xyz.Typed;
 import com.here.xyz.connectors.AbstractConnectorHandler;
 import com.here.xyz.connectors.SimulatedContext;
+import com.here.xyz.events.Event;
+import com.here.xyz.events.GetFeaturesByGeometryEvent;
+import com.here.xyz.events.GetFeaturesByIdEvent;
+import com.here.xyz.events.LoadFeaturesEvent;
+import com.here.xyz.hub.Service;
 import com.here.xyz.hub.connectors.models.Connector;
 import com.here.xyz.hub.util.logging.Logging;
 import io.vertx.core.AsyncResult;
@@ -31,10 +37,13 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Marker;
 
 public class EmbeddedFunctionClient extends QueueingRemoteFunctionClient implements Logging {
@@ -44,6 +53,20 @@ public class EmbeddedFunctionClient extends QueueingRemoteFunctionClient impleme
    */
   private ExecutorService embeddedExecutor;
 
+  /**
+   * The idle connector instances, which are reused for the following calls, just like warm instances of a lambda function.
+   */
+  private final Queue<RequestStreamHandler> handlers = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The estimated size of the fixed part of an event, which is passed directly as object, for the accounting in the queue.
+   */
+  private static final long DIRECT_CALL_BYTE_SIZE = 1024;
+  /**
+   * The estimated size of one coordinate of a geometry, which is passed directly as object, for the accounting in the queue.
+   */
+  private static final long DIRECT_CALL_COORDINATE_BYTE_SIZE = 24;
+
   EmbeddedFunctionClient(Connector connectorConfig) {
     super(connectorConfig);
     if (!(connectorConfig.remoteFunction instanceof Connector.RemoteFunctionConfig.Embedded)) {
@@ -55,22 +78,24 @@ public class EmbeddedFunctionClient extends QueueingRemoteFunctionClient impleme
         new SynchronousQueue<>());
   }
 
+  @Override
+  protected void updateStorageConfig() {
+    super.updateStorageConfig();
+    //The class of the connector might have changed
+    handlers.clear();
+  }
+
   protected void invoke(Marker marker, byte[] bytes, Handler<AsyncResult<byte[]>> callback) {
-    logger().info(marker, "Invoke embedded lambda '{}' for event: {}", connectorConfig.remoteFunction.id,
-        new String(bytes, StandardCharsets.UTF_8));
+    logger().info(marker, "Invoke embedded lambda '{}' Event size is: {}", connectorConfig.remoteFunction.id, bytes.length);
+    logger().debug(marker, "Event: {}", new String(bytes, StandardCharsets.UTF_8));
     embeddedExecutor.execute(() -> {
       String className = null;
+      RequestStreamHandler reqHandler = null;
       try {
         className = ((Connector.RemoteFunctionConfig.Embedded) connectorConfig.remoteFunction).className;
-        final Class<?> mainClass = Class.forName(className);
-        final RequestStreamHandler reqHandler = (RequestStreamHandler) mainClass.newInstance();
-        if (reqHandler instanceof AbstractConnectorHandler) {
-          ((AbstractConnectorHandler) reqHandler).setEmbedded(true);
-        }
+        reqHandler = borrowHandler(className);
         final ByteArrayOutputStream output = new ByteArrayOutputStream();
-        reqHandler.handleRequest(new ByteArrayInputStream(bytes), output,
-            new EmbeddedContext(marker, connectorConfig.remoteFunction.id,
-                ((Connector.RemoteFunctionConfig.Embedded) connectorConfig.remoteFunction).env));
+        reqHandler.handleRequest(new ByteArrayInputStream(bytes), output, createContext(marker));
         logger().info(marker, "Handling response of embedded lambda call to '{}'.", connectorConfig.remoteFunction.id);
         byte[] responseBytes = output.toByteArray();
         checkResponseSize(responseBytes);
@@ -87,10 +112,119 @@ public class EmbeddedFunctionClient extends QueueingRemoteFunctionClient impleme
             .error(marker, "Exception occurred, while trying to execute embedded lambda with id '{}' {}", connectorConfig.remoteFunction.id,
                 e);
         callback.handle(Future.failedFuture(e));
+      } finally {
+        returnHandler(reqHandler);
       }
     });
   }
 
+  /**
+   * Returns true, if the embedded connector is able to process event objects directly.
+   */
+  boolean supportsDirectInvocation() {
+    try {
+      final String className = ((Connector.RemoteFunctionConfig.Embedded) connectorConfig.remoteFunction).className;
+      return AbstractConnectorHandler.class.isAssignableFrom(Class.forName(className));
+    } catch (ClassNotFoundException | NoClassDefFoundError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Passes the event object directly to a pooled connector instance and returns the response object, so that neither the event nor the
+   * response are serialized and parsed again. The event must not be modified by the caller or the connector, while it is processed.
+   *
+   * @param marker the log marker
+   * @param event the event
+   * @param priority the priority class of the request
+   * @param callback the callback, which receives the response
+   */
+  void invokeDirectly(Marker marker, Event event, RequestPriority priority, Handler<AsyncResult<Typed>> callback) {
+    logger().info(marker, "Invoke embedded lambda '{}' directly for event of type: {}", connectorConfig.remoteFunction.id,
+        event.getClass().getSimpleName());
+    final AtomicReference<Typed> response = new AtomicReference<>();
+    submit(marker, estimateByteSize(event), priority, cb -> embeddedExecutor.execute(() -> {
+      RequestStreamHandler reqHandler = null;
+      try {
+        reqHandler = borrowHandler(((Connector.RemoteFunctionConfig.Embedded) connectorConfig.remoteFunction).className);
+        response.set(((AbstractConnectorHandler) reqHandler).handleEvent(event, createContext(marker)));
+        checkResponseSize(((AbstractConnectorHandler) reqHandler).getResponseByteSize(), false);
+        cb.handle(Future.succeededFuture());
+      } catch (Throwable e) {
+        logger()
+            .error(marker, "Exception occurred, while trying to execute embedded lambda with id '{}' {}", connectorConfig.remoteFunction.id,
+                e);
+        cb.handle(Future.failedFuture(e));
+      } finally {
+        returnHandler(reqHandler);
+      }
+    }), r -> {
+      if (r.failed()) {
+        callback.handle(Future.failedFuture(r.cause()));
+        return;
+      }
+      callback.handle(Future.succeededFuture(response.get()));
+    });
+  }
+
+  /**
+   * Estimates the size, which the event would have, if it was serialized. Besides the fixed part, the size depends on the lists of ids and
+   * the geometry of the event.
+   *
+   * @param event the event
+   * @return the estimated size in bytes
+   */
+  static long estimateByteSize(Event event) {
+    long byteSize = DIRECT_CALL_BYTE_SIZE;
+    if (event instanceof GetFeaturesByIdEvent && ((GetFeaturesByIdEvent) event).getIds() != null) {
+      for (String id : ((GetFeaturesByIdEvent) event).getIds()) {
+        byteSize += id.length() + 3;
+      }
+    } else if (event instanceof LoadFeaturesEvent && ((LoadFeaturesEvent) event).getIdsMap() != null) {
+      for (Map.Entry<String, String> entry : ((LoadFeaturesEvent) event).getIdsMap().entrySet()) {
+        byteSize += entry.getKey().length() + (entry.getValue() == null ? 4 : entry.getValue().length()) + 6;
+      }
+    } else if (event instanceof GetFeaturesByGeometryEvent && ((GetFeaturesByGeometryEvent) event).getGeometry() != null) {
+      byteSize += ((GetFeaturesByGeometryEvent) event).getGeometry().getJTSGeometry().getNumPoints() * DIRECT_CALL_COORDINATE_BYTE_SIZE;
+    }
+    return byteSize;
+  }
+
+  /**
+   * Takes an idle connector instance from the pool or creates a new one. Each instance processes only one event at a time.
+   */
+  private RequestStreamHandler borrowHandler(String className) throws Exception {
+    final RequestStreamHandler pooled = handlers.poll();
+    if (pooled != null && pooled.getClass().getName().equals(className)) {
+      return pooled;
+    }
+    final RequestStreamHandler reqHandler = (RequestStreamHandler) Class.forName(className).newInstance();
+    if (reqHandler instanceof AbstractConnectorHandler) {
+      ((AbstractConnectorHandler) reqHandler).setEmbedded(true);
+    }
+    return reqHandler;
+  }
+
+  private void returnHandler(RequestStreamHandler reqHandler) {
+    if (reqHandler != null) {
+      handlers.add(reqHandler);
+    }
+  }
+
+  private EmbeddedContext createContext(Marker marker) {
+    return new EmbeddedContext(marker, connectorConfig.remoteFunction.id,
+        ((Connector.RemoteFunctionConfig.Embedded) connectorConfig.remoteFunction).env);
+  }
+
+  @Override
+  protected void cancelInvocation(Marker marker) {
+    //Cancelling the statements may block, so it is not done on the event loop
+    Service.vertx.executeBlocking(future -> {
+      AbstractConnectorHandler.cancel(marker.getName());
+      future.complete();
+    }, false, null);
+  }
+
   /**
    * Context used by embedded lambda connectors.
    */
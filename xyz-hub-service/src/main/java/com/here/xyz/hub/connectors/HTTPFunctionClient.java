@@ -21,6 +21,7 @@ package com.here.xyz.hub.connectors;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.GATEWAY_TIMEOUT;
 
+import com.here.xyz.events.CancelEvent;
 import com.here.xyz.hub.Service;
 import com.here.xyz.hub.connectors.models.Connector;
 import com.here.xyz.hub.connectors.models.Connector.RemoteFunctionConfig.HTTP;
@@ -87,4 +88,17 @@ public class HTTPFunctionClient extends QueueingRemoteFunctionClient implements
           }
         });
   }
+
+  @Override
+  protected void cancelInvocation(Marker marker) {
+    logger().debug(marker, "Cancel the invocation of http remote function '{}'", connectorConfig.remoteFunction.id);
+    webClient.post(url)
+        .timeout(REQUEST_TIMEOUT)
+        .sendBuffer(Buffer.buffer(new CancelEvent().withStreamId(marker.getName()).serialize()), ar -> {
+          if (ar.failed()) {
+            logger().warn(marker, "Unable to cancel the invocation of http remote function '{}'", connectorConfig.remoteFunction.id,
+                ar.cause());
+          }
+        });
+  }
 }
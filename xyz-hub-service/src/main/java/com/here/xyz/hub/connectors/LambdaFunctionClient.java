@@ -21,6 +21,7 @@ package com.here.xyz.hub.connectors;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_GATEWAY;
 import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpResponseStatus.TOO_MANY_REQUESTS;
 
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentialsProvider;
@@ -139,7 +140,14 @@ public class LambdaFunctionClient extends QueueingRemoteFunctionClient implement
 
   private HttpException getWHttpException(Marker marker, Throwable e) {
     logger().info(marker, "Unexpected exception while contacting lambda provider", e);
+    return toHttpException(e);
+  }
 
+  /**
+   * Maps the exception of a lambda invocation to the according HTTP exception. A throttled invocation is mapped to
+   * TOO_MANY_REQUESTS, so that it counts as overload of the remote function.
+   */
+  static HttpException toHttpException(Throwable e) {
     if (e instanceof HttpException) {
       return (HttpException) e;
     }
@@ -148,6 +156,9 @@ public class LambdaFunctionClient extends QueueingRemoteFunctionClient implement
       if (le.getStatusCode() == 413) {
         return new HttpException(REQUEST_ENTITY_TOO_LARGE, "The compressed request must be smaller than 6291456 bytes.");
       }
+      if (le.getStatusCode() == 429) {
+        return new HttpException(TOO_MANY_REQUESTS, "The remote function is throttled.");
+      }
     }
 
     return new HttpException(BAD_GATEWAY, "Unable to parse the response of the connector.");
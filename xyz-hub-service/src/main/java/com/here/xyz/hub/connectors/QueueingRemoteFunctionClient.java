@@ -19,21 +19,30 @@
 
 package com.here.xyz.hub.connectors;
 
+import static io.netty.handler.codec.http.HttpResponseStatus.GATEWAY_TIMEOUT;
 import static io.netty.handler.codec.http.HttpResponseStatus.TOO_MANY_REQUESTS;
 
+import com.here.xyz.Typed;
 import com.here.xyz.hub.Service;
 import com.here.xyz.hub.connectors.models.Connector;
 import com.here.xyz.hub.rest.HttpException;
 import com.here.xyz.hub.util.ByteSizeAware;
-import com.here.xyz.hub.util.LimitedQueue;
+import com.here.xyz.hub.util.WeightedLimitedQueue;
 import com.here.xyz.hub.util.logging.Logging;
+import com.here.xyz.models.geojson.implementation.XyzError;
+import com.here.xyz.responses.ErrorResponse;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
@@ -45,6 +54,11 @@ public abstract class QueueingRemoteFunctionClient extends RemoteFunctionClient
    * The global maximum byte size that is available for allocation by all of the queues.
    */
   public static final long GLOBAL_MAX_QUEUE_BYTE_SIZE = (long) Service.configuration.GLOBAL_MAX_QUEUE_SIZE * 1024 * 1024;
+  /**
+   * The byte size of the queue, which each client keeps when the queue memory is rebalanced, even if it's idle. It's limited by the
+   * client's static share of the {@link #GLOBAL_MAX_QUEUE_BYTE_SIZE}, so the floors of all clients never exceed the global maximum.
+   */
+  public static final long MIN_QUEUE_BYTE_SIZE = (long) Service.configuration.REMOTE_FUNCTION_MIN_QUEUE_SIZE * 1024 * 1024;
 
   public static final long REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(Service.configuration.REMOTE_FUNCTION_REQUEST_TIMEOUT);
   /**
@@ -52,37 +66,81 @@ public abstract class QueueingRemoteFunctionClient extends RemoteFunctionClient
    */
   public static final float CONNECTION_SLOTS_RELEVANCE = 0.5f;
   public static final float REQUEST_RELEVANCE_FACTOR = 100;
+  /**
+   * The relevance of a single request for the sliding average of the recent request execution times.
+   */
+  private static final double RECENT_REQUEST_RELEVANCE = 0.1d;
+  /**
+   * The tolerated ratio between the recent and the long-term average request execution time. Above it, the remote function is considered
+   * to be overloaded and the concurrency limit gets decreased.
+   */
+  private static final double LATENCY_TOLERANCE = 1.5d;
+  /**
+   * The factor, by which the concurrency limit gets decreased, when the remote function is overloaded.
+   */
+  private static final double CONCURRENCY_DECREASE_FACTOR = 0.9d;
   private static final int SIZE_ADJUSTMENT_INTERVAL = 3000; //3 seconds
-  private static Set<QueueingRemoteFunctionClient> clientInstances = new HashSet<>();
+  private static Set<QueueingRemoteFunctionClient> clientInstances = ConcurrentHashMap.newKeySet();
   private static LongAdder globalMinConnectionSum = new LongAdder();
-  private static AtomicLong lastSizeAdjustment;
+  private static AtomicLong lastSizeAdjustment = new AtomicLong();
+  private static AtomicBoolean sizeAdjustmentStarted = new AtomicBoolean();
   AtomicInteger usedConnections = new AtomicInteger(0);
   /**
    * Sliding average request execution time in seconds.
    */
   private double SARET = 1d; // 1 second initial value
+  /**
+   * Sliding average execution time in seconds of the recent requests, which reacts faster than the {@link #SARET}.
+   */
+  private double recentExecutionTime = 1d; // 1 second initial value
+  /**
+   * Whether the execution time has been measured at least once, until then the initial values are used.
+   */
+  private boolean performanceMeasured;
+  /**
+   * The adaptive limit for the number of concurrent requests, which moves between the minimum and maximum connections. It gets increased
+   * additively, while the remote function responds as fast as usual, and decreased multiplicatively, when it gets slower or fails with
+   * timeouts (AIMD).
+   */
+  private volatile double concurrencyLimit;
+  /**
+   * The sequence number of the latest invocation. Each invocation gets the next sequence number, when it's started.
+   */
+  private final AtomicLong invocationSequence = new AtomicLong();
+  /**
+   * The latest sequence number at the time of the last decrease of the concurrency limit. The invocations up to it were already in flight
+   * when the limit was decreased, so their responses reflect the load before the decrease and must not decrease the limit again.
+   */
+  private long lastDecreaseSequence = -1;
   /**
    * An approximation for the maximum number of requests per second which can be executed based on the performance of
    * the remote function.
    */
   private double rateOfService;
-  private LimitedQueue<FunctionCall> queue = new LimitedQueue<>(0,0);
+  private WeightedLimitedQueue<FunctionCall> queue = new WeightedLimitedQueue<>(RequestPriority.weights(), RequestPriority.byteShares(),
+      fc -> fc.priority.ordinal());
+  /**
+   * The requests, which are currently being invoked, by their markers.
+   */
+  private final Map<Marker, FunctionCall> runningCalls = new ConcurrentHashMap<>();
 
 
   public QueueingRemoteFunctionClient(Connector connectorConfig) {
     super(connectorConfig);
+    concurrencyLimit = getMaxConnections();
     recalculateRateOfService();
 
     clientInstances.add(this);
     globalMinConnectionSum.add(getMinConnections());
 
     /*
-    NOTE: For simplicity the queues will only get a fix maxByteSize which is dependent by their
-    priority (minConnection-ratio) so now we're just doing the queue size (re-)adjustment for all queues once whenever a
-    new RemoteFunctionClient get's created.
-    However, this behavior will be optimized in the future.
+    The queue memory gets rebalanced whenever a new RemoteFunctionClient gets created and from then on periodically with respect to
+    the load of the remote functions.
      */
     adjustQueueByteSizes();
+    if (sizeAdjustmentStarted.compareAndSet(false, true)) {
+      Service.vertx.setPeriodic(SIZE_ADJUSTMENT_INTERVAL, t -> adjustQueueByteSizes());
+    }
     /*
     For simplicity also here just set the value to maximum long. That means that we don't take the performance of the
     connector into account for defining the maximum queue length. Doing so this would just be a performance- / cost-
@@ -103,13 +161,80 @@ public abstract class QueueingRemoteFunctionClient extends RemoteFunctionClient
   }
 
   /**
-   * (Re-)Adjusts the maximum byte sizes of the queues of all existing RemoteFunctionClients.
-   * When calling this method while there are requests in the queues this could result in discards of those requests.
+   * (Re-)Adjusts the maximum byte sizes of the queues of all existing RemoteFunctionClients, so that the unused queue memory of idle
+   * remote functions is available for the busy ones.
    */
-  private static void adjustQueueByteSizes() {
-    //NOTE: For simplicity the queues will only get a fix maxByteSize which is dependent by their priority
-    //TODO: Improve the calculation with respect to the throughput and do the adjustments when necessary at run-time
-    clientInstances.stream().forEach(c -> c.queue.setMaxByteSize((long) (c.getPriority() * GLOBAL_MAX_QUEUE_BYTE_SIZE)));
+  private static synchronized void adjustQueueByteSizes() {
+    lastSizeAdjustment.set(System.currentTimeMillis());
+
+    List<QueueingRemoteFunctionClient> clients = new ArrayList<>(clientInstances);
+    double[] priorities = new double[clients.size()];
+    long[] queuedByteSizes = new long[clients.size()];
+    double[] arrivalRates = new double[clients.size()];
+    double[] throughputs = new double[clients.size()];
+    for (int i = 0; i < clients.size(); i++) {
+      QueueingRemoteFunctionClient c = clients.get(i);
+      priorities[i] = c.getPriority();
+      queuedByteSizes[i] = c.queue.getByteSize();
+      arrivalRates[i] = c.getArrivalRate();
+      throughputs[i] = c.getThroughput();
+    }
+
+    long[] maxByteSizes = calculateQueueByteSizes(GLOBAL_MAX_QUEUE_BYTE_SIZE, MIN_QUEUE_BYTE_SIZE, priorities, queuedByteSizes,
+        arrivalRates, throughputs);
+    for (int i = 0; i < clients.size(); i++) {
+      QueueingRemoteFunctionClient c = clients.get(i);
+      c.discard(c.queue.setMaxByteSize(maxByteSizes[i]));
+    }
+  }
+
+  /**
+   * Calculates the maximum byte sizes of the queues of the clients, which are given by the elements of the arrays at the same index.
+   *
+   * Each queue keeps its floor, which is the minimum byte size limited by its static share, and at least the bytes which are currently
+   * queued. The remaining memory is distributed by the demand of the remote functions, which is their arrival rate plus the rate by which
+   * the arrivals exceed the throughput. If there is no demand at all, the static shares by priority are used. The bytes, which are left
+   * over by rounding, are given to the queue with the highest demand or priority, so that the whole memory is used.
+   *
+   * @param globalMaxByteSize the byte size, which is available for all queues
+   * @param minByteSize the byte size, which each queue keeps, even if it's idle
+   * @param priorities the static shares of the queues
+   * @param queuedByteSizes the bytes, which are currently queued
+   * @param arrivalRates the arrival rates of the requests
+   * @param throughputs the throughputs of the remote functions
+   * @return the maximum byte sizes of the queues
+   */
+  static long[] calculateQueueByteSizes(long globalMaxByteSize, long minByteSize, double[] priorities, long[] queuedByteSizes,
+      double[] arrivalRates, double[] throughputs) {
+    int count = priorities.length;
+    long[] floors = new long[count];
+    double[] demands = new double[count];
+    for (int i = 0; i < count; i++) {
+      long staticShare = (long) (priorities[i] * globalMaxByteSize);
+      floors[i] = Math.max(Math.min(minByteSize, staticShare), queuedByteSizes[i]);
+      demands[i] = arrivalRates[i] + Math.max(0d, arrivalRates[i] - throughputs[i]);
+    }
+
+    long distributable = Math.max(0, globalMaxByteSize - Arrays.stream(floors).sum());
+    double totalDemand = Arrays.stream(demands).sum();
+
+    double[] weights = totalDemand > 0 ? demands : priorities;
+    long[] maxByteSizes = new long[count];
+    int largest = -1;
+    for (int i = 0; i < count; i++) {
+      maxByteSizes[i] = totalDemand > 0
+          ? floors[i] + (long) (demands[i] / totalDemand * distributable)
+          : Math.max(floors[i], (long) (priorities[i] * globalMaxByteSize));
+      if (largest == -1 || weights[i] > weights[largest]) {
+        largest = i;
+      }
+    }
+
+    long remainder = globalMaxByteSize - Arrays.stream(maxByteSizes).sum();
+    if (largest != -1 && remainder > 0) {
+      maxByteSizes[largest] += remainder;
+    }
+    return maxByteSizes;
   }
 
   public static long getGlobalUsedQueueMemory() {
@@ -129,72 +254,248 @@ public abstract class QueueingRemoteFunctionClient extends RemoteFunctionClient
   }
 
   @Override
-  protected void submit(final Marker marker, byte[] bytes, final Handler<AsyncResult<byte[]>> callback) {
-    Handler<AsyncResult<byte[]>> cb = r -> {
+  protected void submit(final Marker marker, byte[] bytes, RequestPriority priority, final Handler<AsyncResult<byte[]>> callback) {
+    submit(marker, bytes.length, priority, cb -> invoke(marker, bytes, cb), callback);
+  }
+
+  /**
+   * Submits a request, which is executed by the given invocation instead of {@link #invoke(Marker, byte[], Handler)}. The request shares
+   * the queue and the connection slots with all other requests of this client.
+   *
+   * @param marker the marker of the request
+   * @param byteSize the (estimated) size of the request, which is accounted in the queue
+   * @param priority the priority class of the request
+   * @param invocation the invocation, which must call the given handler once it completed
+   * @param callback the callback for the response
+   */
+  protected void submit(final Marker marker, long byteSize, RequestPriority priority, final Handler<Handler<AsyncResult<byte[]>>> invocation,
+      final Handler<AsyncResult<byte[]>> callback) {
+    final FunctionCall fc = new FunctionCall(marker, byteSize, priority, invocation, r -> {
       //This is the point where the request's response came back so measure the throughput
       invokeCompleted();
       callback.handle(r);
-    };
+    }, System.currentTimeMillis() + getRequestTimeout());
+    //The request gets answered only once, either by its response or by the deadline, whatever comes first
+    fc.deadlineTimer = Service.vertx.setTimer(getRequestTimeout(), t -> {
+      if (fc.answer(Future.failedFuture(new HttpException(GATEWAY_TIMEOUT, "Connector timeout error.")))) {
+        //Free the queue or stop the remote function from working on the expired request
+        if (queue.remove(queued -> queued == fc) == null && runningCalls.get(marker) == fc) {
+          fc.cancelled = true;
+          cancelInvocation(marker);
+        }
+      }
+    });
 
     //This is the point where new requests arrive so measure the arrival time
     invokeStarted();
 
-    if (!compareAndIncrementUpTo(getMaxConnections(), usedConnections)) {
-      enqueue(marker, bytes, cb);
+    if (!compareAndIncrementUpTo(getConcurrencyLimit(), usedConnections)) {
+      enqueue(fc);
       return;
     }
-    _invoke(marker, bytes, cb);
+    _invoke(fc);
   }
 
-  private void _invoke(final Marker marker, byte[] bytes, final Handler<AsyncResult<byte[]>> callback) {
-    //long start = System.nanoTime();
-    invoke(marker, bytes, r -> {
-      //long end = System.nanoTime();
-      //TODO: Activate performance calculation once it's implemented completely
-      //recalculatePerformance(end - start, TimeUnit.NANOSECONDS);
-      //Look into queue if there is something further to do
-      FunctionCall fc = queue.remove();
-      if (fc == null)
-        usedConnections.getAndDecrement(); //Free the connection only in case it's not needed for the next invocation
+  private void _invoke(final FunctionCall call) {
+    final Marker marker = call.marker;
+    final long start = System.nanoTime();
+    final long sequence = invocationSequence.incrementAndGet();
+    runningCalls.put(marker, call);
+    call.invocation.handle(r -> {
+      long end = System.nanoTime();
+      //The call stays registered while it's answered, so that the parsed response can be reported by responseParsed()
       try {
-        callback.handle(r);
+        call.answer(r);
       }
       catch (Exception e) {
         logger().error(marker, "Error while calling response handler", e);
       }
+      runningCalls.remove(marker, call);
+      recalculatePerformance(end - start, TimeUnit.NANOSECONDS, r.failed() && isOverloadError(r.cause()) || call.overloaded, sequence);
+      //Look into queue if there is something further to do, unless the concurrency limit has been decreased meanwhile
+      FunctionCall fc = usedConnections.get() <= getConcurrencyLimit() ? nextCall() : null;
+      if (fc == null)
+        usedConnections.getAndDecrement(); //Free the connection only in case it's not needed for the next invocation
       //In case there has been an enqueued element invoke the it
       if (fc != null) {
-        _invoke(fc.marker, fc.bytes, fc.callback);
+        _invoke(fc);
+      }
+      //Use the connections, which became available by an increase of the concurrency limit
+      while (queue.getSize() > 0 && compareAndIncrementUpTo(getConcurrencyLimit(), usedConnections)) {
+        FunctionCall next = nextCall();
+        if (next == null) {
+          usedConnections.getAndDecrement();
+          break;
+        }
+        _invoke(next);
       }
     });
   }
 
-  private void recalculatePerformance(long executionTime, TimeUnit timeUnit) {
+  /**
+   * Removes the next call from the queue, which can still be answered in time. Calls, which have been answered already, are skipped.
+   * Calls, which would not complete before their deadline with respect to the average execution time of the remote function, are
+   * answered with a timeout right away, so that the connections are only used for requests, which can still succeed.
+   *
+   * @return The next call or null if there is none
+   */
+  private FunctionCall nextCall() {
+    FunctionCall fc;
+    while ((fc = queue.remove()) != null) {
+      if (fc.isAnswered()) {
+        continue;
+      }
+      if (fc.deadline - System.currentTimeMillis() < SARET * 1000) {
+        fc.answer(Future.failedFuture(new HttpException(GATEWAY_TIMEOUT, "Connector timeout error.")));
+        continue;
+      }
+      return fc;
+    }
+    return null;
+  }
+
+  /**
+   * Returns true, if the error shows, that the remote function is not able to handle the current load.
+   */
+  static boolean isOverloadError(Throwable cause) {
+    return cause instanceof HttpException && (GATEWAY_TIMEOUT.equals(((HttpException) cause).status)
+        || TOO_MANY_REQUESTS.equals(((HttpException) cause).status));
+  }
+
+  /**
+   * Returns true, if the parsed response shows, that the remote function is not able to handle the current load.
+   */
+  static boolean isOverloadResponse(Typed response) {
+    return response instanceof ErrorResponse && ((ErrorResponse) response).getError() == XyzError.TIMEOUT;
+  }
+
+  /**
+   * Marks the running request with the given marker as overloaded, if its response is a timeout. Requests, which have been cancelled by
+   * the hub itself, are ignored, because their timeout is caused by the cancellation and not by the load of the remote function.
+   */
+  @Override
+  public void responseParsed(Marker marker, Typed response) {
+    FunctionCall fc = runningCalls.get(marker);
+    if (fc != null && !fc.cancelled && isOverloadResponse(response)) {
+      fc.overloaded = true;
+    }
+  }
+
+  /**
+   * Cancels the request with the given marker. A request, which is still waiting in the queue, is removed from it, a running request
+   * is cancelled by {@link #cancelInvocation(Marker)}.
+   */
+  @Override
+  public void cancel(Marker marker) {
+    if (removeQueued(marker)) {
+      return;
+    }
+    FunctionCall fc = runningCalls.get(marker);
+    if (fc != null) {
+      fc.cancelled = true;
+      cancelInvocation(marker);
+    }
+  }
+
+  /**
+   * Removes the request with the given marker from the queue, if it's still waiting there.
+   */
+  @Override
+  public void abandon(Marker marker) {
+    removeQueued(marker);
+  }
+
+  private boolean removeQueued(Marker marker) {
+    FunctionCall fc = queue.remove(queued -> queued.marker.equals(marker));
+    if (fc == null) {
+      return false;
+    }
+    fc.answer(Future.failedFuture(new HttpException(GATEWAY_TIMEOUT, "The request was cancelled.")));
+    return true;
+  }
+
+  /**
+   * Should be overridden in sub-classes, which are able to stop a running invocation of the remote function.
+   *
+   * @param marker the marker of the running request
+   */
+  protected void cancelInvocation(Marker marker) {}
+
+  /**
+   * Recalculates the performance of the remote function with the response of an invocation.
+   *
+   * @param executionTime the execution time of the invocation
+   * @param timeUnit the unit of the execution time
+   * @param overloaded whether the invocation failed, because the remote function is overloaded
+   * @param sequence the sequence number of the invocation
+   */
+  synchronized void recalculatePerformance(long executionTime, TimeUnit timeUnit, boolean overloaded, long sequence) {
     recalculateSARET(executionTime, timeUnit);
+    adjustConcurrencyLimit(overloaded, sequence);
     recalculateRateOfService();
-    adjustQueueElementCount();
+    //NOTE: The queue length is not yet limited by the performance, see the constructor
   }
 
   private void recalculateSARET(long executionTime, TimeUnit timeUnit) {
     double executionTimeSeconds = (double) (timeUnit.toMicros(executionTime)) / 1_000_000d;
-    double requestRelevance = 1 / (rateOfService * REQUEST_RELEVANCE_FACTOR);
+    if (!performanceMeasured) {
+      //The first measurement replaces the initial values
+      SARET = recentExecutionTime = executionTimeSeconds;
+      performanceMeasured = true;
+      return;
+    }
+    double requestRelevance = Math.min(1d, 1 / (rateOfService * REQUEST_RELEVANCE_FACTOR));
     SARET = executionTimeSeconds * requestRelevance + SARET * (1d - requestRelevance);
+    recentExecutionTime = calculateSlidingAverage(recentExecutionTime, executionTimeSeconds, RECENT_REQUEST_RELEVANCE);
+  }
 
-
+  /**
+   * Decreases the concurrency limit multiplicatively, if the remote function is overloaded or the recent requests are slower than usual.
+   * The limit is decreased at most once per window, that is only by the responses of invocations, which were started after the last
+   * decrease. Otherwise the limit is increased additively by one for each limit's worth of requests, but only while all connections are
+   * used.
+   */
+  private void adjustConcurrencyLimit(boolean overloaded, long sequence) {
+    double limit = concurrencyLimit;
+    if (overloaded || recentExecutionTime > SARET * LATENCY_TOLERANCE) {
+      if (sequence <= lastDecreaseSequence) {
+        return;
+      }
+      limit = limit * CONCURRENCY_DECREASE_FACTOR;
+      lastDecreaseSequence = invocationSequence.get();
+    }
+    else if (usedConnections.get() >= getConcurrencyLimit()) {
+      limit = limit + 1d / limit;
+    }
+    concurrencyLimit = Math.max(Math.max(1, getMinConnections()), Math.min(getMaxConnections(), limit));
   }
 
   public void recalculateRateOfService() {
-    rateOfService = getMaxConnections() / SARET;
+    rateOfService = getConcurrencyLimit() / SARET;
   }
 
   public double getRateOfService() { return rateOfService; }
 
+  /**
+   * Returns the time in milliseconds, within which a submitted request must be answered.
+   */
+  long getRequestTimeout() {
+    return REQUEST_TIMEOUT;
+  }
+
   public int getMinConnections() { return connectorConfig.getMinConnectionsPerInstance(); }
 
   public int getMaxConnections() { return connectorConfig.getMaxConnectionsPerInstance(); }
 
   public int getUsedConnections() { return usedConnections.intValue(); }
 
+  /**
+   * Returns the current limit for the number of concurrent requests, which is adapted to the performance of the remote function.
+   */
+  public int getConcurrencyLimit() {
+    return Math.max(1, (int) concurrencyLimit);
+  }
+
   public double getPriority() {
     return (double) getMinConnections() / globalMinConnectionSum.doubleValue();
   }
@@ -203,6 +504,11 @@ public abstract class QueueingRemoteFunctionClient extends RemoteFunctionClient
 
   public long getQueueSize() { return queue.getSize(); }
 
+  /**
+   * Returns the number of queued requests of the given priority class.
+   */
+  public long getQueueSize(RequestPriority priority) { return queue.getSize(priority.ordinal()); }
+
   public long getMaxQueueByteSize() { return queue.getMaxByteSize(); }
 
   public long getQueueByteSize() { return queue.getByteSize(); }
@@ -216,38 +522,79 @@ public abstract class QueueingRemoteFunctionClient extends RemoteFunctionClient
     queue.setMaxSize(maxFeasibleElements);
   }
 
-  private void enqueue(final Marker marker, byte[] bytes, final Handler<AsyncResult<byte[]>> callback) {
-    FunctionCall fc = new FunctionCall(marker,bytes,callback);
-
-    /*if (System.currentTimeMillis() > lastSizeAdjustment.get() + SIZE_ADJUSTMENT_INTERVAL
+  private void enqueue(final FunctionCall fc) {
+    if (System.currentTimeMillis() > lastSizeAdjustment.get() + SIZE_ADJUSTMENT_INTERVAL
         && fc.getByteSize() + queue.getByteSize() > queue.getMaxByteSize()) {
       //Element won't fit into queue so we try to enlarge it
       adjustQueueByteSizes();
-    }*/
+    }
 
     //In any case add the element to the queue
-    queue.add(fc)
-        .stream()
-        //Send timeout for discarded (old) calls
-        .forEach(timeoutFc ->
-            timeoutFc.callback
-                .handle(Future.failedFuture(new HttpException(TOO_MANY_REQUESTS, "Remote function is busy or cannot be invoked."))));
+    discard(queue.add(fc));
+  }
+
+  /**
+   * Sends a timeout for discarded (old) calls.
+   */
+  private void discard(List<FunctionCall> discarded) {
+    discarded.forEach(timeoutFc ->
+        timeoutFc.answer(Future.failedFuture(new HttpException(TOO_MANY_REQUESTS, "Remote function is busy or cannot be invoked."))));
   }
 
   public static class FunctionCall implements ByteSizeAware {
 
     final Marker marker;
-    final byte[] bytes;
+    final long byteSize;
+    final RequestPriority priority;
+    final Handler<Handler<AsyncResult<byte[]>>> invocation;
     final Handler<AsyncResult<byte[]>> callback;
-    public FunctionCall(Marker marker, byte[] bytes, Handler<AsyncResult<byte[]>> callback) {
+    /**
+     * The time in milliseconds, until which the request must be answered.
+     */
+    final long deadline;
+    long deadlineTimer = -1;
+    /**
+     * Whether the invocation has been cancelled by the hub.
+     */
+    volatile boolean cancelled;
+    /**
+     * Whether the parsed response shows, that the remote function is overloaded.
+     */
+    volatile boolean overloaded;
+    private final AtomicBoolean answered = new AtomicBoolean();
+    public FunctionCall(Marker marker, long byteSize, RequestPriority priority, Handler<Handler<AsyncResult<byte[]>>> invocation,
+        Handler<AsyncResult<byte[]>> callback, long deadline) {
       this.marker = marker;
-      this.bytes = bytes;
+      this.byteSize = byteSize;
+      this.priority = priority;
+      this.invocation = invocation;
       this.callback = callback;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Answers the request, unless it has been answered already.
+     *
+     * @return true, if the request has been answered by this call
+     */
+    boolean answer(AsyncResult<byte[]> result) {
+      if (!answered.compareAndSet(false, true)) {
+        return false;
+      }
+      if (deadlineTimer != -1) {
+        Service.vertx.cancelTimer(deadlineTimer);
+      }
+      callback.handle(result);
+      return true;
+    }
+
+    boolean isAnswered() {
+      return answered.get();
     }
 
     @Override
     public long getByteSize() {
-      return bytes.length;
+      return byteSize;
     }
   }
 }
@@ -21,6 +21,7 @@ package com.here.xyz.hub.connectors;
 
 import com.google.common.io.ByteStreams;
 import com.here.xyz.Payload;
+import com.here.xyz.Typed;
 import com.here.xyz.hub.connectors.models.Connector;
 import com.here.xyz.hub.rest.Api;
 import com.here.xyz.hub.rest.HttpException;
@@ -80,7 +81,18 @@ public abstract class RemoteFunctionClient {
             && GZIPInputStream.GZIP_MAGIC == (((int) response[0] & 0xff) | ((response[1] << 8) & 0xff00));
 
         assert response != null;
-        if (isGZIP && response.length > Api.MAX_COMPRESSED_RESPONSE_LENGTH || response.length > Api.MAX_RESPONSE_LENGTH) {
+        checkResponseSize(response.length, isGZIP);
+    }
+
+    /**
+     * Checks the size of a response, which is given by its length.
+     *
+     * @param length the length of the response in bytes
+     * @param isGZIP true, if the response is compressed
+     * @throws HttpException if the response is too large
+     */
+    static void checkResponseSize(long length, boolean isGZIP) throws HttpException {
+        if (isGZIP && length > Api.MAX_COMPRESSED_RESPONSE_LENGTH || length > Api.MAX_RESPONSE_LENGTH) {
             throw new HttpException(Api.RESPONSE_PAYLOAD_TOO_LARGE, Api.RESPONSE_PAYLOAD_TOO_LARGE_MESSAGE);
         }
     }
@@ -105,7 +117,7 @@ public abstract class RemoteFunctionClient {
         updateStorageConfig();
     }
 
-    protected void submit(final Marker marker, byte[] bytes, final Handler<AsyncResult<byte[]>> callback) {
+    protected void submit(final Marker marker, byte[] bytes, RequestPriority priority, final Handler<AsyncResult<byte[]>> callback) {
         invoke(marker, bytes, r -> {
             //This is the point where the request's response came back so measure the throughput
             invokeCompleted();
@@ -168,6 +180,31 @@ public abstract class RemoteFunctionClient {
 
     protected abstract void invoke(final Marker marker, byte[] bytes, final Handler<AsyncResult<byte[]>> callback);
 
+    /**
+     * Cancels the request with the given marker, because its response is not needed anymore. The default implementation does nothing, so
+     * that the request runs until it completes.
+     *
+     * @param marker the marker of the request
+     */
+    public void cancel(Marker marker) {}
+
+    /**
+     * Drops the request with the given marker, if it didn't start yet, because its client is gone. In contrast to
+     * {@link #cancel(Marker)} a running request is not affected. The default implementation does nothing.
+     *
+     * @param marker the marker of the request
+     */
+    public void abandon(Marker marker) {}
+
+    /**
+     * Informs this function client about the parsed response of the request with the given marker. It's called before the callback of
+     * the request gets the response. The default implementation does nothing.
+     *
+     * @param marker the marker of the request
+     * @param response the parsed response
+     */
+    public void responseParsed(Marker marker, Typed response) {}
+
     public double getThroughput() {
         measureThroughput();
         return throughput;
@@ -188,7 +225,6 @@ public abstract class RemoteFunctionClient {
      *  current value of the sliding average.
      * @return The new value of the sliding average
      */
-    @SuppressWarnings("unused")
     protected double calculateSlidingAverage(double currentValue, double slideInValue, double slideInRelevance) {
         return currentValue * (1d - slideInRelevance) + slideInValue * slideInRelevance;
     }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.connectors;
+
+import com.here.xyz.events.CountFeaturesEvent;
+import com.here.xyz.events.DeleteFeaturesByTagEvent;
+import com.here.xyz.events.Event;
+import com.here.xyz.events.GetFeaturesByIdEvent;
+import com.here.xyz.events.GetStatisticsEvent;
+import com.here.xyz.events.HealthCheckEvent;
+import com.here.xyz.events.IndexMaintenanceEvent;
+import com.here.xyz.events.IterateFeaturesEvent;
+import com.here.xyz.events.LoadFeaturesEvent;
+import com.here.xyz.events.SearchForFeaturesEvent;
+
+/**
+ * The priority classes of the requests to the remote functions. When the requests need to be queued, each class gets a share of the
+ * free connections according to its weight. The classes may use all of the queue's memory, but when it is exhausted, the class which
+ * exceeds its byte share the most discards its oldest requests first.
+ */
+public enum RequestPriority {
+
+  /**
+   * Small reads, which a user is waiting for, like tiles, bounding boxes or single features.
+   */
+  INTERACTIVE(4, 0.5d),
+
+  /**
+   * Writes and all other requests.
+   */
+  DEFAULT(2, 0.3d),
+
+  /**
+   * Long running bulk requests, like iterations for exports or deletions by tags.
+   */
+  BULK(1, 0.2d);
+
+  final int weight;
+  final double byteShare;
+
+  RequestPriority(int weight, double byteShare) {
+    this.weight = weight;
+    this.byteShare = byteShare;
+  }
+
+  /**
+   * Returns the priority class of the event.
+   */
+  public static RequestPriority of(Event event) {
+    if (event instanceof IterateFeaturesEvent || event instanceof DeleteFeaturesByTagEvent || event instanceof IndexMaintenanceEvent) {
+      return BULK;
+    }
+    if (event instanceof SearchForFeaturesEvent || event instanceof GetFeaturesByIdEvent
+        || event instanceof LoadFeaturesEvent || event instanceof CountFeaturesEvent || event instanceof GetStatisticsEvent
+        || event instanceof HealthCheckEvent) {
+      return INTERACTIVE;
+    }
+    return DEFAULT;
+  }
+
+  /**
+   * Returns the priority class of the event, which might be lowered by the priority requested by the client.
+   *
+   * @param event the event
+   * @param requestedPriority the name of the requested priority class or null, unknown names are ignored
+   */
+  public static RequestPriority of(Event event, String requestedPriority) {
+    final RequestPriority priority = of(event);
+    if (requestedPriority == null) {
+      return priority;
+    }
+    try {
+      final RequestPriority requested = valueOf(requestedPriority.trim().toUpperCase());
+      //A client may only lower the priority of its requests
+      return requested.ordinal() > priority.ordinal() ? requested : priority;
+    } catch (IllegalArgumentException e) {
+      return priority;
+    }
+  }
+
+  static int[] weights() {
+    final int[] weights = new int[values().length];
+    for (RequestPriority priority : values()) {
+      weights[priority.ordinal()] = priority.weight;
+    }
+    return weights;
+  }
+
+  static double[] byteShares() {
+    final double[] byteShares = new double[values().length];
+    for (RequestPriority priority : values()) {
+      byteShares[priority.ordinal()] = priority.byteShare;
+    }
+    return byteShares;
+  }
+}
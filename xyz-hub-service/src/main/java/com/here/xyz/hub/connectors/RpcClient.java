@@ -32,6 +32,7 @@ import com.here.xyz.Typed;
 import com.here.xyz.XyzSerializable;
 import com.here.xyz.connectors.RelocationClient;
 import com.here.xyz.events.Event;
+import com.here.xyz.events.ModifyFeaturesEvent;
 import com.here.xyz.events.RelocatedEvent;
 import com.here.xyz.hub.Service;
 import com.here.xyz.hub.connectors.models.Connector;
@@ -112,7 +113,8 @@ public class RpcClient implements Logging {
     return connector;
   }
 
-  private void invokeWithRelocation(final Marker marker, byte[] bytes, final Handler<AsyncResult<byte[]>> callback) {
+  private void invokeWithRelocation(final Marker marker, byte[] bytes, RequestPriority priority,
+      final Handler<AsyncResult<byte[]>> callback) {
     try {
       if (bytes.length > connector.capabilities.maxPayloadSize) { // If the payload is too large to send directly to the connector
         // If relocation is supported, use the relocation client to transfer the event to the connector
@@ -127,7 +129,7 @@ public class RpcClient implements Logging {
           return;
         }
       }
-      functionClient.submit(marker, bytes, callback);
+      functionClient.submit(marker, bytes, priority, callback);
     } catch (Exception e) {
       callback.handle(Future.failedFuture(e));
     }
@@ -142,13 +144,42 @@ public class RpcClient implements Logging {
    */
   @SuppressWarnings("rawtypes")
   public void execute(final Marker marker, final Event event, final Handler<AsyncResult<XyzResponse>> callback) {
+    execute(marker, event, RequestPriority.of(event), callback);
+  }
+
+  /**
+   * Executes an event with the given priority and returns the parsed FeatureCollection response.
+   *
+   * @param marker the log marker
+   * @param event the event
+   * @param priority the priority class of the request, when it needs to be queued
+   * @param callback the callback handler
+   */
+  @SuppressWarnings("rawtypes")
+  public void execute(final Marker marker, final Event event, RequestPriority priority,
+      final Handler<AsyncResult<XyzResponse>> callback) {
     event.setConnectorParams(connector.params);
+    if (canInvokeDirectly(event)) {
+      ((EmbeddedFunctionClient) functionClient).invokeDirectly(marker, event, priority, r -> {
+        if (r.failed()) {
+          callback.handle(Future.failedFuture(r.cause()));
+          return;
+        }
+        try {
+          callback.handle(Future.succeededFuture(checkResponse(marker, r.result())));
+        } catch (HttpException e) {
+          callback.handle(Future.failedFuture(e));
+        }
+      });
+      return;
+    }
+
     final String eventJson = event.serialize();
     final byte[] bytes = eventJson.getBytes();
     logger().info(marker, "Invoking remote function \"{}\". Total uncompressed event size: {}, Event: {}", this.storage().id, bytes.length,
         preview(eventJson, 4092));
 
-    invokeWithRelocation(marker, bytes, bytesResult -> {
+    invokeWithRelocation(marker, bytes, priority, bytesResult -> {
       if (bytesResult.failed()) {
         callback.handle(Future.failedFuture(bytesResult.cause()));
         return;
@@ -165,6 +196,15 @@ public class RpcClient implements Logging {
     });
   }
 
+  /**
+   * Returns true, if the event can be passed as object to an embedded connector. Features of a {@link ModifyFeaturesEvent} are modified by
+   * the connector, while they are still used by the service, so such events are always sent as serialized copy.
+   */
+  private boolean canInvokeDirectly(Event event) {
+    return functionClient instanceof EmbeddedFunctionClient && !(event instanceof ModifyFeaturesEvent)
+        && ((EmbeddedFunctionClient) functionClient).supportsDirectInvocation();
+  }
+
   private String preview(String eventJson, @SuppressWarnings("SameParameterValue") int previewLength) {
     if (eventJson == null || eventJson.length() <= previewLength) {
       return eventJson;
@@ -182,13 +222,33 @@ public class RpcClient implements Logging {
    */
   public void send(final Marker marker, @SuppressWarnings("rawtypes") final Event event) {
     event.setConnectorParams(connector.params);
-    invokeWithRelocation(marker, event.serialize().getBytes(), r -> {
+    invokeWithRelocation(marker, event.serialize().getBytes(), RequestPriority.of(event), r -> {
       if (r.failed()) {
         logger().error(marker, "Failed to send event to remote function {}.", connector.remoteFunction.id);
       }
     });
   }
 
+  /**
+   * Cancels the request with the given marker, because its response is not needed anymore. The connector stops processing the according
+   * event, if the remote function supports it.
+   *
+   * @param marker the log marker of the request
+   */
+  public void cancel(final Marker marker) {
+    functionClient.cancel(marker);
+  }
+
+  /**
+   * Drops the request with the given marker, if it's still waiting for a free connection to the remote function, because the client,
+   * which sent the request, is gone. A running request is not affected.
+   *
+   * @param marker the log marker of the request
+   */
+  public void abandon(final Marker marker) {
+    functionClient.abandon(marker);
+  }
+
   private void parseResponse(Marker marker, final byte[] bytes, @SuppressWarnings("rawtypes") Handler<AsyncResult<XyzResponse>> callback) {
     String stringResponse = null;
     if (bytes != null) {
@@ -213,26 +273,7 @@ public class RpcClient implements Logging {
         }
       }
 
-      if (payload instanceof ErrorResponse) {
-        ErrorResponse errorResponse = (ErrorResponse) payload;
-        logger().info(marker, "The connector responded with an error of type {}: {}", errorResponse.getError(),
-            errorResponse.getErrorMessage());
-
-        if (XyzError.TIMEOUT.equals(errorResponse.getError())) {
-          throw new HttpException(GATEWAY_TIMEOUT, "Connector timeout error.");
-        } else if (XyzError.ILLEGAL_ARGUMENT.equals(errorResponse.getError())) {
-          throw new HttpException(BAD_REQUEST, errorResponse.getErrorMessage());
-        }
-        throw new HttpException(BAD_GATEWAY, "Connector error.");
-      }
-      if (payload instanceof XyzResponse) {
-        //noinspection rawtypes
-        callback.handle(Future.succeededFuture((XyzResponse) payload));
-        return;
-      }
-
-      logger().info(marker, "The connector responded with an unexpected response type {}", payload.getClass().getSimpleName());
-      callback.handle(Future.failedFuture(new HttpException(BAD_GATEWAY, "The connector responded with unexpected response type.")));
+      callback.handle(Future.succeededFuture(checkResponse(marker, payload)));
     } catch (NullPointerException e) {
       logger().error(marker, "Received empty response, but expected a JSON response.", new NullPointerException());
       callback.handle(Future.failedFuture(new HttpException(BAD_GATEWAY, "Received an empty response from the storage connector.")));
@@ -257,6 +298,37 @@ public class RpcClient implements Logging {
     }
   }
 
+  /**
+   * Returns the response of the connector or throws the according exception, if the connector responded with an error or an unexpected
+   * response type.
+   */
+  @SuppressWarnings("rawtypes")
+  private XyzResponse checkResponse(Marker marker, Typed payload) throws HttpException {
+    if (payload == null) {
+      logger().error(marker, "Received empty response, but expected a response object.", new NullPointerException());
+      throw new HttpException(BAD_GATEWAY, "Received an empty response from the storage connector.");
+    }
+    functionClient.responseParsed(marker, payload);
+    if (payload instanceof ErrorResponse) {
+      ErrorResponse errorResponse = (ErrorResponse) payload;
+      logger().info(marker, "The connector responded with an error of type {}: {}", errorResponse.getError(),
+          errorResponse.getErrorMessage());
+
+      if (XyzError.TIMEOUT.equals(errorResponse.getError())) {
+        throw new HttpException(GATEWAY_TIMEOUT, "Connector timeout error.");
+      } else if (XyzError.ILLEGAL_ARGUMENT.equals(errorResponse.getError())) {
+        throw new HttpException(BAD_REQUEST, errorResponse.getErrorMessage());
+      }
+      throw new HttpException(BAD_GATEWAY, "Connector error.");
+    }
+    if (payload instanceof XyzResponse) {
+      return (XyzResponse) payload;
+    }
+
+    logger().info(marker, "The connector responded with an unexpected response type {}", payload.getClass().getSimpleName());
+    throw new HttpException(BAD_GATEWAY, "The connector responded with unexpected response type.");
+  }
+
   /**
    * Tries to parse the stringResponse and checks for errorMessage. In case of found, it throws a new exception with the errorMessage.
    * Additionally checks if the message is related to Time Out and throws a GATEWAY_TIMEOUT. Also, if the message is not parsable at all,
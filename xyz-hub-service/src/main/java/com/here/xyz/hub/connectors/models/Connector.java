@@ -152,6 +152,25 @@ public class Connector {
      */
     public List<String> clusteringTypes;
 
+    /**
+     * Whether the storage is able to create MapBox Vector Tiles itself. If true, the tile events for MVT responses are sent with the
+     * according response type and the storage returns the tile as binary response. (Only applicable for storage connectors)
+     */
+    public boolean mvtSupport;
+
+    /**
+     * Whether the storage is able to return the geometries of the features in the binary TWKB format. If true, the tile events for MVT
+     * responses, which are encoded by the service, request the binary geometries. (Only applicable for storage connectors)
+     */
+    public boolean binaryGeometrySupport;
+
+    /**
+     * Whether the storage maintains its indices and statistics, when it receives an index maintenance event. If true, the service sends
+     * these events periodically, so that the maintenance is not done while requests are processed. (Only applicable for storage
+     * connectors)
+     */
+    public boolean indexMaintenance;
+
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
@@ -38,7 +38,6 @@ import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.here.xyz.hub.XYZHubRESTVerticle;
 import com.here.xyz.hub.auth.JWTPayload;
-import com.here.xyz.hub.connectors.models.BinaryResponse;
 import com.here.xyz.hub.connectors.models.Space.CacheProfile;
 import com.here.xyz.hub.task.FeatureTask;
 import com.here.xyz.hub.task.SpaceTask;
@@ -50,6 +49,7 @@ import com.here.xyz.models.geojson.implementation.XyzError;
 import com.here.xyz.models.hub.Space.Internal;
 import com.here.xyz.models.hub.Space.Public;
 import com.here.xyz.models.hub.Space.WithConnectors;
+import com.here.xyz.responses.BinaryResponse;
 import com.here.xyz.responses.CountResponse;
 import com.here.xyz.responses.ErrorResponse;
 import com.here.xyz.responses.StatisticsResponse;
@@ -451,6 +451,7 @@ public abstract class Api implements Logging {
   public static class HeaderValues {
 
     public static final String STREAM_ID = "Stream-Id";
+    public static final String REQUEST_PRIORITY = "Request-Priority";
     public static final String APPLICATION_GEO_JSON = "application/geo+json";
     public static final String APPLICATION_JSON = "application/json";
     static final String APPLICATION_VND_MAPBOX_VECTOR_TILE = "application/vnd.mapbox-vector-tile";
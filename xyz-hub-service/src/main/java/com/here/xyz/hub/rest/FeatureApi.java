@@ -178,7 +178,13 @@ public class FeatureApi extends Api {
       if (!tags.containsWildcard()) {
         event.setTags(tags);
       }
-      new DeleteOperation(event, context, responseType)
+      //Delete the features in chunks, the response contains the handle to continue the deletion
+      final int limit = Query.getInteger(context, Query.LIMIT, 0);
+      if (limit > 0) {
+        event.withLimit(limit)
+            .withHandle(Query.getString(context, Query.HANDLE, null));
+      }
+      new DeleteOperation(event, context, limit > 0 ? ApiResponseType.FEATURE_COLLECTION : responseType)
           .execute(this::sendResponse, this::sendErrorResponse);
     } else {
       context.fail(
@@ -308,8 +308,11 @@ public abstract class FeatureTask<T extends Event, X extends FeatureTask<T, ?>>
         final FeatureCollection collection = (FeatureCollection) response;
         final List<Feature> features = collection.getFeatures();
 
-        if(features.size() == 1)
-         this.getEvent().setGeometry(features.get(0).getGeometry());
+        if(features.size() == 1) {
+          this.getEvent().setGeometry(features.get(0).getGeometry());
+          this.getEvent().setRefSpaceId(refSpaceId);
+          this.getEvent().setRefFeatureId(refFeatureId);
+        }
 
         callback.call(this);
       } catch (Exception e) {
@@ -19,6 +19,7 @@
 
 package com.here.xyz.hub.task;
 
+import static com.here.xyz.hub.rest.Api.HeaderValues.REQUEST_PRIORITY;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static io.netty.handler.codec.http.HttpResponseStatus.CONFLICT;
 import static io.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
@@ -33,10 +34,12 @@ import com.here.xyz.events.CountFeaturesEvent;
 import com.here.xyz.events.Event;
 import com.here.xyz.events.EventNotification;
 import com.here.xyz.events.GetFeaturesByBBoxEvent;
+import com.here.xyz.events.GetFeaturesByTileEvent;
+import com.here.xyz.events.GetFeaturesByTileEvent.ResponseType;
 import com.here.xyz.events.ModifyFeaturesEvent;
 import com.here.xyz.hub.Service;
+import com.here.xyz.hub.connectors.RequestPriority;
 import com.here.xyz.hub.connectors.RpcClient;
-import com.here.xyz.hub.connectors.models.BinaryResponse;
 import com.here.xyz.hub.connectors.models.Connector;
 import com.here.xyz.hub.connectors.models.Space;
 import com.here.xyz.hub.connectors.models.Space.CacheProfile;
@@ -60,6 +63,7 @@ import com.here.xyz.models.geojson.implementation.Feature;
 import com.here.xyz.models.geojson.implementation.FeatureCollection;
 import com.here.xyz.models.geojson.implementation.Properties;
 import com.here.xyz.models.geojson.implementation.XyzNamespace;
+import com.here.xyz.responses.BinaryResponse;
 import com.here.xyz.responses.CountResponse;
 import com.here.xyz.responses.ErrorResponse;
 import com.here.xyz.responses.ModifiedEventResponse;
@@ -142,9 +146,34 @@ public class FeatureTaskHandler implements Logging {
       }
       //Do the actual storage call
       setAdditionalEventProps(task, task.storage, eventToExecute);
+      //Let the storage create the vector tile, if it is able to do so
+      if (eventToExecute instanceof GetFeaturesByTileEvent && ApiResponseType.MVT == task.responseType
+          && task.storage.capabilities.mvtSupport) {
+        ((GetFeaturesByTileEvent) eventToExecute).setResponseType(ResponseType.MVT);
+      }
+      //Otherwise request the geometries in binary form, if the vector tile is created by the service
+      else if (eventToExecute instanceof GetFeaturesByTileEvent && task.storage.capabilities.binaryGeometrySupport
+          && (ApiResponseType.MVT == task.responseType || ApiResponseType.MVT_FLATTENED == task.responseType)) {
+        ((GetFeaturesByTileEvent) eventToExecute).setBinaryGeometry(true);
+      }
 
       try {
-        RpcClient.getInstanceFor(task.storage).execute(task.getMarker(), eventToExecute, storageResult -> {
+        final RpcClient client = RpcClient.getInstanceFor(task.storage);
+        //Stop the storage from processing a read request, when the client closes the connection before receiving the response.
+        //Other requests are only dropped, as long as they are waiting for the storage.
+        if (task.context != null) {
+          task.context.response().closeHandler(v -> {
+            if (task instanceof FeatureTask.ReadQuery) {
+              client.cancel(task.getMarker());
+            } else {
+              client.abandon(task.getMarker());
+            }
+          });
+        }
+        //The client may lower the priority of its request, e.g. for background jobs
+        final RequestPriority priority = RequestPriority.of(eventToExecute,
+            task.context != null ? task.context.request().getHeader(REQUEST_PRIORITY) : null);
+        client.execute(task.getMarker(), eventToExecute, priority, storageResult -> {
           if (storageResult.failed()) {
             handleFailure(task.getMarker(), storageResult.cause(), callback);
             return;
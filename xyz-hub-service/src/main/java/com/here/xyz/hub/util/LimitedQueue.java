@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  * A queue with limits on the number of elements and the their size.
@@ -70,6 +71,21 @@ public class LimitedQueue<E extends ByteSizeAware> implements ByteSizeAware {
         return removed;
     }
 
+    /**
+     * Removes the first element, which matches the given predicate, and returns it.
+     *
+     * @return The removed element or null if no element matches
+     */
+    public E remove(Predicate<E> predicate) {
+        for (E element : _queue) {
+            if (predicate.test(element) && _queue.remove(element)) {
+                byteSize.add(-element.getByteSize());
+                return element;
+            }
+        }
+        return null;
+    }
+
     private List<E> discard() {
         List<E> discardedElements = new ArrayList<>();
 
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A queue with multiple classes of elements. All classes share the maximum byte size, so that a class may use the bytes, which the
+ * other classes currently don't need. Only when the maximum byte size is reached, the oldest elements of the class, which exceeds its
+ * byte share the most, are discarded. So a class, which stays within its byte share, never loses elements because of another class.
+ * The elements are removed by a weighted round robin across the non-empty classes, so that each class gets a share of the removals
+ * according to its weight and no class starves.
+ */
+public class WeightedLimitedQueue<E extends ByteSizeAware> implements ByteSizeAware {
+
+    private final List<LimitedQueue<E>> queues = new ArrayList<>();
+    private final int[] weights;
+    private final double[] byteShares;
+    private final ToIntFunction<E> classifier;
+    /**
+     * The current weights of the smooth weighted round robin.
+     */
+    private final int[] currentWeights;
+    private long maxByteSize;
+    private long maxSize;
+
+    /**
+     * @param weights The weights of the classes for the removal of the elements
+     * @param byteShares The shares of the classes of the maximum byte size, which should sum up to one. They decide which class
+     *     discards its elements, when the maximum byte size is reached.
+     * @param classifier Returns the index of the class of an element
+     */
+    public WeightedLimitedQueue(int[] weights, double[] byteShares, ToIntFunction<E> classifier) {
+        if (weights.length != byteShares.length) throw new IllegalArgumentException("A weight and a byte share is required per class.");
+        this.weights = weights;
+        this.byteShares = byteShares;
+        this.classifier = classifier;
+        this.currentWeights = new int[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            queues.add(new LimitedQueue<>(0, 0));
+        }
+    }
+
+    /**
+     * Adds an element to the queue of its class and optionally returns the elements of the same class, which had to be discarded to
+     * accommodate the new one.
+     *
+     * @return The elements, which had to be discarded to accommodate the new one.
+     */
+    public synchronized List<E> add(E element) {
+        List<E> discarded = queues.get(classifier.applyAsInt(element)).add(element);
+        if (getByteSize() <= maxByteSize) {
+            return discarded;
+        }
+        discarded = new ArrayList<>(discarded);
+        evict(discarded);
+        return discarded;
+    }
+
+    /**
+     * Discards the oldest elements of the classes, which exceed their byte shares, until the maximum byte size is not exceeded anymore.
+     */
+    private void evict(List<E> discarded) {
+        while (getByteSize() > maxByteSize) {
+            E evicted = queues.get(mostExceedingClass()).remove();
+            if (evicted != null) discarded.add(evicted);
+        }
+    }
+
+    /**
+     * Returns the index of the non-empty class, which exceeds its share of the maximum byte size the most.
+     */
+    private int mostExceedingClass() {
+        int result = -1;
+        double maxExcess = 0;
+        for (int i = 0; i < queues.size(); i++) {
+            LimitedQueue<E> queue = queues.get(i);
+            if (queue.getSize() == 0) {
+                continue;
+            }
+            double excess = queue.getByteSize() - byteShares[i] * maxByteSize;
+            if (result == -1 || excess > maxExcess) {
+                result = i;
+                maxExcess = excess;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the head of the class, which is next in turn, and returns it.
+     *
+     * @return The removed element or null if the queue is empty
+     */
+    public synchronized E remove() {
+        int totalWeight = 0;
+        int next = -1;
+        for (int i = 0; i < queues.size(); i++) {
+            if (queues.get(i).getSize() == 0) {
+                continue;
+            }
+            currentWeights[i] += weights[i];
+            totalWeight += weights[i];
+            if (next == -1 || currentWeights[i] > currentWeights[next]) {
+                next = i;
+            }
+        }
+        if (next == -1) {
+            return null;
+        }
+        currentWeights[next] -= totalWeight;
+
+        E removed = queues.get(next).remove();
+        //The element might have been removed concurrently, so take the next one of any class
+        return removed != null ? removed : removeAny();
+    }
+
+    private E removeAny() {
+        for (LimitedQueue<E> queue : queues) {
+            E removed = queue.remove();
+            if (removed != null) return removed;
+        }
+        return null;
+    }
+
+    /**
+     * Removes the first element, which matches the given predicate, and returns it.
+     *
+     * @return The removed element or null if no element matches
+     */
+    public synchronized E remove(Predicate<E> predicate) {
+        for (LimitedQueue<E> queue : queues) {
+            E removed = queue.remove(predicate);
+            if (removed != null) return removed;
+        }
+        return null;
+    }
+
+    /**
+     * Sets the maximum byte size, which is shared by all classes.
+     *
+     * @return The elements, which had to be discarded to fit into the new size.
+     */
+    public synchronized List<E> setMaxByteSize(long byteSize) {
+        if (byteSize < 0) throw new IllegalArgumentException("The maximum byte size of a queue can not be negative.");
+        maxByteSize = byteSize;
+        List<E> discarded = new ArrayList<>();
+        for (LimitedQueue<E> queue : queues) {
+            discarded.addAll(queue.setMaxByteSize(byteSize));
+        }
+        evict(discarded);
+        return discarded;
+    }
+
+    public long getMaxByteSize() {
+        return maxByteSize;
+    }
+
+    /**
+     * Sets the maximum number of elements per class.
+     *
+     * @return The elements, which had to be discarded to fit into the new size.
+     */
+    public List<E> setMaxSize(long size) {
+        if (size < 0) throw new IllegalArgumentException("The maximum size of a queue can not be negative.");
+        maxSize = size;
+        List<E> discarded = new ArrayList<>();
+        for (LimitedQueue<E> queue : queues) {
+            discarded.addAll(queue.setMaxSize(size));
+        }
+        return discarded;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getSize() {
+        return queues.stream().mapToLong(LimitedQueue::getSize).sum();
+    }
+
+    /**
+     * Returns the number of elements of the given class.
+     */
+    public long getSize(int elementClass) {
+        return queues.get(elementClass).getSize();
+    }
+
+    @Override
+    public long getByteSize() {
+        return queues.stream().mapToLong(LimitedQueue::getByteSize).sum();
+    }
+}
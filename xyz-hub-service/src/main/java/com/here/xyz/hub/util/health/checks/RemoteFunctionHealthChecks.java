@@ -23,6 +23,7 @@ import static com.here.xyz.hub.util.health.schema.Status.Result.ERROR;
 import static com.here.xyz.hub.util.health.schema.Status.Result.OK;
 
 import com.here.xyz.hub.connectors.QueueingRemoteFunctionClient;
+import com.here.xyz.hub.connectors.RequestPriority;
 import com.here.xyz.hub.connectors.models.Connector.RemoteFunctionConfig;
 import com.here.xyz.hub.connectors.models.Connector.RemoteFunctionConfig.AWSLambda;
 import com.here.xyz.hub.util.health.schema.Response;
@@ -77,10 +78,14 @@ public class RemoteFunctionHealthChecks extends ExecutableCheck {
       }
       d.put("maxQueueSize", rfc.getMaxQueueSize());
       d.put("queueSize", rfc.getQueueSize());
+      for (RequestPriority priority : RequestPriority.values()) {
+        d.put("queueSize" + priority, rfc.getQueueSize(priority));
+      }
       d.put("maxQueueByteSize", rfc.getMaxQueueByteSize());
       d.put("queueByteSize", rfc.getQueueByteSize());
       d.put("minConnections", rfc.getMinConnections());
       d.put("maxConnections", rfc.getMaxConnections());
+      d.put("concurrencyLimit", rfc.getConcurrencyLimit());
       d.put("usedConnections", rfc.getUsedConnections());
       d.put("rateOfService", rfc.getRateOfService());
       d.put("arrivalRate", rfc.getArrivalRate());
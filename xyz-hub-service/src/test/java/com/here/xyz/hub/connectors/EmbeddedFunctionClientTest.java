@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.connectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.here.xyz.events.Event;
+import com.here.xyz.events.GetFeaturesByGeometryEvent;
+import com.here.xyz.events.GetFeaturesByIdEvent;
+import com.here.xyz.hub.Service;
+import com.here.xyz.hub.rest.Api;
+import com.here.xyz.hub.rest.HttpException;
+import com.here.xyz.models.geojson.coordinates.LineStringCoordinates;
+import com.here.xyz.models.geojson.coordinates.Position;
+import com.here.xyz.models.geojson.implementation.LineString;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class EmbeddedFunctionClientTest {
+
+  @BeforeClass
+  public static void setupService() {
+    Service.configuration = new Service.Config();
+    Service.configuration.INSTANCE_COUNT = 1;
+    Service.configuration.GLOBAL_MAX_QUEUE_SIZE = 1;
+    Service.configuration.REMOTE_FUNCTION_MIN_QUEUE_SIZE = 1;
+    Service.configuration.REMOTE_FUNCTION_REQUEST_TIMEOUT = 30;
+  }
+
+  /**
+   * Asserts, that the estimated size of the variable part of the event is within the given factor of its actual serialized size.
+   */
+  private static void assertEstimatedVariableSize(Event event, Event emptyEvent, double factor) {
+    final long actual = event.serialize().length() - emptyEvent.serialize().length();
+    final long estimated = EmbeddedFunctionClient.estimateByteSize(event) - EmbeddedFunctionClient.estimateByteSize(emptyEvent);
+    assertTrue("Estimated " + estimated + " bytes for " + actual + " bytes", estimated >= actual / factor && estimated <= actual * factor);
+  }
+
+  @Test
+  public void testEstimateByteSize() {
+    final List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      ids.add("feature" + i);
+    }
+    assertEstimatedVariableSize(new GetFeaturesByIdEvent().withIds(ids), new GetFeaturesByIdEvent(), 1.1);
+
+    final LineStringCoordinates coordinates = new LineStringCoordinates();
+    for (int i = 0; i < 1000; i++) {
+      coordinates.add(new Position(13.4 + i / 1000d, 52.5 + i / 1000d));
+    }
+    assertEstimatedVariableSize(new GetFeaturesByGeometryEvent().withGeometry(new LineString().withCoordinates(coordinates)),
+        new GetFeaturesByGeometryEvent(), 2);
+  }
+
+  @Test
+  public void testCheckResponseSize() throws HttpException {
+    RemoteFunctionClient.checkResponseSize(Api.MAX_RESPONSE_LENGTH, false);
+    try {
+      RemoteFunctionClient.checkResponseSize(Api.MAX_RESPONSE_LENGTH + 1, false);
+      throw new AssertionError("The response must be too large");
+    } catch (HttpException e) {
+      assertEquals(Api.RESPONSE_PAYLOAD_TOO_LARGE, e.status);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.connectors;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_GATEWAY;
+import static io.netty.handler.codec.http.HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE;
+import static io.netty.handler.codec.http.HttpResponseStatus.TOO_MANY_REQUESTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.model.AWSLambdaException;
+import com.here.xyz.hub.rest.HttpException;
+import org.junit.Test;
+
+public class LambdaFunctionClientTest {
+
+  private static HttpException toHttpException(int statusCode) {
+    AWSLambdaException e = new AWSLambdaException("Lambda error.");
+    e.setStatusCode(statusCode);
+    return LambdaFunctionClient.toHttpException(e);
+  }
+
+  @Test
+  public void testThrottledInvocation() {
+    HttpException e = toHttpException(429);
+    assertEquals(TOO_MANY_REQUESTS, e.status);
+    assertTrue(QueueingRemoteFunctionClient.isOverloadError(e));
+  }
+
+  @Test
+  public void testOtherErrors() {
+    assertEquals(REQUEST_ENTITY_TOO_LARGE, toHttpException(413).status);
+    assertEquals(BAD_GATEWAY, toHttpException(500).status);
+    assertFalse(QueueingRemoteFunctionClient.isOverloadError(toHttpException(500)));
+  }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.connectors;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_GATEWAY;
+import static io.netty.handler.codec.http.HttpResponseStatus.GATEWAY_TIMEOUT;
+import static io.netty.handler.codec.http.HttpResponseStatus.TOO_MANY_REQUESTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.here.xyz.hub.Service;
+import com.here.xyz.hub.connectors.models.Connector;
+import com.here.xyz.hub.rest.HttpException;
+import com.here.xyz.models.geojson.implementation.XyzError;
+import com.here.xyz.responses.ErrorResponse;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+public class QueueingRemoteFunctionClientTest {
+
+  private static final int MAX_CONNECTIONS = 10;
+
+  private TestClient client;
+  /**
+   * The handlers of the invocations, which are currently running.
+   */
+  private List<Handler<AsyncResult<byte[]>>> running;
+  /**
+   * The byte size, which each queue keeps, when the queue sizes are calculated.
+   */
+  private final long minQueueByteSize = QueueingRemoteFunctionClient.GLOBAL_MAX_QUEUE_BYTE_SIZE / 10;
+
+  @BeforeClass
+  public static void setupService() {
+    Service.configuration = new Service.Config();
+    Service.configuration.INSTANCE_COUNT = 1;
+    Service.configuration.GLOBAL_MAX_QUEUE_SIZE = 1;
+    Service.configuration.REMOTE_FUNCTION_MIN_QUEUE_SIZE = 1;
+    Service.configuration.REMOTE_FUNCTION_REQUEST_TIMEOUT = 30;
+    Service.vertx = Vertx.vertx();
+  }
+
+  @AfterClass
+  public static void shutdownService() {
+    Service.vertx.close();
+  }
+
+  @Before
+  public void setup() {
+    //The minimum connections give the client its share of the queue memory
+    Connector connector = Json.decodeValue("{\"id\": \"test\", \"connectionSettings\": {\"minConnections\": 1}}", Connector.class);
+    connector.connectionSettings.maxConnections = MAX_CONNECTIONS;
+    client = new TestClient(connector);
+    running = new ArrayList<>();
+  }
+
+  /**
+   * Starts a new invocation, which keeps running.
+   *
+   * @return The sequence number of the started invocation
+   */
+  private long start() {
+    client.submit(MarkerFactory.getDetachedMarker("test"), 1, RequestPriority.DEFAULT, running::add, r -> {});
+    return running.size();
+  }
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  private static boolean throttled() {
+    return QueueingRemoteFunctionClient.isOverloadError(new HttpException(TOO_MANY_REQUESTS, "Too many requests."));
+  }
+
+  private static boolean timedOut() {
+    return QueueingRemoteFunctionClient.isOverloadError(new HttpException(GATEWAY_TIMEOUT, "Connector timeout error."));
+  }
+
+  @Test
+  public void testOverloadErrors() {
+    assertTrue(throttled());
+    assertTrue(timedOut());
+    assertFalse(QueueingRemoteFunctionClient.isOverloadError(new HttpException(BAD_GATEWAY, "Connector error.")));
+    assertFalse(QueueingRemoteFunctionClient.isOverloadError(new RuntimeException()));
+  }
+
+  @Test
+  public void testDecreaseOncePerWindow() {
+    for (int i = 0; i < 5; i++) {
+      start();
+    }
+    client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, false, 1);
+    assertEquals(MAX_CONNECTIONS, client.getConcurrencyLimit());
+
+    //The first throttled response decreases the limit, the other responses of the same window don't
+    client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, throttled(), 2);
+    assertEquals(9, client.getConcurrencyLimit());
+    for (long sequence = 3; sequence <= 5; sequence++) {
+      client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, timedOut(), sequence);
+      assertEquals(9, client.getConcurrencyLimit());
+    }
+
+    //An invocation, which was started after the decrease, may decrease the limit again
+    long sequence = start();
+    client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, timedOut(), sequence);
+    assertEquals(8, client.getConcurrencyLimit());
+  }
+
+  @Test
+  public void testDecreaseOnLatency() {
+    for (int i = 0; i < 3; i++) {
+      start();
+    }
+    client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, false, 1);
+    client.recalculatePerformance(millis(110), TimeUnit.NANOSECONDS, false, 1);
+    assertEquals(MAX_CONNECTIONS, client.getConcurrencyLimit());
+
+    //A response, which is much slower than the average, decreases the limit, the slow responses already in flight don't
+    client.recalculatePerformance(millis(1000), TimeUnit.NANOSECONDS, false, 2);
+    assertEquals(9, client.getConcurrencyLimit());
+    client.recalculatePerformance(millis(1000), TimeUnit.NANOSECONDS, false, 3);
+    assertEquals(9, client.getConcurrencyLimit());
+
+    long sequence = start();
+    client.recalculatePerformance(millis(1000), TimeUnit.NANOSECONDS, false, sequence);
+    assertEquals(8, client.getConcurrencyLimit());
+  }
+
+  @Test
+  public void testIncreaseWhileAllConnectionsUsed() {
+    for (int i = 0; i < 5; i++) {
+      start();
+    }
+    client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, throttled(), 1);
+    assertEquals(9, client.getConcurrencyLimit());
+
+    //The limit is not increased, as long as connections are free
+    for (int i = 0; i < 20; i++) {
+      client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, false, 5);
+    }
+    assertEquals(9, client.getConcurrencyLimit());
+
+    //The limit is increased by one per limit's worth of fast responses, while all connections are used
+    long sequence = 0;
+    while (client.getUsedConnections() < client.getConcurrencyLimit()) {
+      sequence = start();
+    }
+    for (int i = 0; i < 8; i++) {
+      client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, false, sequence);
+    }
+    assertEquals(9, client.getConcurrencyLimit());
+    for (int i = 0; i < 2; i++) {
+      client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, false, sequence);
+    }
+    assertEquals(MAX_CONNECTIONS, client.getConcurrencyLimit());
+
+    //The limit never exceeds the maximum connections
+    for (int i = 0; i < 100; i++) {
+      client.recalculatePerformance(millis(100), TimeUnit.NANOSECONDS, false, sequence);
+    }
+    assertEquals(MAX_CONNECTIONS, client.getConcurrencyLimit());
+  }
+
+  /**
+   * Submits a request, which keeps running once it's invoked.
+   *
+   * @param answers the list, to which all answers of the request are added
+   * @return The list, to which the handler of the invocation is added, once the request is invoked
+   */
+  private List<Handler<AsyncResult<byte[]>>> submit(String marker, List<AsyncResult<byte[]>> answers) {
+    List<Handler<AsyncResult<byte[]>>> invoked = new CopyOnWriteArrayList<>();
+    client.submit(MarkerFactory.getDetachedMarker(marker), 1, RequestPriority.DEFAULT, h -> {
+      invoked.add(h);
+      running.add(h);
+    }, answers::add);
+    return invoked;
+  }
+
+  /**
+   * Uses all connections with running invocations.
+   */
+  private void useAllConnections() {
+    while (client.getUsedConnections() < client.getConcurrencyLimit()) {
+      start();
+    }
+  }
+
+  private static void assertTimeout(AsyncResult<byte[]> answer) {
+    assertTrue(answer.failed());
+    assertEquals(GATEWAY_TIMEOUT, ((HttpException) answer.cause()).status);
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long end = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      assertTrue("Timed out waiting for the condition", System.currentTimeMillis() < end);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testSkipExpiredCall() throws InterruptedException {
+    client.requestTimeout = 100;
+    useAllConnections();
+    List<AsyncResult<byte[]>> answers = new CopyOnWriteArrayList<>();
+    List<Handler<AsyncResult<byte[]>>> invoked = submit("expired", answers);
+    assertEquals(1, client.getQueueSize());
+
+    //The deadline answers the queued call and frees the queue
+    waitFor(() -> answers.size() == 1);
+    assertTimeout(answers.get(0));
+    assertEquals(0, client.getQueueSize());
+
+    //A free connection is not used for the expired call
+    int usedConnections = client.getUsedConnections();
+    running.get(0).handle(Future.succeededFuture(new byte[0]));
+    assertTrue(invoked.isEmpty());
+    assertEquals(1, answers.size());
+    assertEquals(usedConnections - 1, client.getUsedConnections());
+  }
+
+  @Test
+  public void testTimeoutCallWhichCannotCompleteInTime() {
+    //The remote function needs longer than the time, which is left for the queued call
+    client.recalculatePerformance(2 * client.getRequestTimeout(), TimeUnit.MILLISECONDS, false, 0);
+    useAllConnections();
+    List<AsyncResult<byte[]>> answers = new ArrayList<>();
+    List<Handler<AsyncResult<byte[]>>> invoked = submit("late", answers);
+    assertEquals(1, client.getQueueSize());
+
+    int usedConnections = client.getUsedConnections();
+    running.get(0).handle(Future.succeededFuture(new byte[0]));
+    assertEquals(1, answers.size());
+    assertTimeout(answers.get(0));
+    assertTrue(invoked.isEmpty());
+    assertEquals(0, client.getQueueSize());
+    assertEquals(usedConnections - 1, client.getUsedConnections());
+  }
+
+  @Test
+  public void testAbandonOnlyQueuedCall() {
+    while (client.getUsedConnections() < client.getConcurrencyLimit() - 1) {
+      start();
+    }
+    List<AsyncResult<byte[]>> runningAnswers = new ArrayList<>();
+    List<Handler<AsyncResult<byte[]>>> runningInvoked = submit("running", runningAnswers);
+    List<AsyncResult<byte[]>> queuedAnswers = new ArrayList<>();
+    List<Handler<AsyncResult<byte[]>>> queuedInvoked = submit("queued", queuedAnswers);
+    assertEquals(1, runningInvoked.size());
+    assertEquals(1, client.getQueueSize());
+
+    //A running call is neither answered nor cancelled, when its request is abandoned
+    client.abandon(MarkerFactory.getDetachedMarker("running"));
+    assertTrue(runningAnswers.isEmpty());
+    assertTrue(client.cancelled.isEmpty());
+    assertEquals(1, client.getQueueSize());
+
+    client.abandon(MarkerFactory.getDetachedMarker("queued"));
+    assertEquals(1, queuedAnswers.size());
+    assertTimeout(queuedAnswers.get(0));
+    assertEquals(0, client.getQueueSize());
+
+    //The abandoned call is not invoked, when a connection becomes free, the running call still gets its response
+    runningInvoked.get(0).handle(Future.succeededFuture(new byte[0]));
+    assertTrue(queuedInvoked.isEmpty());
+    assertEquals(1, queuedAnswers.size());
+    assertEquals(1, runningAnswers.size());
+    assertTrue(runningAnswers.get(0).succeeded());
+  }
+
+  @Test
+  public void testDeadlineRacingResponse() throws InterruptedException {
+    client.requestTimeout = 20;
+    List<List<AsyncResult<byte[]>>> allAnswers = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      List<AsyncResult<byte[]>> answers = new CopyOnWriteArrayList<>();
+      allAnswers.add(answers);
+      List<Handler<AsyncResult<byte[]>>> invoked = submit("race" + i, answers);
+      assertEquals(1, invoked.size());
+      //Respond around the deadline, so that the response and the deadline timer race each other
+      Thread.sleep(client.requestTimeout - 2 + i % 5);
+      invoked.get(0).handle(Future.succeededFuture(new byte[0]));
+    }
+
+    //Wait for the deadline timers of all calls
+    Thread.sleep(2 * client.requestTimeout);
+    for (List<AsyncResult<byte[]>> answers : allAnswers) {
+      assertEquals(1, answers.size());
+      if (answers.get(0).failed()) {
+        assertTimeout(answers.get(0));
+      }
+    }
+    assertEquals(0, client.getUsedConnections());
+  }
+
+  /**
+   * Submits a request, whose callback reports the given parsed response, like the RPC client does before it checks the response.
+   *
+   * @param answers the list, to which all answers of the request are added
+   * @return The list, to which the handler of the invocation is added, once the request is invoked
+   */
+  private List<Handler<AsyncResult<byte[]>>> submit(String marker, ErrorResponse response, List<AsyncResult<byte[]>> answers) {
+    List<Handler<AsyncResult<byte[]>>> invoked = new CopyOnWriteArrayList<>();
+    client.submit(MarkerFactory.getDetachedMarker(marker), 1, RequestPriority.DEFAULT, invoked::add, r -> {
+      client.responseParsed(MarkerFactory.getDetachedMarker(marker), response);
+      answers.add(r);
+    });
+    return invoked;
+  }
+
+  @Test
+  public void testTimeoutResponseDecreasesLimit() {
+    assertTrue(QueueingRemoteFunctionClient.isOverloadResponse(new ErrorResponse().withError(XyzError.TIMEOUT)));
+    assertFalse(QueueingRemoteFunctionClient.isOverloadResponse(new ErrorResponse().withError(XyzError.EXCEPTION)));
+
+    //Other errors of the connector don't show an overload
+    List<AsyncResult<byte[]>> answers = new ArrayList<>();
+    submit("error", new ErrorResponse().withError(XyzError.EXCEPTION), answers).get(0).handle(Future.succeededFuture(new byte[0]));
+    assertEquals(1, answers.size());
+    assertEquals(MAX_CONNECTIONS, client.getConcurrencyLimit());
+
+    //A successful invocation, whose response is a timeout, decreases the limit like a failed one
+    submit("timeout", new ErrorResponse().withError(XyzError.TIMEOUT), answers).get(0).handle(Future.succeededFuture(new byte[0]));
+    assertEquals(2, answers.size());
+    assertEquals(MAX_CONNECTIONS - 1, client.getConcurrencyLimit());
+    assertEquals(0, client.getUsedConnections());
+  }
+
+  @Test
+  public void testCancelledTimeoutResponseKeepsLimit() {
+    List<AsyncResult<byte[]>> answers = new ArrayList<>();
+    List<Handler<AsyncResult<byte[]>>> invoked = submit("cancelled", new ErrorResponse().withError(XyzError.TIMEOUT), answers);
+    client.cancel(MarkerFactory.getDetachedMarker("cancelled"));
+    assertEquals(1, client.cancelled.size());
+
+    //The timeout is caused by the cancellation of the hub, not by the load of the remote function
+    invoked.get(0).handle(Future.succeededFuture(new byte[0]));
+    assertEquals(1, answers.size());
+    assertEquals(MAX_CONNECTIONS, client.getConcurrencyLimit());
+    assertEquals(0, client.getUsedConnections());
+  }
+
+  private long[] calculateQueueByteSizes(double[] priorities, long[] queuedByteSizes, double[] arrivalRates, double[] throughputs) {
+    return QueueingRemoteFunctionClient.calculateQueueByteSizes(QueueingRemoteFunctionClient.GLOBAL_MAX_QUEUE_BYTE_SIZE,
+        minQueueByteSize, priorities, queuedByteSizes, arrivalRates, throughputs);
+  }
+
+  @Test
+  public void testQueueByteSizesUseWholeMemory() {
+    double[] priorities = {1d / 3, 1d / 3, 1d / 3};
+    long[] queuedByteSizes = {0, 7, 0};
+    assertEquals(QueueingRemoteFunctionClient.GLOBAL_MAX_QUEUE_BYTE_SIZE,
+        Arrays.stream(calculateQueueByteSizes(priorities, queuedByteSizes, new double[]{0, 0, 0}, new double[]{0, 0, 0})).sum());
+    assertEquals(QueueingRemoteFunctionClient.GLOBAL_MAX_QUEUE_BYTE_SIZE,
+        Arrays.stream(calculateQueueByteSizes(priorities, queuedByteSizes, new double[]{3, 7, 11}, new double[]{3, 5, 2})).sum());
+  }
+
+  @Test
+  public void testIdleQueueKeepsFloor() {
+    long[] sizes = calculateQueueByteSizes(new double[]{0.5d, 0.25d, 0.25d}, new long[]{0, 0, 0}, new double[]{100, 0, 0},
+        new double[]{100, 0, 0});
+    assertEquals(minQueueByteSize, sizes[1]);
+    assertEquals(minQueueByteSize, sizes[2]);
+
+    //The floor is limited by the static share, but covers the bytes, which are currently queued
+    sizes = calculateQueueByteSizes(new double[]{0.95d, 0.05d}, new long[]{0, 0}, new double[]{100, 0}, new double[]{100, 0});
+    assertEquals((long) (0.05d * QueueingRemoteFunctionClient.GLOBAL_MAX_QUEUE_BYTE_SIZE), sizes[1]);
+    sizes = calculateQueueByteSizes(new double[]{0.5d, 0.5d}, new long[]{0, 2 * minQueueByteSize}, new double[]{100, 0},
+        new double[]{100, 0});
+    assertEquals(2 * minQueueByteSize, sizes[1]);
+  }
+
+  @Test
+  public void testDemandShiftsQueueMemory() {
+    double[] priorities = {0.5d, 0.5d};
+    long[] queuedByteSizes = {0, 0};
+    long[] idle = calculateQueueByteSizes(priorities, queuedByteSizes, new double[]{0, 0}, new double[]{0, 0});
+    assertEquals(idle[0], idle[1]);
+
+    //The busy client gets the memory, which the idle one does not use
+    long[] busy = calculateQueueByteSizes(priorities, queuedByteSizes, new double[]{50, 0}, new double[]{50, 0});
+    assertTrue(busy[0] > idle[0]);
+    assertEquals(minQueueByteSize, busy[1]);
+
+    //A client, whose arrivals exceed its throughput, gets more than one with the same arrival rate, which keeps up
+    long[] overloaded = calculateQueueByteSizes(priorities, queuedByteSizes, new double[]{50, 50}, new double[]{50, 10});
+    assertTrue(overloaded[1] > overloaded[0]);
+  }
+
+  private static class TestClient extends QueueingRemoteFunctionClient {
+
+    /**
+     * The markers of the cancelled invocations.
+     */
+    final List<Marker> cancelled = new CopyOnWriteArrayList<>();
+    volatile long requestTimeout = REQUEST_TIMEOUT;
+
+    TestClient(Connector connectorConfig) {
+      super(connectorConfig);
+    }
+
+    @Override
+    long getRequestTimeout() {
+      return requestTimeout;
+    }
+
+    @Override
+    protected void cancelInvocation(Marker marker) {
+      cancelled.add(marker);
+    }
+
+    @Override
+    protected void invoke(Marker marker, byte[] bytes, Handler<AsyncResult<byte[]>> callback) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
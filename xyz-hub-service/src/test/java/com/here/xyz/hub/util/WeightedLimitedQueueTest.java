@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.hub.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class WeightedLimitedQueueTest {
+
+  private static WeightedLimitedQueue<Element> createQueue(int[] weights, double[] byteShares, long maxByteSize) {
+    WeightedLimitedQueue<Element> queue = new WeightedLimitedQueue<>(weights, byteShares, e -> e.elementClass);
+    queue.setMaxSize(Long.MAX_VALUE);
+    queue.setMaxByteSize(maxByteSize);
+    return queue;
+  }
+
+  @Test
+  public void testWeightedRemovalOrder() {
+    WeightedLimitedQueue<Element> queue = createQueue(new int[]{2, 1}, new double[]{0.5d, 0.5d}, 100);
+    for (int i = 0; i < 4; i++) {
+      queue.add(new Element(0, 1));
+      queue.add(new Element(1, 1));
+    }
+
+    List<Integer> classes = new ArrayList<>();
+    Element removed;
+    while ((removed = queue.remove()) != null) {
+      classes.add(removed.elementClass);
+    }
+    // The smooth weighted round robin interleaves the classes according to their weights, the rest is drained once a class is empty
+    assertEquals(Arrays.asList(0, 1, 0, 0, 1, 0, 1, 1), classes);
+    assertEquals(0, queue.getSize());
+    assertEquals(0, queue.getByteSize());
+  }
+
+  @Test
+  public void testRemovalOrderWithinClass() {
+    WeightedLimitedQueue<Element> queue = createQueue(new int[]{1}, new double[]{1d}, 100);
+    Element first = new Element(0, 1);
+    Element second = new Element(0, 1);
+    queue.add(first);
+    queue.add(second);
+
+    assertEquals(first, queue.remove());
+    assertEquals(second, queue.remove());
+    assertNull(queue.remove());
+  }
+
+  @Test
+  public void testNoStarvation() {
+    WeightedLimitedQueue<Element> queue = createQueue(new int[]{4, 2, 1}, new double[]{0.5d, 0.3d, 0.2d}, 1000);
+    for (int i = 0; i < 100; i++) {
+      queue.add(new Element(0, 1));
+      queue.add(new Element(1, 1));
+    }
+    queue.add(new Element(2, 1));
+
+    // With the weights 4, 2 and 1 the lowest class must be served within one round of 7 removals, although the other classes are busy
+    boolean served = false;
+    for (int i = 0; i < 7 && !served; i++) {
+      served = queue.remove().elementClass == 2;
+    }
+    assertTrue(served);
+    assertEquals(0, queue.getSize(2));
+  }
+
+  @Test
+  public void testBorrowUnusedBytes() {
+    WeightedLimitedQueue<Element> queue = createQueue(new int[]{1, 1}, new double[]{0.5d, 0.5d}, 10);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Collections.emptyList(), queue.add(new Element(0, 1)));
+    }
+    // The first class uses the whole queue, as long as the second class does not need its share
+    assertEquals(10, queue.getSize(0));
+    assertEquals(10, queue.getByteSize());
+  }
+
+  @Test
+  public void testDiscardFromExceedingClass() {
+    WeightedLimitedQueue<Element> queue = createQueue(new int[]{1, 1}, new double[]{0.5d, 0.5d}, 10);
+    List<Element> borrowing = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Element e = new Element(0, 1);
+      borrowing.add(e);
+      queue.add(e);
+    }
+    queue.add(new Element(1, 1));
+    queue.add(new Element(1, 1));
+
+    // The second class stays within its share, so the oldest element of the borrowing class is discarded
+    assertEquals(Collections.singletonList(borrowing.get(0)), queue.add(new Element(1, 1)));
+    assertEquals(7, queue.getSize(0));
+    assertEquals(3, queue.getSize(1));
+
+    // A new element of the borrowing class discards an older element of its own class
+    assertEquals(Collections.singletonList(borrowing.get(1)), queue.add(new Element(0, 1)));
+    assertEquals(7, queue.getSize(0));
+    assertEquals(3, queue.getSize(1));
+    assertEquals(10, queue.getByteSize());
+  }
+
+  @Test
+  public void testDiscardOnShrink() {
+    WeightedLimitedQueue<Element> queue = createQueue(new int[]{1, 1}, new double[]{0.5d, 0.5d}, 10);
+    for (int i = 0; i < 7; i++) {
+      queue.add(new Element(0, 1));
+    }
+    for (int i = 0; i < 3; i++) {
+      queue.add(new Element(1, 1));
+    }
+
+    List<Element> discarded = queue.setMaxByteSize(6);
+    assertEquals(4, discarded.size());
+    discarded.forEach(e -> assertEquals(0, e.elementClass));
+    assertEquals(3, queue.getSize(0));
+    assertEquals(3, queue.getSize(1));
+  }
+
+  @Test
+  public void testDiscardTooLargeElement() {
+    WeightedLimitedQueue<Element> queue = createQueue(new int[]{1, 1}, new double[]{0.5d, 0.5d}, 10);
+    queue.add(new Element(1, 1));
+    Element tooLarge = new Element(0, 11);
+
+    assertEquals(Collections.singletonList(tooLarge), queue.add(tooLarge));
+    assertEquals(1, queue.getSize());
+  }
+
+  private static class Element implements ByteSizeAware {
+
+    final int elementClass;
+    final long byteSize;
+
+    Element(int elementClass, long byteSize) {
+      this.elementClass = elementClass;
+      this.byteSize = byteSize;
+    }
+
+    @Override
+    public long getByteSize() {
+      return byteSize;
+    }
+  }
+}
@@ -26,4 +26,49 @@ import com.fasterxml.jackson.annotation.JsonTypeName;
 @JsonTypeName(value = "DeleteFeaturesByTagEvent")
 public final class DeleteFeaturesByTagEvent extends QueryEvent<DeleteFeaturesByTagEvent> {
 
+  private int limit;
+  private String handle;
+
+  /**
+   * Returns the maximal number of features to delete by this event. If set, the features are deleted in small chunks and the response
+   * contains a handle, if more features need to be deleted. A value of zero or below deletes all features at once.
+   *
+   * @return the maximal number of features to delete.
+   */
+  @SuppressWarnings("unused")
+  public int getLimit() {
+    return limit;
+  }
+
+  @SuppressWarnings("WeakerAccess")
+  public void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+  @SuppressWarnings("unused")
+  public DeleteFeaturesByTagEvent withLimit(int limit) {
+    setLimit(limit);
+    return this;
+  }
+
+  /**
+   * Returns the handle, which was returned by the previous chunk, to continue the deletion.
+   *
+   * @return the handle or null, if the deletion starts with the first feature.
+   */
+  @SuppressWarnings("unused")
+  public String getHandle() {
+    return handle;
+  }
+
+  @SuppressWarnings("WeakerAccess")
+  public void setHandle(String handle) {
+    this.handle = handle;
+  }
+
+  @SuppressWarnings("unused")
+  public DeleteFeaturesByTagEvent withHandle(String handle) {
+    setHandle(handle);
+    return this;
+  }
 }
@@ -54,6 +54,8 @@ import java.util.Map;
     @JsonSubTypes.Type(value = CountFeaturesEvent.class, name = "CountFeaturesEvent"),
     @JsonSubTypes.Type(value = GetStatisticsEvent.class, name = "GetStatisticsEvent"),
     @JsonSubTypes.Type(value = HealthCheckEvent.class, name = "HealthCheckEvent"),
+    @JsonSubTypes.Type(value = IndexMaintenanceEvent.class, name = "IndexMaintenanceEvent"),
+    @JsonSubTypes.Type(value = CancelEvent.class, name = "CancelEvent"),
     @JsonSubTypes.Type(value = GetFeaturesByIdEvent.class, name = "GetFeaturesByIdEvent"),
     @JsonSubTypes.Type(value = LoadFeaturesEvent.class, name = "LoadFeaturesEvent")
 })
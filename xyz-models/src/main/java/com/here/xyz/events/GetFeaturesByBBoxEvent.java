@@ -30,6 +30,7 @@ public class GetFeaturesByBBoxEvent<T extends GetFeaturesByBBoxEvent> extends Sp
 
   private boolean clip;
   private BBox bbox;
+  private boolean binaryGeometry;
 
   @SuppressWarnings("unused")
   public Boolean getClip() {
@@ -62,4 +63,26 @@ public class GetFeaturesByBBoxEvent<T extends GetFeaturesByBBoxEvent> extends Sp
     //noinspection unchecked
     return (T) this;
   }
+
+  /**
+   * If true, the storage may return the geometries of the features base64 encoded in the TWKB format as "twkbGeometry" property instead
+   * of the "geometry" property. The precision of the coordinates may be reduced, so it should be only requested, if the features are
+   * further processed by the caller, for example when encoding vector tiles.
+   */
+  @SuppressWarnings("unused")
+  public Boolean getBinaryGeometry() {
+    return this.binaryGeometry;
+  }
+
+  @SuppressWarnings("WeakerAccess")
+  public void setBinaryGeometry(Boolean binaryGeometry) {
+    this.binaryGeometry = binaryGeometry != null && binaryGeometry;
+  }
+
+  @SuppressWarnings("unused")
+  public T withBinaryGeometry(boolean binaryGeometry) {
+    setBinaryGeometry(binaryGeometry);
+    //noinspection unchecked
+    return (T) this;
+  }
 }
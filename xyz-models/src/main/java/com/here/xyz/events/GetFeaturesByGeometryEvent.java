@@ -29,6 +29,8 @@ public class GetFeaturesByGeometryEvent extends SearchForFeaturesEvent<GetFeatur
 
   private int radius;
   private Geometry geometry;
+  private String refSpaceId;
+  private String refFeatureId;
 
   @SuppressWarnings("unused")
   public int getRadius() {
@@ -57,4 +59,42 @@ public class GetFeaturesByGeometryEvent extends SearchForFeaturesEvent<GetFeatur
     setGeometry(geometry);
     return this;
   }
+
+  /**
+   * The id of the space of the referenced feature, if the geometry is the geometry of a referenced feature.
+   */
+  @SuppressWarnings("unused")
+  public String getRefSpaceId() {
+    return refSpaceId;
+  }
+
+  @SuppressWarnings("unused")
+  public void setRefSpaceId(String refSpaceId) {
+    this.refSpaceId = refSpaceId;
+  }
+
+  @SuppressWarnings("unused")
+  public GetFeaturesByGeometryEvent withRefSpaceId(String refSpaceId) {
+    setRefSpaceId(refSpaceId);
+    return this;
+  }
+
+  /**
+   * The id of the referenced feature, if the geometry is the geometry of a referenced feature.
+   */
+  @SuppressWarnings("unused")
+  public String getRefFeatureId() {
+    return refFeatureId;
+  }
+
+  @SuppressWarnings("unused")
+  public void setRefFeatureId(String refFeatureId) {
+    this.refFeatureId = refFeatureId;
+  }
+
+  @SuppressWarnings("unused")
+  public GetFeaturesByGeometryEvent withRefFeatureId(String refFeatureId) {
+    setRefFeatureId(refFeatureId);
+    return this;
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.events;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+/**
+ * Maintain the indices and the statistics of the spaces in the storage. The event is sent periodically by a scheduler, so that the
+ * maintenance does not need to be done while serving requests.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonTypeName(value = "IndexMaintenanceEvent")
+public final class IndexMaintenanceEvent extends Event<IndexMaintenanceEvent> {
+
+  private int maxSpaces = 10;
+  private long minInterval = 0L;
+
+  /**
+   * Returns the maximal amount of spaces, for which indices are created by one maintenance run. The spaces with the fewest features are
+   * processed first.
+   *
+   * @return the maximal amount of spaces.
+   */
+  public int getMaxSpaces() {
+    return maxSpaces;
+  }
+
+  public void setMaxSpaces(int maxSpaces) {
+    this.maxSpaces = maxSpaces;
+  }
+
+  public IndexMaintenanceEvent withMaxSpaces(int maxSpaces) {
+    setMaxSpaces(maxSpaces);
+    return this;
+  }
+
+  /**
+   * Returns the minimal time in milliseconds between two maintenance runs for the same database. The storage connector skips the run, if
+   * the last one happened more recently.
+   *
+   * @return the minimal amount of milliseconds between two runs.
+   */
+  public long getMinInterval() {
+    return minInterval;
+  }
+
+  public void setMinInterval(long minInterval) {
+    this.minInterval = minInterval;
+  }
+
+  public IndexMaintenanceEvent withMinInterval(long minInterval) {
+    setMinInterval(minInterval);
+    return this;
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.models.geojson.coordinates;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * A reader for geometries in the Tiny Well-known Binary (TWKB) format, as produced by the PostGIS function ST_AsTWKB. The coordinates are
+ * decoded directly into JTS geometries, which are created by the {@link JTSHelper#factory}.
+ *
+ * Implemented following: https://github.com/TWKB/Specification/blob/master/twkb.md
+ */
+public class TWKBReader {
+
+  private static final int POINT = 1;
+  private static final int LINESTRING = 2;
+  private static final int POLYGON = 3;
+  private static final int MULTIPOINT = 4;
+  private static final int MULTILINESTRING = 5;
+  private static final int MULTIPOLYGON = 6;
+  private static final int GEOMETRYCOLLECTION = 7;
+
+  private final byte[] data;
+  private int offset;
+
+  private int dimensions;
+  private boolean hasZ;
+  private boolean hasIdList;
+  private double[] scales;
+  private long[] last;
+
+  private TWKBReader(byte[] data) {
+    this.data = data;
+  }
+
+  /**
+   * Reads the given TWKB encoded geometry.
+   *
+   * @param twkb the TWKB encoded geometry.
+   * @return the JTS geometry.
+   * @throws IllegalArgumentException if the given bytes are not a valid TWKB geometry.
+   */
+  public static Geometry read(byte[] twkb) {
+    if (twkb == null) {
+      return null;
+    }
+
+    try {
+      return new TWKBReader(twkb).readGeometry();
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Unexpected end of the TWKB geometry", e);
+    }
+  }
+
+  private Geometry readGeometry() {
+    final int typeAndPrecision = data[offset++] & 0xFF;
+    final int type = typeAndPrecision & 0x0F;
+    final int precision = decodeZigZag(typeAndPrecision >> 4);
+
+    final int metadata = data[offset++] & 0xFF;
+    final boolean hasBBox = (metadata & 0x01) != 0;
+    final boolean hasSize = (metadata & 0x02) != 0;
+    hasIdList = (metadata & 0x04) != 0;
+    final boolean hasExtendedDimensions = (metadata & 0x08) != 0;
+    final boolean isEmpty = (metadata & 0x10) != 0;
+
+    hasZ = false;
+    boolean hasM = false;
+    int zPrecision = 0;
+    int mPrecision = 0;
+    if (hasExtendedDimensions) {
+      final int extended = data[offset++] & 0xFF;
+      hasZ = (extended & 0x01) != 0;
+      hasM = (extended & 0x02) != 0;
+      zPrecision = (extended >> 2) & 0x07;
+      mPrecision = (extended >> 5) & 0x07;
+    }
+
+    dimensions = 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+    scales = new double[dimensions];
+    scales[0] = scales[1] = Math.pow(10, -precision);
+    if (hasZ) {
+      scales[2] = Math.pow(10, -zPrecision);
+    }
+    if (hasM) {
+      scales[dimensions - 1] = Math.pow(10, -mPrecision);
+    }
+    last = new long[dimensions];
+
+    if (hasSize) {
+      readUnsignedVarInt();
+    }
+    if (hasBBox && !isEmpty) {
+      for (int i = 0; i < dimensions * 2; i++) {
+        readSignedVarInt();
+      }
+    }
+
+    switch (type) {
+      case POINT:
+        return isEmpty ? JTSHelper.factory.createPoint((Coordinate) null) : JTSHelper.factory.createPoint(readCoordinate());
+      case LINESTRING:
+        return isEmpty ? JTSHelper.factory.createLineString((Coordinate[]) null) : readLineString();
+      case POLYGON:
+        return isEmpty ? JTSHelper.factory.createPolygon((LinearRing) null, null) : readPolygon();
+      case MULTIPOINT: {
+        final Point[] points = new Point[isEmpty ? 0 : readCount()];
+        skipIdList(points.length);
+        for (int i = 0; i < points.length; i++) {
+          points[i] = JTSHelper.factory.createPoint(readCoordinate());
+        }
+        return JTSHelper.factory.createMultiPoint(points);
+      }
+      case MULTILINESTRING: {
+        final LineString[] lineStrings = new LineString[isEmpty ? 0 : readCount()];
+        skipIdList(lineStrings.length);
+        for (int i = 0; i < lineStrings.length; i++) {
+          lineStrings[i] = readLineString();
+        }
+        return JTSHelper.factory.createMultiLineString(lineStrings);
+      }
+      case MULTIPOLYGON: {
+        final Polygon[] polygons = new Polygon[isEmpty ? 0 : readCount()];
+        skipIdList(polygons.length);
+        for (int i = 0; i < polygons.length; i++) {
+          polygons[i] = readPolygon();
+        }
+        return JTSHelper.factory.createMultiPolygon(polygons);
+      }
+      case GEOMETRYCOLLECTION: {
+        final Geometry[] geometries = new Geometry[isEmpty ? 0 : readCount()];
+        skipIdList(geometries.length);
+        for (int i = 0; i < geometries.length; i++) {
+          geometries[i] = readGeometry();
+        }
+        return JTSHelper.factory.createGeometryCollection(geometries);
+      }
+      default:
+        throw new IllegalArgumentException("Unsupported TWKB geometry type " + type);
+    }
+  }
+
+  private LineString readLineString() {
+    return JTSHelper.factory.createLineString(readCoordinates(readCount()));
+  }
+
+  private Polygon readPolygon() {
+    final int rings = readCount();
+    if (rings == 0) {
+      return JTSHelper.factory.createPolygon((LinearRing) null, null);
+    }
+
+    final LinearRing shell = JTSHelper.factory.createLinearRing(readCoordinates(readCount()));
+    final LinearRing[] holes = new LinearRing[rings - 1];
+    for (int i = 0; i < holes.length; i++) {
+      holes[i] = JTSHelper.factory.createLinearRing(readCoordinates(readCount()));
+    }
+    return JTSHelper.factory.createPolygon(shell, holes);
+  }
+
+  private Coordinate[] readCoordinates(int count) {
+    final Coordinate[] coordinates = new Coordinate[count];
+    for (int i = 0; i < count; i++) {
+      coordinates[i] = readCoordinate();
+    }
+    return coordinates;
+  }
+
+  /**
+   * Reads the next coordinate, which is delta encoded against the previous coordinate of the same geometry. A measure is read, but not
+   * kept, because the GeoJSON geometries do not support it.
+   */
+  private Coordinate readCoordinate() {
+    for (int i = 0; i < dimensions; i++) {
+      last[i] += readSignedVarInt();
+    }
+
+    if (hasZ) {
+      return new Coordinate(last[0] * scales[0], last[1] * scales[1], last[2] * scales[2]);
+    }
+    return new Coordinate(last[0] * scales[0], last[1] * scales[1]);
+  }
+
+  private void skipIdList(int count) {
+    if (hasIdList) {
+      for (int i = 0; i < count; i++) {
+        readSignedVarInt();
+      }
+    }
+  }
+
+  private int readCount() {
+    final long count = readUnsignedVarInt();
+    if (count < 0 || count > data.length - offset) {
+      throw new IllegalArgumentException("Invalid element count " + count + " in the TWKB geometry");
+    }
+    return (int) count;
+  }
+
+  private long readUnsignedVarInt() {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = data[offset++];
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private long readSignedVarInt() {
+    final long value = readUnsignedVarInt();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static int decodeZigZag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
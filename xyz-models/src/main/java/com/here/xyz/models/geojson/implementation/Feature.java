@@ -20,12 +20,14 @@
 package com.here.xyz.models.geojson.implementation;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.here.xyz.Extensible;
 import com.here.xyz.Typed;
 import com.here.xyz.models.geojson.coordinates.BBox;
 import com.here.xyz.models.geojson.exceptions.InvalidGeometryException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
 
@@ -167,6 +169,17 @@ public class Feature extends Extensible<Feature> implements Typed {
     return this;
   }
 
+  /**
+   * Sets the geometry from its base64 encoded TWKB representation. Storage connectors may return the geometry in this form instead of a
+   * GeoJSON geometry, if requested by the event, so that it is decoded without parsing the coordinates from JSON.
+   *
+   * @param twkbGeometry the base64 encoded TWKB geometry.
+   */
+  @JsonSetter("twkbGeometry")
+  private void setTwkbGeometry(String twkbGeometry) {
+    setGeometry(twkbGeometry == null ? null : Geometry.convertTWKBGeometry(Base64.getDecoder().decode(twkbGeometry)));
+  }
+
   public Properties getProperties() {
     return properties;
   }
@@ -24,6 +24,7 @@ import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.here.xyz.Typed;
 import com.here.xyz.models.geojson.coordinates.BBox;
 import com.here.xyz.models.geojson.coordinates.JTSHelper;
+import com.here.xyz.models.geojson.coordinates.TWKBReader;
 import com.here.xyz.models.geojson.exceptions.InvalidGeometryException;
 import java.util.List;
 
@@ -55,6 +56,22 @@ public abstract class Geometry implements Typed {
     return (T) JTSHelper.fromGeometry(jtsGeometry);
   }
 
+  /**
+   * Convert a geometry in the TWKB format into a {@link Geometry Geo JSON geometry}. The decoded JTS geometry is not shared with any
+   * caller, so it is kept as cached JTS geometry of the result.
+   *
+   * @param twkb the geometry in the TWKB format.
+   * @return the Geo JSON geometry or null, if conversion is not possible or results in null.
+   */
+  static Geometry convertTWKBGeometry(byte[] twkb) {
+    final com.vividsolutions.jts.geom.Geometry jtsGeometry = TWKBReader.read(twkb);
+    final Geometry geometry = convertJTSGeometry(jtsGeometry);
+    if (geometry != null) {
+      geometry.geomCache = jtsGeometry;
+    }
+    return geometry;
+  }
+
   /**
    * A helper method that validates the given object as GeoJSON Point coordinates. When the method returns, raw is guaranteed to be a
    * List&lt;Number&gt;.
@@ -17,14 +17,25 @@
  * License-Filename: LICENSE
  */
 
-package com.here.xyz.hub.connectors.models;
+package com.here.xyz.responses;
 
-import com.here.xyz.responses.XyzResponse;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonTypeName;
 
-public class BinaryResponse extends XyzResponse {
+/**
+ * A response, which contains binary data, for example an encoded vector tile.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonTypeName(value = "BinaryResponse")
+public class BinaryResponse extends XyzResponse<BinaryResponse> {
 
   private byte[] bytes;
 
+  /**
+   * Returns the binary data of this response.
+   *
+   * @return the binary data.
+   */
   public byte[] getBytes() {
     return bytes;
   }
@@ -29,6 +29,7 @@ import com.here.xyz.models.geojson.implementation.FeatureCollection;
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonSubTypes({
+    @JsonSubTypes.Type(value = BinaryResponse.class, name = "BinaryResponse"),
     @JsonSubTypes.Type(value = CountResponse.class, name = "CountResponse"),
     @JsonSubTypes.Type(value = ErrorResponse.class, name = "ErrorResponse"),
     @JsonSubTypes.Type(value = HealthStatus.class, name = "HealthStatus"),
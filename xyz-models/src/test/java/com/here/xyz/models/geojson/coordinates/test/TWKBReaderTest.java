@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.models.geojson.coordinates.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.here.xyz.models.geojson.coordinates.TWKBReader;
+import com.here.xyz.models.geojson.implementation.Feature;
+import com.here.xyz.models.geojson.implementation.Polygon;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.Point;
+import java.util.Base64;
+import org.junit.Test;
+
+public class TWKBReaderTest {
+
+  private static final byte[] POLYGON_Z = bytes(0x23, 0x08, 0x01, 0x01, 0x04, 0, 0, 0, 20, 0, 2, 0, 20, 2, 19, 19, 3);
+
+  private static byte[] bytes(int... values) {
+    final byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testPoint() {
+    final Geometry geometry = TWKBReader.read(bytes(0x01, 0x00, 0xC8, 0x01, 0x01));
+    assertTrue(geometry instanceof Point);
+    assertEquals(new Coordinate(100, -1), geometry.getCoordinate());
+  }
+
+  @Test
+  public void testLineString() {
+    final Geometry geometry = TWKBReader.read(bytes(0x02, 0x00, 0x02, 0x02, 0x02, 0x08, 0x08));
+    assertTrue(geometry instanceof LineString);
+    assertEquals(new Coordinate(1, 1), geometry.getCoordinates()[0]);
+    assertEquals(new Coordinate(5, 5), geometry.getCoordinates()[1]);
+  }
+
+  @Test
+  public void testPolygonWithAltitudeAndPrecision() {
+    final Geometry geometry = TWKBReader.read(POLYGON_Z);
+    assertTrue(geometry instanceof com.vividsolutions.jts.geom.Polygon);
+    final Coordinate[] coordinates = geometry.getCoordinates();
+    assertEquals(4, coordinates.length);
+    assertEquals(1, coordinates[2].x, 0);
+    assertEquals(1, coordinates[2].y, 0);
+    assertEquals(2, coordinates[2].z, 0);
+    assertTrue(coordinates[0].equals3D(coordinates[3]));
+  }
+
+  @Test
+  public void testMultiPointWithIdList() {
+    final Geometry geometry = TWKBReader.read(bytes(0x04, 0x04, 0x02, 10, 12, 2, 2, 4, 3));
+    assertTrue(geometry instanceof MultiPoint);
+    assertEquals(2, geometry.getNumGeometries());
+    assertEquals(new Coordinate(3, -1), geometry.getGeometryN(1).getCoordinate());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncated() {
+    TWKBReader.read(bytes(0x02, 0x00, 0x02, 0x02));
+  }
+
+  @Test
+  public void testFeature() throws Exception {
+    final String json = "{\"type\":\"Feature\",\"id\":\"a\",\"twkbGeometry\":\"" + Base64.getEncoder().encodeToString(POLYGON_Z) + "\"}";
+    final Feature feature = new ObjectMapper().readValue(json, Feature.class);
+
+    assertTrue(feature.getGeometry() instanceof Polygon);
+    assertEquals(1, ((Polygon) feature.getGeometry()).getCoordinates().get(0).get(1).getLongitude(), 0);
+    assertEquals(1, ((Polygon) feature.getGeometry()).getCoordinates().get(0).get(1).getAltitude(), 0);
+    assertSame(feature.getGeometry().getJTSGeometry(), feature.getGeometry().getJTSGeometry());
+    assertTrue(new ObjectMapper().writeValueAsString(feature).contains("\"geometry\":{\"type\":\"Polygon\""));
+  }
+}
@@ -19,9 +19,13 @@
 
 package com.here.xyz.models.geojson.implementation;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import org.junit.Test;
 
 public class TestGeometry {
@@ -68,4 +72,17 @@ public class TestGeometry {
     geometryCollection = mp.readValue(json, GeometryCollection.class);
     geometryCollection.validate();
   }
+
+  @Test
+  public void test_convertJTSGeometry() {
+    final com.vividsolutions.jts.geom.Point jtsPoint = new GeometryFactory().createPoint(new Coordinate(1, 2));
+    final Point point = Geometry.convertJTSGeometry(jtsPoint);
+
+    // The geometry of the caller may be changed later, so it must not be kept as cached JTS geometry
+    assertNotSame(jtsPoint, point.getJTSGeometry());
+    jtsPoint.getCoordinate().x = 3;
+    jtsPoint.geometryChanged();
+    assertEquals(1, point.getJTSGeometry().getCoordinate().x, 0);
+    assertEquals(1, point.getCoordinates().getLongitude(), 0);
+  }
 }
@@ -26,7 +26,6 @@ import com.here.xyz.events.PropertyQuery;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -88,14 +87,14 @@ public class Capabilities {
     static long CACHE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(3);
 
     static List<String> getIndexList(String space, PSQLXyzConnector connector) throws SQLException {
-      IndexList indexList = cachedIndices.get(space);
+      IndexList indexList = connector.metadata.indexLists.get(space);
       if (indexList != null && indexList.expiry >= System.currentTimeMillis()) {
         return indexList.indices;
       }
 
       indexList = connector.executeQuery(new SQLQuery("SELECT idx_available FROM xyz_config.xyz_idxs_status WHERE spaceid=?", space),
           Capabilities::rsHandler);
-      cachedIndices.put(space, indexList);
+      connector.metadata.indexLists.put(space, indexList);
       return indexList.indices;
     }
 
@@ -106,8 +105,6 @@ public class Capabilities {
 
     List<String> indices;
     long expiry;
-
-    static Map<String, IndexList> cachedIndices = new HashMap<>();
   }
 
   public static IndexList rsHandler(ResultSet rs) {
@@ -120,8 +120,51 @@ class H3
           + "   where 1 = 1 "
           + "     and omni = true "
           + "     %1$s "
+          + "  ) outer_v ",
+  /* The middle and end part, which group the precomputed H3 cells of the features by their parent cells. */
+  h3sqlCellMid =
+      "                    , oo.geo ) as omni, "
+          + "           oo.geo "
+          + "     from "
+          + "     ( "
+          + "      select to_hex(cc.h3) as h3,"
+          + "              count(1) as qty,"
+          + "              min(cc.unnest) as min,"
+          + "              max(cc.unnest) as max,"
+          + "              sum(cc.unnest) as sum,"
+          + "              round( avg(cc.unnest ),5) as avg,  "
+          + "              percentile_cont(0.5) within group (order by cc.unnest) as median,"
+          + "              h3togeoboundarydeg(cc.h3)::geometry(Polygon, 4326) AS geo"
+          + "      from "
+          + "      ( select %2$s as h3, %1$s as unnest ",
+  h3sqlCellEnd =
+            "      ) cc "
+          + "      group by h3 "
+          + "     ) oo "
+          + "     where 1 = 1 "
+          + "   ) "
+          + "   select * from h3cluster "
+          + "   where 1 = 1 "
+          + "     and omni = true "
+          + "     %1$s "
           + "  ) outer_v ";
 
+  /**
+   * The resolution of the precomputed H3 cells.
+   */
+  static final int MAX_RESOLUTION = 15;
+
+  /**
+   * Returns the SQL expression, which calculates the parent cell with the given resolution of the H3 cells in the given column. The
+   * calculation only sets the bits of the resolution and of the unused digits, so that the cells of all resolutions are a prefix of the
+   * precomputed cell with the maximal resolution.
+   */
+  static String h3ParentSql(String column, int resolution) {
+    final long resolutionMask = 0xFL << 52;
+    final long unusedDigits = (1L << (3 * (MAX_RESOLUTION - resolution))) - 1;
+    return String.format("((%s & %d) | %d)::h3index", column, ~resolutionMask & ~unusedDigits, ((long) resolution << 52) | unusedDigits);
+  }
+
 
   static int[] MaxResForZoom = {2, 2, 2, 2, 3, 4, 4, 5, 6, 6, 7, 8, 9, 9, 10, 11, 11, 12, 13, 14, 14, 15, 15};
 
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.psql;
+
+import com.here.xyz.psql.Capabilities.IndexList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache for the metadata of a database, which is kept per ECPS, so that warm connector instances do not need to query the metadata
+ * again for each event. The cached information is invalidated, when the connector modifies the according objects itself or when an
+ * error shows, that the information is outdated.
+ */
+class MetadataCache {
+
+  private static final Map<String, MetadataCache> caches = new ConcurrentHashMap<>();
+
+  /**
+   * The tables, which are known to exist. Only the existence is cached, because a missing table may be created by any other instance.
+   */
+  private final Set<String> tables = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The available indices per table.
+   */
+  final Map<String, IndexList> indexLists = new ConcurrentHashMap<>();
+
+  /**
+   * The tables, which are known to maintain the column with the H3 cells of the features.
+   */
+  final Set<String> tablesWithH3Cell = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The tables, which are known to not have the complete column with the H3 cells yet, mapped to the time of the next check.
+   */
+  final Map<String, Long> tablesWithoutH3Cell = new ConcurrentHashMap<>();
+
+  /**
+   * The tables, which are known to maintain the column with the quadkeys of the features.
+   */
+  final Set<String> tablesWithQuadkey = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The tables, which are known to not have the complete column with the quadkeys yet, mapped to the time of the next check.
+   */
+  final Map<String, Long> tablesWithoutQuadkey = new ConcurrentHashMap<>();
+
+  /**
+   * The serial numbers, up to which the index maintenance filled the maintained columns, by table and column.
+   */
+  final Map<String, Long> maintainedColumnProgress = new ConcurrentHashMap<>();
+
+  /**
+   * The partition levels of the tables, a level of zero stands for a table without partitions.
+   */
+  final Map<String, Integer> partitionLevels = new ConcurrentHashMap<>();
+
+  /**
+   * The version of the SQL functions, which are known to be installed, or zero if not yet verified.
+   */
+  private volatile int extensionVersion;
+
+  /**
+   * Whether the schemas and extensions for the property search are known to be installed.
+   */
+  private volatile boolean propertySearchSetUp;
+
+  /**
+   * Whether the H3 functions are known to be up to date.
+   */
+  private volatile boolean h3UpToDate;
+
+  /**
+   * Returns the metadata cache for the given ECPS.
+   */
+  static MetadataCache getInstance(String ecps) {
+    return caches.computeIfAbsent(ecps, k -> new MetadataCache());
+  }
+
+  boolean hasTable(String table) {
+    return table != null && tables.contains(table);
+  }
+
+  void addTable(String table) {
+    if (table != null) {
+      tables.add(table);
+    }
+  }
+
+  /**
+   * Removes all cached information about the given table.
+   */
+  void invalidateTable(String table) {
+    if (table != null) {
+      tables.remove(table);
+      indexLists.remove(table);
+      tablesWithH3Cell.remove(table);
+      tablesWithoutH3Cell.remove(table);
+      tablesWithQuadkey.remove(table);
+      tablesWithoutQuadkey.remove(table);
+      partitionLevels.remove(table);
+    }
+  }
+
+  /**
+   * Returns true, if the SQL functions with the given version and, if requested, the property search are known to be installed.
+   */
+  boolean isSetUp(int extensionVersion, boolean propertySearch) {
+    return this.extensionVersion == extensionVersion && (!propertySearch || propertySearchSetUp);
+  }
+
+  void setSetUp(int extensionVersion, boolean propertySearch) {
+    this.extensionVersion = extensionVersion;
+    this.propertySearchSetUp |= propertySearch;
+  }
+
+  boolean isH3UpToDate() {
+    return h3UpToDate;
+  }
+
+  void setH3UpToDate(boolean h3UpToDate) {
+    this.h3UpToDate = h3UpToDate;
+  }
+
+  /**
+   * Removes all cached information, for example after the schema was found to be missing.
+   */
+  void invalidate() {
+    tables.clear();
+    indexLists.clear();
+    tablesWithH3Cell.clear();
+    tablesWithoutH3Cell.clear();
+    tablesWithQuadkey.clear();
+    tablesWithoutQuadkey.clear();
+    partitionLevels.clear();
+    extensionVersion = 0;
+    propertySearchSetUp = false;
+    h3UpToDate = false;
+  }
+}
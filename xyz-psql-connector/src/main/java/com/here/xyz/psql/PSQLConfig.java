@@ -27,8 +27,11 @@ import com.here.xyz.events.Event;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
@@ -51,10 +54,16 @@ class PSQLConfig {
   static final String PSQL_PORT = "PSQL_PORT";
 
   /**
-   * A constant that is normally used as environment variable name for the host.
+   * A constant that is normally used as environment variable name for the hosts of the read replicas, separated by comma.
    */
   private static final String PSQL_REPLICA_HOST = "PSQL_REPLICA_HOST";
 
+  /**
+   * A constant that is normally used as environment variable name for the maximal replication lag in milliseconds of a replica, which is
+   * used for reads.
+   */
+  private static final String PSQL_REPLICA_MAX_LAG = "PSQL_REPLICA_MAX_LAG";
+
   /**
    * A constant that is normally used as environment variable name for the database.
    */
@@ -82,7 +91,7 @@ class PSQLConfig {
   /**
    * The maximal amount of concurrent connections, default is one, normally only increased for embedded lambda.
    */
-  private final static String PSQL_MAX_CONN = "PSQL_MAX_CONN";
+  static final String PSQL_MAX_CONN = "PSQL_MAX_CONN";
 
   /**
    * The encrypted connector parameters.
@@ -127,6 +136,26 @@ class PSQLConfig {
     return (String) event.getConnectorParams().get("ecps");
   }
 
+  /**
+   * Returns the numeric connector parameter with the given name or the default value, if the parameter is not set.
+   */
+  static int readConnectorParam(Event event, String name, int defaultValue) {
+    if (event == null || event.getConnectorParams() == null || !(event.getConnectorParams().get(name) instanceof Number)) {
+      return defaultValue;
+    }
+    return ((Number) event.getConnectorParams().get(name)).intValue();
+  }
+
+  /**
+   * Returns the boolean connector parameter with the given name or the default value, if the parameter is not set.
+   */
+  static boolean readConnectorParam(Event event, String name, boolean defaultValue) {
+    if (event == null || event.getConnectorParams() == null || !(event.getConnectorParams().get(name) instanceof Boolean)) {
+      return defaultValue;
+    }
+    return (Boolean) event.getConnectorParams().get(name);
+  }
+
 
   /**
    * Returns the maximal amount of concurrent connections to be used.
@@ -155,12 +184,29 @@ class PSQLConfig {
   }
 
   /**
-   * Returns the host of the PostgreSQL service.
+   * Returns the hosts of the read replicas of the PostgreSQL service.
    *
-   * @return the host of the PostgreSQL service.
+   * @return the hosts of the read replicas, an empty list if there are none.
    */
-  String replica() {
-    return readEnv(PSQL_REPLICA_HOST);
+  List<String> replicas() {
+    final String replicas = readEnv(PSQL_REPLICA_HOST);
+    if (replicas == null) {
+      return Collections.emptyList();
+    }
+    return Arrays.stream(replicas.split(",")).map(String::trim).filter(host -> host.length() > 0).collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the maximal replication lag in milliseconds of a replica, which is used for reads. A replica with a higher lag is skipped.
+   *
+   * @return the maximal replication lag, zero if the lag is not checked.
+   */
+  long replicaMaxLag() {
+    try {
+      return Long.parseLong(readEnv(PSQL_REPLICA_MAX_LAG), 10);
+    } catch (Exception e) {
+      return 0;
+    }
   }
 
   /**
@@ -225,6 +271,75 @@ class PSQLConfig {
 
   static String INCLUDE_OLD_STATES = "includeOldStates"; // read from event params
 
+  /**
+   * The quadkey level, by which the table of a space is partitioned, when it is created. There is one partition per tile of that level and
+   * one partition for the features, which cross a tile border. A value of zero or below creates a single table.
+   */
+  static final String PARTITION_LEVEL = "partitionLevel"; // read from event params
+
+  /**
+   * The minimal number of inserted features, above which the inserts are streamed using the COPY protocol. A value of zero or below
+   * disables the bulk insert.
+   */
+  static final String COPY_INSERT_THRESHOLD = "copyInsertThreshold"; // read from connector params
+
+  /**
+   * If set to true, the inserts and updates of a ModifyFeaturesEvent are written with one set based upsert statement.
+   */
+  static final String SET_BASED_WRITES = "setBasedWrites"; // read from connector params
+
+  /**
+   * The number of features, which are written with one batch when a ModifyFeaturesEvent is not executed in a transaction. A value of zero
+   * or below disables the batching, so that every feature is written with an own statement.
+   */
+  static final String NON_TRANSACTIONAL_BATCH_SIZE = "nonTransactionalBatchSize"; // read from connector params
+
+  /**
+   * The number of rows, which are fetched per round trip, when the features of a search are streamed directly into the response. A value
+   * of zero or below disables the streaming, so that the complete result is read before it is serialized.
+   */
+  static final String STREAMING_FETCH_SIZE = "streamingFetchSize"; // read from connector params
+
+  /**
+   * The number of parallel sub-queries, into which a query for a big bounding box or a low zoom tile is split. It is limited by the
+   * number of the currently free connections. A value of one or below disables the fan-out.
+   */
+  static final String BBOX_FAN_OUT_PARALLELISM = "bboxFanOutParallelism"; // read from connector params
+
+  /**
+   * If set to true, the number of features of a space is counted exactly by a counter, which is maintained by triggers of the table.
+   */
+  static final String EXACT_COUNTS = "exactCounts"; // read from connector params
+
+  /**
+   * If set to true, the statistics of a space are persisted and only recomputed by the index maintenance, after features were written.
+   */
+  static final String CACHED_STATISTICS = "cachedStatistics"; // read from connector params
+
+  /**
+   * If set to true, the H3 cell of each feature is stored in an indexed column, so that the hexbin clustering groups the features by the
+   * parent cells instead of computing the cells for each request.
+   */
+  static final String H3_CELL_COLUMN = "h3CellColumn"; // read from connector params
+
+  /**
+   * If set to true, the quadkey of each feature is stored in an indexed column, so that the quad clustering counts the features exactly
+   * by the prefixes of the quadkeys.
+   */
+  static final String QUADKEY_COLUMN = "quadkeyColumn"; // read from connector params
+
+  /**
+   * The number of vertices of the geometry of a geometry query, above which the geometry is subdivided into smaller parts, so that the
+   * spatial index filters more exactly and the intersections are tested against small geometries. A value of zero or below disables the
+   * subdivision.
+   */
+  static final String GEOMETRY_SUBDIVISION_THRESHOLD = "geometrySubdivisionThreshold"; // read from connector params
+
+  /**
+   * The number of features, which are deleted in one transaction, when the features of a space are deleted by tags in chunks.
+   */
+  static final String DELETE_CHUNK_SIZE = "deleteChunkSize"; // read from connector params
+
   private String applicationName;
 
   PSQLConfig(Event event, Context context){
@@ -24,11 +24,13 @@ import com.here.xyz.connectors.ErrorResponseException;
 import com.here.xyz.connectors.StorageConnector;
 import com.here.xyz.events.Event;
 import com.here.xyz.events.HealthCheckEvent;
+import com.here.xyz.events.IndexMaintenanceEvent;
 import com.here.xyz.events.QueryEvent;
 import com.here.xyz.models.geojson.implementation.XyzError;
 import com.here.xyz.responses.CountResponse;
 import com.here.xyz.responses.ErrorResponse;
 import com.here.xyz.responses.HealthStatus;
+import com.here.xyz.responses.SuccessResponse;
 import com.here.xyz.responses.XyzResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -36,12 +38,16 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Array;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import org.apache.commons.dbutils.QueryRunner;
@@ -86,9 +92,9 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
   private static Map<String, DataSource> dataSources = new HashMap<>();
 
   /**
-   * The data source connections factory.
+   * The data source connections factories of the read replicas.
    */
-  private static Map<String, DataSource> replicaDataSources = new HashMap<>();
+  private static Map<String, ReplicaDataSources> replicaDataSources = new HashMap<>();
 
   /**
    * The write data source for the current event.
@@ -105,25 +111,83 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
    */
   PSQLConfig config;
 
+  /**
+   * The metadata cache for the database of the current event.
+   */
+  MetadataCache metadata;
+
+  /**
+   * The queries, which are currently executed for the event.
+   */
+  private final Set<Statement> runningStatements = ConcurrentHashMap.newKeySet();
+
   private static final String TIMEOUT_EXCEPTION_STRING = "canceling statement due to statement timeout";
+  private static final String QUERY_CANCELED = "57014";
   private static final String XYZ_CONFIG_SCHEMA = "xyz_config";
   private static final int IDX_MIN_THRESHOLD = 10000;
   protected static final String C3P0EXT_CONFIG_SCHEMA = "config.schema()";
   protected static int ON_DEMAND_IDX_LIM = 4;
+  /**
+   * The maximal number of spaces, whose persisted statistics are refreshed by one index maintenance run.
+   */
+  private static final int STATISTICS_REFRESH_LIMIT = 10;
 
   @Override
   public XyzResponse processEvent(Event event) throws Exception {
     try {
       return super.processEvent(event);
     } catch (Exception e) {
-      final String message = e.getMessage();
-      if (message != null && message.contains(TIMEOUT_EXCEPTION_STRING)) {
-        throw new ErrorResponseException(streamId, XyzError.TIMEOUT, "The request timed out.");
+      throw mapException(e);
+    }
+  }
+
+  /**
+   * Maps timeouts and cancellations of the queries to the according error responses, other exceptions are returned unchanged.
+   */
+  Exception mapException(Exception e) {
+    final String message = e.getMessage();
+    if (message != null && message.contains(TIMEOUT_EXCEPTION_STRING)) {
+      return new ErrorResponseException(streamId, XyzError.TIMEOUT, "The request timed out.");
+    }
+    if (isCancelled()) {
+      return new ErrorResponseException(streamId, XyzError.TIMEOUT, "The request was cancelled.");
+    }
+    return e;
+  }
+
+  /**
+   * Cancels the queries, which are currently executed for the event. Queries, which are started afterwards, fail immediately.
+   */
+  @Override
+  protected void cancel() {
+    super.cancel();
+    for (Statement stmt : runningStatements) {
+      try {
+        stmt.cancel();
+      } catch (SQLException e) {
+        logger.warn("{} - Failed to cancel a running query: {}", streamId, e);
       }
-      throw e;
     }
   }
 
+  /**
+   * Registers the statement as running, so that it is cancelled together with the event. The caller must unregister the statement, when
+   * it was executed.
+   *
+   * @throws SQLException if the event was cancelled already.
+   */
+  void startStatement(Statement stmt) throws SQLException {
+    runningStatements.add(stmt);
+    if (isCancelled()) {
+      runningStatements.remove(stmt);
+      throw new SQLException("The request was cancelled.", QUERY_CANCELED);
+    }
+  }
+
+  void endStatement(Statement stmt) {
+    runningStatements.remove(stmt);
+  }
+
   @Override
   protected synchronized void initialize(Event event) throws Exception {
     this.event = event;
@@ -141,12 +205,15 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
       m.put( C3P0EXT_CONFIG_SCHEMA ,config.schema());
       source.setExtensions( m );
 
-      if (config.replica() != null) {
-        final ComboPooledDataSource replicaDataSource = getComboPooledDataSource(config.replica(), config.port(), config.database(),
-            config.user(), config.password(), config.applicationName(), config.maxPostgreSQLConnections());
-        replicaDataSources.put(ecps, replicaDataSource);
-
-        replicaDataSource.setExtensions( m );
+      if (!config.replicas().isEmpty()) {
+        final List<ComboPooledDataSource> replicaSources = new ArrayList<>();
+        for (String replica : config.replicas()) {
+          final ComboPooledDataSource replicaDataSource = getComboPooledDataSource(replica, config.port(), config.database(),
+              config.user(), config.password(), config.applicationName(), config.maxPostgreSQLConnections());
+          replicaDataSource.setExtensions( m );
+          replicaSources.add(replicaDataSource);
+        }
+        replicaDataSources.put(ecps, ReplicaDataSources.create(replicaSources, config.replicaMaxLag()));
       }
 
       configs.put(ecps, config);
@@ -154,11 +221,18 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
 
     // Set the for write operations
     dataSource = dataSources.get(ecps);
-    // Set the data source for read operations.
-    readDataSource = (replicaDataSources.containsKey(ecps) && (event.getPreferPrimaryDataSource() == null
-        || event.getPreferPrimaryDataSource() == Boolean.FALSE)) ? replicaDataSources.get(ecps) : dataSource;
+    // Set the data source for read operations, the primary is used, if no replica is available.
+    readDataSource = dataSource;
+    if (replicaDataSources.containsKey(ecps) && (event.getPreferPrimaryDataSource() == null
+        || event.getPreferPrimaryDataSource() == Boolean.FALSE)) {
+      final DataSource replica = replicaDataSources.get(ecps).select();
+      if (replica != null) {
+        readDataSource = replica;
+      }
+    }
 
     config = configs.get(ecps);
+    metadata = MetadataCache.getInstance(ecps);
     logger.info("{} - Connect to database: jdbc:postgresql://{}:{}/{}?user={}&password=***  |ecps={}", streamId, config.host(),
         config.port(), config.database(), config.user(), ecps);
   }
@@ -188,11 +262,11 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
   public abstract PSQLConfig initializeConfig(Event event, Context context) throws Exception;
 
   private synchronized void setup() {
-    final int xyz_ext_version = 122;
+    final int xyz_ext_version = 129;
     boolean functionsUpToDate = false;
+    boolean schemasCreated = true;
     boolean hasPropertySearch = (event.getConnectorParams() != null && event.getConnectorParams().get("propertySearch") == Boolean.TRUE);
 
-    boolean autoIndexing = (event.getConnectorParams() != null && event.getConnectorParams().get("autoIndexing") == Boolean.TRUE);
     ON_DEMAND_IDX_LIM = (event.getConnectorParams() != null && event.getConnectorParams().get("onDemandIdxLimit") != null) ?
             (Integer)event.getConnectorParams().get("onDemandIdxLimit") : ON_DEMAND_IDX_LIM;
 
@@ -220,6 +294,12 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
 
     final String xyzFunctionCheck = "select "+ config.schema()+".xyz_ext_version()";
 
+    /** The database was already prepared for this ECPS by an earlier event */
+    if (metadata.isSetUp(xyz_ext_version, hasPropertySearch)) {
+      setupH3();
+      return;
+    }
+
     try (final Connection connection = dataSource.getConnection()) {
 
       /** Check if database is prepared to work with PSQL Connector. Therefore its needed to check Extensions, Schemas, Tables and Functions.*/
@@ -290,6 +370,7 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
                     + " ON CONFLICT DO NOTHING; ");
               }
 	      } catch (Exception e) {
+		       schemasCreated = false;
 		       logger.warn("{} - Failed to create missing Schema(s) on database': {} {}", streamId, config.database() , e);
 		  }
       }
@@ -318,19 +399,75 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
       } else {
         logger.info("{} - All required SQL-Functions are already present on database {}!", streamId,config.database());
       }
+
+      if (schemasCreated) {
+        metadata.setSetUp(xyz_ext_version, hasPropertySearch);
+      }
     } catch (Exception e) {
       logger.error("{} - Failed to create missing SQL-Functions on database {} : {}", streamId, config.database(),  e);
     }
 
-    if(hasPropertySearch) {
+    setupH3();
+  }
+
+  private void setupH3() {
+    if( !metadata.isH3UpToDate() ) // check h3 availability 1. test if version function exists, 2. test if version is outdated compared with H3CoreVersion
+    {
+      try (final Connection connection = dataSource.getConnection();
+           final  Statement stmt = connection.createStatement(); )
+      {
+        final int H3CoreVersion = 103;
+        boolean needUpdate = false;
+
+        ResultSet rs;
+
+        if( (rs = stmt.executeQuery("select count(1)::integer from pg_catalog.pg_proc r inner join pg_catalog.pg_namespace l  on ( r.pronamespace = l.oid ) where 1 = 1 and l.nspname = 'h3' and r.proname = 'h3_version'")).next() )
+         needUpdate = ( 0 == rs.getInt(1) );
+
+        if( !needUpdate && (rs = stmt.executeQuery( "select h3.h3_version()" )).next() )
+         needUpdate = ( H3CoreVersion > rs.getInt(1) );
+
+        if( needUpdate )
+        { String currSearchPath;
+
+          if( (rs = stmt.executeQuery("show search_path")).next() )
+           currSearchPath = rs.getString(1);
+          else
+           throw new Exception("failed on statement [show search_path]");
+
+          stmt.execute( readResource("/h3Core.sql") );
+          stmt.execute( String.format("set search_path = %1$s", currSearchPath ) );
+          logger.info("{} - Successfully created H3 SQL-Functions", streamId);
+        }
+        metadata.setH3UpToDate(true);
+      }
+      catch (Exception e)
+      { logger.error("{} - Failed run h3 init'{}'", streamId, e); }
+    }
+  }
+
+  /**
+   * Runs the maintenance of the indices and of the persisted statistics. Long-running parts are skipped, if they are still in progress
+   * or if they ran more recently than requested by the event for the same database.
+   */
+  @Override
+  protected XyzResponse processIndexMaintenanceEvent(IndexMaintenanceEvent event) {
+    this.setup();
+
+    final boolean hasPropertySearch = PSQLConfig.readConnectorParam(event, "propertySearch", false);
+    final boolean autoIndexing = PSQLConfig.readConnectorParam(event, "autoIndexing", false);
+
+    if (hasPropertySearch && !isIndexMaintenanceDue(event.getMinInterval())) {
+      logger.info("{} - Skipping the auto-indexing on database {}, which ran less than {}ms ago", streamId, config.database(),
+          event.getMinInterval());
+    } else if(hasPropertySearch) {
         /** Trigger Auto-Indexing and or On-Demand Index Maintenance  */
 	    try (final Connection connection = dataSource.getConnection()) {
   	    	final String writeStatistics = "SELECT xyz_write_newest_statistics('"+ config.schema()
   	            +"',ARRAY['wikvaya','"+config.user()+"'],"+IDX_MIN_THRESHOLD+");";
 	    	final String analyseStatistic = "SELECT xyz_write_newest_idx_analyses('"+ config.schema() +"')";
-	    	final String createIDX = "SELECT * from xyz_create_idxs_over_dblink('"+ config.schema() +"',100, 0,'"+config.user()
-	    	    +"','"+config.password()+"','"+config.database()+"',"+config.port()+",'"+ config.schema()+",h3,public,topology)')";
-
+	    	final String createIDX = "SELECT * from xyz_create_idxs_over_dblink('"+ config.schema() +"',"+ event.getMaxSpaces() +", 0,'"+config.user()
+	    	    +"','"+config.password()+"','"+config.database()+"',"+config.port()+",'"+ config.schema()+",h3,public,topology')";
 	    	final String checkRunningQueries = "SELECT * FROM xyz_index_status();";
 
 	    	Statement stmt = connection.createStatement();
@@ -368,37 +505,52 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
 	    }
     }
 
-    if( true ) // check h3 availability 1. test if version function exists, 2. test if version is outdated compared with H3CoreVersion
-    {
+    if (PSQLConfig.readConnectorParam(event, PSQLConfig.CACHED_STATISTICS, false)) {
+      /** Refresh the persisted statistics of the spaces with the most changes, each one separately to keep the finished ones */
       try (final Connection connection = dataSource.getConnection();
-           final  Statement stmt = connection.createStatement(); )
-      {
-        final int H3CoreVersion = 103;
-        boolean needUpdate = false;
-
-        ResultSet rs;
-
-        if( (rs = stmt.executeQuery("select count(1)::integer from pg_catalog.pg_proc r inner join pg_catalog.pg_namespace l  on ( r.pronamespace = l.oid ) where 1 = 1 and l.nspname = 'h3' and r.proname = 'h3_version'")).next() )
-         needUpdate = ( 0 == rs.getInt(1) );
+          final Statement stmt = connection.createStatement()) {
+        final List<String> spaces = new ArrayList<>();
+        try (final ResultSet rs = stmt.executeQuery("SELECT spaceid FROM xyz_stale_statistics('" + config.schema() + "', "
+            + STATISTICS_REFRESH_LIMIT + ")")) {
+          while (rs.next()) {
+            spaces.add(rs.getString(1));
+          }
+        }
 
-        if( !needUpdate && (rs = stmt.executeQuery( "select h3.h3_version()" )).next() )
-         needUpdate = ( H3CoreVersion > rs.getInt(1) );
+        try (final PreparedStatement refreshStmt = connection.prepareStatement("SELECT xyz_refresh_space_statistics(?, ?)")) {
+          for (String space : spaces) {
+            refreshStmt.setString(1, config.schema());
+            refreshStmt.setString(2, space);
+            refreshStmt.execute();
+          }
+        }
+        logger.info("{} - Refreshed the statistics of {} spaces on database {}", streamId, spaces.size(), config.database());
+      } catch (Exception e) {
+        logger.error("{} - Failed to refresh the statistics on database {} : {}", streamId, config.database(), e);
+      }
+    }
 
-        if( needUpdate )
-        { String currSearchPath;
+    return new SuccessResponse().withStatus("OK");
+  }
 
-          if( (rs = stmt.executeQuery("show search_path")).next() )
-           currSearchPath = rs.getString(1);
-          else
-           throw new Exception("failed on statement [show search_path]");
+  /**
+   * Returns true, if the last auto-indexing on the database is longer ago than the given interval.
+   */
+  private boolean isIndexMaintenanceDue(long minInterval) {
+    if (minInterval <= 0) {
+      return true;
+    }
 
-          stmt.execute( readResource("/h3Core.sql") );
-          stmt.execute( String.format("set search_path = %1$s", currSearchPath ) );
-          logger.info("{} - Successfully created H3 SQL-Functions", streamId);
-        }
+    try (final Connection connection = dataSource.getConnection();
+        final PreparedStatement stmt = connection.prepareStatement("SELECT EXTRACT(EPOCH FROM now() - max(runts)) * 1000 FROM "
+            + XYZ_CONFIG_SCHEMA + ".xyz_idxs_status WHERE schem = ? AND runts IS NOT NULL")) {
+      stmt.setString(1, config.schema());
+      try (final ResultSet rs = stmt.executeQuery()) {
+        return !rs.next() || rs.getObject(1) == null || rs.getDouble(1) >= minInterval;
       }
-      catch (Exception e)
-      { logger.error("{} - Failed run h3 init'{}'", streamId, e); }
+    } catch (SQLException e) {
+      logger.warn("{} - Failed to read the time of the last auto-indexing on database {}: {}", streamId, config.database(), e);
+      return true;
     }
   }
 
@@ -418,9 +570,9 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
       this.setup();
 
       executeQuery(query, (rs) -> null, dataSource);
-      // establish a connection to the replica, if such is set.
-      if (dataSource != readDataSource) {
-        executeQuery(query, (rs) -> null, readDataSource);
+      // check the replicas in the background, if such are set. A replica, which is not reachable, is only skipped for reads.
+      if (replicaDataSources.containsKey(PSQLConfig.getECPS(event))) {
+        replicaDataSources.get(PSQLConfig.getECPS(event)).check();
       }
 
       long now = System.currentTimeMillis();
@@ -451,6 +603,21 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
    */
   protected abstract SQLQuery generateSearchQuery(QueryEvent tags) throws Exception;
 
+  /**
+   * Returns the number of the connections of the data source for read operations, which are currently not used.
+   */
+  int freeReadConnections() {
+    if (!(readDataSource instanceof ComboPooledDataSource)) {
+      return 1;
+    }
+    final ComboPooledDataSource source = (ComboPooledDataSource) readDataSource;
+    try {
+      return Math.max(0, source.getMaxPoolSize() - source.getNumBusyConnectionsDefaultUser());
+    } catch (SQLException e) {
+      return 0;
+    }
+  }
+
   /**
    * Executes the given query and returns the processed by the handler result.
    */
@@ -463,19 +630,100 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
    */
   private <T> T executeQuery(SQLQuery query, ResultSetHandler<T> handler, DataSource  dataSource) throws SQLException {
     final long start = System.currentTimeMillis();
-    try {
-      final QueryRunner run = new QueryRunner(dataSource);
+    try (final Connection connection = dataSource.getConnection()) {
       query.setText(replaceVars(query.text()));
       final String queryText = query.text();
       final List<Object> queryParameters = query.parameters();
       logger.info("{} - executeQuery: {} - Parameter: {}", streamId, queryText, queryParameters);
-      return run.query(queryText, handler, queryParameters.toArray());
+
+      try (final PreparedStatement stmt = connection.prepareStatement(queryText)) {
+        new QueryRunner().fillStatement(stmt, queryParameters.toArray());
+        startStatement(stmt);
+        try (final ResultSet rs = stmt.executeQuery()) {
+          return handler.handle(rs);
+        } finally {
+          endStatement(stmt);
+        }
+      }
     } finally {
       final long end = System.currentTimeMillis();
       logger.info("{} - query time: {}ms", streamId, (end - start));
     }
   }
 
+  /**
+   * Executes the given query using a cursor, which fetches the given number of rows per round trip, while the rows are read. The query is
+   * executed and its first rows are fetched, before this method returns, so that most errors are reported here. The returned cursor
+   * holds the connection and must be closed.
+   */
+  QueryCursor openCursor(SQLQuery query, int fetchSize) throws SQLException {
+    final long start = System.currentTimeMillis();
+    final Connection connection = readDataSource.getConnection();
+    PreparedStatement stmt = null;
+    try {
+      query.setText(replaceVars(query.text()));
+      final String queryText = query.text();
+      final List<Object> queryParameters = query.parameters();
+      logger.info("{} - executeQuery: {} - Parameter: {} - Fetch size: {}", streamId, queryText, queryParameters, fetchSize);
+
+      // The PostgreSQL driver only uses a cursor, when the query is executed within a transaction
+      connection.setAutoCommit(false);
+      stmt = connection.prepareStatement(queryText);
+      stmt.setFetchSize(fetchSize);
+      new QueryRunner().fillStatement(stmt, queryParameters.toArray());
+      startStatement(stmt);
+      return new QueryCursor(connection, stmt, stmt.executeQuery());
+    } catch (SQLException e) {
+      new QueryCursor(connection, stmt, null).close();
+      throw e;
+    } finally {
+      final long end = System.currentTimeMillis();
+      logger.info("{} - query time: {}ms", streamId, (end - start));
+    }
+  }
+
+  /**
+   * The result set of a query, which is read while the rows are fetched by a cursor, together with its connection and statement. The query
+   * stays cancellable with the event, until the cursor is closed.
+   */
+  class QueryCursor implements AutoCloseable {
+
+    private final Connection connection;
+    private final PreparedStatement stmt;
+    final ResultSet rs;
+    private boolean closed;
+
+    private QueryCursor(Connection connection, PreparedStatement stmt, ResultSet rs) {
+      this.connection = connection;
+      this.stmt = stmt;
+      this.rs = rs;
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (stmt != null) {
+          endStatement(stmt);
+          stmt.close();
+        }
+        connection.rollback();
+        connection.setAutoCommit(true);
+      } catch (SQLException e) {
+        logger.warn("{} - Unable to close the cursor: {}", streamId, e.getMessage());
+      } finally {
+        try {
+          connection.close();
+        } catch (SQLException e) {
+          logger.warn("{} - Unable to release the connection: {}", streamId, e.getMessage());
+        }
+      }
+    }
+  }
+
   /**
    * Executes the given update or delete query and returns the number of deleted or updated records.
    *
@@ -527,9 +775,16 @@ public abstract class PSQLRequestStreamHandler extends StorageConnector {
   }
 
   String replaceVars(String query) {
+    return replaceVars(query, config.table(event));
+  }
+
+  /**
+   * Replaces the variables of the query for the given table instead of the table of the event's space.
+   */
+  String replaceVars(String query, String table) {
     return query
         .replace(VAR_SCHEMA, sqlQuote(config.schema()))
-        .replace(VAR_TABLE, sqlQuote(config.table(event)));
+        .replace(VAR_TABLE, sqlQuote(table));
   }
 
   String replaceVars(String query, Map<String, String> replacements) {
@@ -23,6 +23,7 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.here.xyz.XyzSerializable;
 import com.here.xyz.connectors.ErrorResponseException;
+import com.here.xyz.connectors.StreamingResponse;
 import com.here.xyz.events.CountFeaturesEvent;
 import com.here.xyz.events.DeleteFeaturesByTagEvent;
 import com.here.xyz.events.Event;
@@ -30,8 +31,10 @@ import com.here.xyz.events.GetFeaturesByBBoxEvent;
 import com.here.xyz.events.GetFeaturesByGeometryEvent;
 import com.here.xyz.events.GetFeaturesByIdEvent;
 import com.here.xyz.events.GetFeaturesByTileEvent;
+import com.here.xyz.events.GetFeaturesByTileEvent.ResponseType;
 import com.here.xyz.events.GetStatisticsEvent;
 import com.here.xyz.events.HealthCheckEvent;
+import com.here.xyz.events.IndexMaintenanceEvent;
 import com.here.xyz.events.IterateFeaturesEvent;
 import com.here.xyz.events.LoadFeaturesEvent;
 import com.here.xyz.events.ModifyFeaturesEvent;
@@ -51,6 +54,7 @@ import com.here.xyz.models.geojson.implementation.FeatureCollection;
 import com.here.xyz.models.geojson.implementation.FeatureCollection.ModificationFailure;
 import com.here.xyz.models.geojson.implementation.Geometry;
 import com.here.xyz.models.geojson.implementation.XyzError;
+import com.here.xyz.responses.BinaryResponse;
 import com.here.xyz.responses.CountResponse;
 import com.here.xyz.responses.ErrorResponse;
 import com.here.xyz.responses.StatisticsResponse;
@@ -62,19 +66,35 @@ import com.here.xyz.responses.SuccessResponse;
 import com.here.xyz.responses.XyzResponse;
 import com.mchange.v2.c3p0.AbstractConnectionCustomizer;
 import com.vividsolutions.jts.io.WKBWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -82,6 +102,8 @@ import java.util.stream.Stream;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.postgresql.util.PGobject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -94,13 +116,151 @@ import org.slf4j.LoggerFactory;
 public class PSQLXyzConnector extends PSQLRequestStreamHandler {
 
   protected static final int STATEMENT_TIMEOUT_SECONDS = 24;
+  /**
+   * The statement timeout for the long running statements of the index maintenance.
+   */
+  private static final int MAINTENANCE_STATEMENT_TIMEOUT_SECONDS = 15 * 60;
 
   private static final Logger logger = LoggerFactory.getLogger(PSQLXyzConnector.class);
   private static final long EQUATOR_LENGTH = 40_075_016;
   private static final long TILE_SIZE = 256;
   private static final int MAX_PRECISE_STATS_COUNT = 10_000;
+  /**
+   * The maximal level of a tile, for which the query is split into parallel sub-queries, when the fan-out is enabled.
+   */
+  private static final int FAN_OUT_MAX_LEVEL = 4;
+  /**
+   * The executor for the sub-queries of the fan-outs, which is shared by all requests.
+   */
+  private static final ExecutorService fanOutExecutor = Executors.newCachedThreadPool(r -> {
+    final Thread thread = new Thread(r, "bbox-fan-out");
+    thread.setDaemon(true);
+    return thread;
+  });
+  /**
+   * The extent of the vector tiles created in the database.
+   */
+  private static final int MVT_EXTENT = 4096;
+  /**
+   * The maximal number of vertices of the parts, into which the geometry of a geometry query is subdivided.
+   */
+  private static final int SUBDIVISION_MAX_VERTICES = 256;
+  /**
+   * The default number of features, which are deleted in one transaction, when the features are deleted in chunks.
+   */
+  private static final int DEFAULT_DELETE_CHUNK_SIZE = 10000;
+  /**
+   * The function to select a geometry as TWKB. The coordinates are rounded to seven decimal places, which is about one centimeter, and the
+   * altitude to millimeters.
+   */
+  private static final String TWKB_GEOMETRY = "ST_AsTWKB(%s,7,3)";
   private static final List<String> GEOMETRY_TYPES = Arrays
       .asList("Point", "LineString", "Polygon", "MultiPoint", "MultiLineString", "MultiPolygon");
+  private static final String DELETE_ATOMIC_STMT_SQL =
+      "DELETE FROM ${schema}.${table} WHERE jsondata->>'id' = ? AND jsondata->'properties'->'@ns:com:here:xyz'->>'hash' = ?";
+  private static final String DELETE_STMT_SQL = "DELETE FROM ${schema}.${table} WHERE jsondata->>'id' = ?";
+  private static final String INSERT_STMT_SQL =
+      "INSERT INTO ${schema}.${table} (jsondata, geo, geojson) VALUES(?::jsonb, ST_Force3D(ST_GeomFromWKB(?,4326)), ?::jsonb)";
+  private static final String INSERT_WITHOUT_GEOMETRY_STMT_SQL = "INSERT INTO ${schema}.${table} (jsondata, geo, geojson) VALUES(?::jsonb, NULL, NULL)";
+  private static final String UPDATE_STMT_SQL =
+      "UPDATE ${schema}.${table} SET jsondata = ?::jsonb, geo=ST_Force3D(ST_GeomFromWKB(?,4326)), geojson = ?::jsonb WHERE jsondata->>'id' = ?";
+  private static final String UPDATE_WITHOUT_GEOMETRY_STMT_SQL =
+      "UPDATE ${schema}.${table} SET  jsondata = ?::jsonb, geo=NULL, geojson = NULL WHERE jsondata->>'id' = ?";
+  /**
+   * Updates a feature like {@link #UPDATE_STMT_SQL} and returns its old state. The previous row is locked and joined by the update itself,
+   * so that it's exactly the state, which was overwritten.
+   */
+  private static final String UPDATE_RETURNING_OLD_STATE_STMT_SQL =
+      "UPDATE ${schema}.${table} t SET jsondata = ?::jsonb, geo=ST_Force3D(ST_GeomFromWKB(?,4326)), geojson = ?::jsonb"
+          + " FROM (SELECT jsondata, geojson FROM ${schema}.${table} WHERE jsondata->>'id' = ? FOR UPDATE) old"
+          + " WHERE t.jsondata->>'id' = old.jsondata->>'id' RETURNING old.jsondata, old.geojson";
+  private static final String UPDATE_WITHOUT_GEOMETRY_RETURNING_OLD_STATE_STMT_SQL =
+      "UPDATE ${schema}.${table} t SET jsondata = ?::jsonb, geo=NULL, geojson = NULL"
+          + " FROM (SELECT jsondata, geojson FROM ${schema}.${table} WHERE jsondata->>'id' = ? FOR UPDATE) old"
+          + " WHERE t.jsondata->>'id' = old.jsondata->>'id' RETURNING old.jsondata, old.geojson";
+  /**
+   * Returns the old state of a deleted feature.
+   */
+  private static final String RETURNING_OLD_STATE = " RETURNING jsondata, geojson";
+  /**
+   * Selects the exact number of features of a table, if it is maintained by the triggers of the table, as the sum of the count and
+   * the changes, which are not yet folded into it. Rows of dropped tables, whose oid was reused, are ignored, because the new table has
+   * no triggers.
+   */
+  private static final String SELECT_FEATURE_COUNT = "SELECT c.count"
+      + " + COALESCE((SELECT sum(d.delta) FROM ${schema}.xyz_feature_count_delta d WHERE d.relid = c.relid), 0)"
+      + " FROM ${schema}.xyz_feature_count c WHERE c.relid = ?::regclass"
+      + " AND EXISTS (SELECT 1 FROM pg_trigger t WHERE t.tgrelid = c.relid AND t.tgname = 'xyz_count_insert')";
+  /**
+   * Initializes the count of a table, which has the triggers already. The changes, which are visible to the same snapshot, are
+   * included in the number of rows, so they are subtracted.
+   */
+  private static final String INITIALIZE_FEATURE_COUNT = "INSERT INTO ${schema}.xyz_feature_count (relid, count)"
+      + " SELECT ?::regclass, (SELECT count(*) FROM ${schema}.${table})"
+      + " - COALESCE((SELECT sum(d.delta) FROM ${schema}.xyz_feature_count_delta d WHERE d.relid = ?::regclass), 0)"
+      + " ON CONFLICT (relid) DO UPDATE SET count = EXCLUDED.count";
+  /**
+   * Selects the tables of the spaces in the schema, which don't have the triggers of the feature counter yet, the smallest first.
+   */
+  private static final String SELECT_TABLES_WITHOUT_FEATURE_COUNT = "SELECT c.relname FROM pg_class c"
+      + " JOIN pg_namespace n ON n.oid = c.relnamespace"
+      + " WHERE n.nspname = ? AND c.relkind = 'r' AND NOT c.relispartition"
+      + " AND EXISTS (SELECT 1 FROM pg_attribute a WHERE a.attrelid = c.oid AND a.attname = 'jsondata' AND NOT a.attisdropped)"
+      + " AND (NOT EXISTS (SELECT 1 FROM pg_trigger t WHERE t.tgrelid = c.oid AND t.tgname = 'xyz_count_insert')"
+      + " OR NOT EXISTS (SELECT 1 FROM ${schema}.xyz_feature_count f WHERE f.relid = c.oid))"
+      + " ORDER BY c.reltuples LIMIT ?";
+  private static final String SELECT_CACHED_STATISTICS = "SELECT statistics->>'tablesize' AS tablesize,"
+      + " statistics->>'geometrytypes' AS geometrytypes, statistics->>'properties' AS properties, statistics->>'tags' AS tags,"
+      + " statistics->>'count' AS count, statistics->>'bbox' AS bbox, statistics->>'searchable' AS searchable, changes, count_delta"
+      + " FROM ${schema}.xyz_space_statistics WHERE relid = ?::regclass";
+  private static final List<String> FEATURE_COUNT_TRIGGERS = Arrays.asList(
+      "DROP TRIGGER IF EXISTS xyz_count_insert ON ${schema}.${table}",
+      "DROP TRIGGER IF EXISTS xyz_count_delete ON ${schema}.${table}",
+      "DROP TRIGGER IF EXISTS xyz_count_truncate ON ${schema}.${table}",
+      "CREATE TRIGGER xyz_count_insert AFTER INSERT ON ${schema}.${table} REFERENCING NEW TABLE AS new_rows"
+          + " FOR EACH STATEMENT EXECUTE PROCEDURE xyz_feature_count_trigger()",
+      "CREATE TRIGGER xyz_count_delete AFTER DELETE ON ${schema}.${table} REFERENCING OLD TABLE AS old_rows"
+          + " FOR EACH STATEMENT EXECUTE PROCEDURE xyz_feature_count_trigger()",
+      "CREATE TRIGGER xyz_count_truncate AFTER TRUNCATE ON ${schema}.${table}"
+          + " FOR EACH STATEMENT EXECUTE PROCEDURE xyz_feature_count_trigger()");
+  /**
+   * The column with the precomputed H3 cells.
+   */
+  private static final MaintainedColumn H3_CELL_COLUMN = new MaintainedColumn("h3cell", "bigint", "xyz_h3cell_trigger()",
+      "xyz_h3cell(geo)", "btree ((h3cell))");
+  /**
+   * The column with the quadkeys.
+   */
+  private static final MaintainedColumn QUADKEY_COLUMN = new MaintainedColumn("qk", "text",
+      "xyz_qk_trigger(" + QuadClustering.QUADKEY_LEVEL + ")", "xyz_qk_geo2qk(geo, " + QuadClustering.QUADKEY_LEVEL + ")",
+      "btree (qk text_pattern_ops)");
+  /**
+   * Selects the tables of the spaces in the schema, which don't have the valid index of a maintained column yet, the smallest first.
+   * Partitioned tables are not included, because older PostgreSQL versions do not support row level triggers on them.
+   */
+  private static final String SELECT_TABLES_WITHOUT_MAINTAINED_COLUMN = "SELECT c.relname FROM pg_class c"
+      + " JOIN pg_namespace n ON n.oid = c.relnamespace"
+      + " WHERE n.nspname = ? AND c.relkind = 'r' AND NOT c.relispartition"
+      + " AND EXISTS (SELECT 1 FROM pg_attribute a WHERE a.attrelid = c.oid AND a.attname = 'geo' AND NOT a.attisdropped)"
+      + " AND EXISTS (SELECT 1 FROM pg_attribute a WHERE a.attrelid = c.oid AND a.attname = 'i' AND NOT a.attisdropped)"
+      + " AND NOT EXISTS (SELECT 1 FROM pg_index x"
+      + " WHERE x.indexrelid = to_regclass(quote_ident(n.nspname) || '.' || quote_ident('idx_' || c.relname || '_' || ?)) AND x.indisvalid)"
+      + " ORDER BY c.reltuples LIMIT ?";
+  private static final String SELECT_VALID_INDEX = "SELECT 1 FROM pg_index WHERE indexrelid = to_regclass(?) AND indisvalid";
+  /**
+   * The number of the serial numbers of the features, for which a maintained column is filled in one transaction.
+   */
+  private static final int MAINTAINED_COLUMN_CHUNK_SIZE = 10_000;
+  /**
+   * The time, which one index maintenance run may spend to fill the maintained columns.
+   */
+  private static final long MAINTAINED_COLUMN_TIME_BUDGET_MS = TimeUnit.SECONDS.toMillis(10);
+  /**
+   * The time, for which a table without the complete maintained column is cached, before it's checked again.
+   */
+  private static final long MAINTAINED_COLUMN_CHECK_INTERVAL_MS = TimeUnit.MINUTES.toMillis(3);
+  private static final String SELECT_TRIGGER = "SELECT 1 FROM pg_trigger WHERE tgrelid = ?::regclass AND tgname = ?";
+  private static final String SELECT_PARTITION_KEY = "SELECT pg_get_partkeydef(c.oid) FROM pg_class c WHERE c.oid = to_regclass(?)";
   private static Pattern pattern = Pattern.compile("^BOX\\(([-\\d\\.]*)\\s([-\\d\\.]*),([-\\d\\.]*)\\s([-\\d\\.]*)\\)$");
   private static Map<String, Boolean> initialized = new HashMap<>();
   protected Map<String, String> replacements = new HashMap<>();
@@ -172,7 +332,8 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
   }
 
   /**
-   * A helper method that will test if the table for the space does exist.
+   * A helper method that will test if the table for the space does exist. Only the existence of a table is cached, so a missing table
+   * is checked again each time.
    *
    * @return true if the table for the space exists; false otherwise.
    * @throws SQLException if the test fails due to any SQL error.
@@ -184,6 +345,10 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     }
 
     PSQLConfig pConfig = (PSQLConfig) config;
+    if (metadata.hasTable(pConfig.table(event))) {
+      return true;
+    }
+
     long start = System.currentTimeMillis();
     try (final Connection conn = dataSource.getConnection()) {
       try (final ResultSet rs = conn.getMetaData()
@@ -191,6 +356,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
         if (rs.next()) {
           long end = System.currentTimeMillis();
           logger.info("{} - Time for table check: " + (end - start) + "ms", streamId);
+          metadata.addTable(pConfig.table(event));
           return true;
         }
       }
@@ -219,13 +385,22 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
         }
 
         try (Statement stmt = connection.createStatement()) {
-          String query = "CREATE TABLE ${schema}.${table} (jsondata jsonb, geo geometry(GeometryZ,4326), i SERIAL, geojson jsonb)";
-          query = replaceVars(query);
-          stmt.addBatch(query);
+          final int partitionLevel = requestedPartitionLevel();
+          String query;
+          if (partitionLevel > 0) {
+            // The unique index of the ids is created per partition
+            for (String partitionQuery : SpatialPartitioning.createTableQueries(config.schema(), tableName, partitionLevel, this::sqlQuote)) {
+              stmt.addBatch(partitionQuery);
+            }
+          } else {
+            query = "CREATE TABLE ${schema}.${table} (jsondata jsonb, geo geometry(GeometryZ,4326), i SERIAL, geojson jsonb)";
+            query = replaceVars(query);
+            stmt.addBatch(query);
 
-          query = "CREATE UNIQUE INDEX ${idx_id} ON ${schema}.${table} ((jsondata->>'id'))";
-          query = replaceVars(query, replacements);
-          stmt.addBatch(query);
+            query = "CREATE UNIQUE INDEX ${idx_id} ON ${schema}.${table} ((jsondata->>'id'))";
+            query = replaceVars(query, replacements);
+            stmt.addBatch(query);
+          }
 
           query = "CREATE INDEX ${idx_tags} ON ${schema}.${table} USING gin ((jsondata->'properties'->'@ns:com:here:xyz'->'tags') jsonb_ops)";
           query = replaceVars(query, replacements);
@@ -247,8 +422,42 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
           query = replaceVars(query, replacements);
           stmt.addBatch(query);
 
+          // The counter of a new table starts with no features, so it needs no initialization by the index maintenance
+          if (partitionLevel == 0 && PSQLConfig.readConnectorParam(event, PSQLConfig.EXACT_COUNTS, false)) {
+            for (String trigger : FEATURE_COUNT_TRIGGERS) {
+              stmt.addBatch(replaceVars(trigger));
+            }
+            stmt.addBatch(replaceVars("INSERT INTO ${schema}.xyz_feature_count (relid, count) VALUES ('${schema}.${table}'::regclass, 0)"
+                + " ON CONFLICT (relid) DO UPDATE SET count = 0"));
+          }
+
+          // The columns are not added to partitioned tables, because older PostgreSQL versions do not support row level triggers on them
+          final boolean h3CellColumn = partitionLevel == 0 && PSQLConfig.readConnectorParam(event, PSQLConfig.H3_CELL_COLUMN, false);
+          if (h3CellColumn) {
+            for (String h3CellQuery : H3_CELL_COLUMN.setUpQueries) {
+              stmt.addBatch(replaceVars(h3CellQuery));
+            }
+            stmt.addBatch(replaceVars(H3_CELL_COLUMN.createIndexQuery(sqlQuote(H3_CELL_COLUMN.index(tableName)), false)));
+          }
+
+          final boolean quadkeyColumn = partitionLevel == 0 && PSQLConfig.readConnectorParam(event, PSQLConfig.QUADKEY_COLUMN, false);
+          if (quadkeyColumn) {
+            for (String quadkeyQuery : QUADKEY_COLUMN.setUpQueries) {
+              stmt.addBatch(replaceVars(quadkeyQuery));
+            }
+            stmt.addBatch(replaceVars(QUADKEY_COLUMN.createIndexQuery(sqlQuote(QUADKEY_COLUMN.index(tableName)), false)));
+          }
+
           stmt.executeBatch();
           connection.commit();
+          metadata.addTable(tableName);
+          metadata.partitionLevels.put(tableName, partitionLevel);
+          if (h3CellColumn) {
+            metadata.tablesWithH3Cell.add(tableName);
+          }
+          if (quadkeyColumn) {
+            metadata.tablesWithQuadkey.add(tableName);
+          }
           logger.info("{} - Successfully created table for space '{}'", streamId, event.getSpace());
         }
       } catch (Exception e) {
@@ -281,6 +490,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
    */
   protected FeatureCollection resultSetHandler(ResultSet rs) throws SQLException {
     final boolean isIterate = (event instanceof IterateFeaturesEvent);
+    final boolean twkb = isTwkbGeometry(rs);
     long nextHandle = 0;
     StringBuilder sb = new StringBuilder();
     String prefix = "[";
@@ -288,11 +498,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     int numFeatures = 0;
     while (rs.next()) {
       sb.append(rs.getString(1));
-      String geom = rs.getString(2);
-      sb.setLength(sb.length() - 1);
-      sb.append(",\"geometry\":");
-      sb.append(geom == null ? "null" : geom);
-      sb.append("}");
+      appendGeometry(sb, rs, twkb);
       sb.append(",");
 
       if (isIterate) {
@@ -316,6 +522,66 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     return featureCollection;
   }
 
+  /**
+   * The handler for streamed results, which writes the features as feature collection into the output stream while they are fetched.
+   *
+   * @param rs the result set.
+   * @param os the output stream.
+   * @throws SQLException when any unexpected error happened.
+   */
+  private Void streamingResultSetHandler(ResultSet rs, OutputStream os) throws SQLException {
+    try {
+      os.write("{\"type\":\"FeatureCollection\",\"features\":[".getBytes(StandardCharsets.UTF_8));
+      final boolean twkb = isTwkbGeometry(rs);
+      final StringBuilder sb = new StringBuilder();
+      boolean first = true;
+      while (rs.next()) {
+        sb.setLength(0);
+        if (!first) {
+          sb.append(",");
+        }
+        first = false;
+
+        sb.append(rs.getString(1));
+        appendGeometry(sb, rs, twkb);
+        os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+      }
+      os.write("]}".getBytes(StandardCharsets.UTF_8));
+      return null;
+    } catch (IOException e) {
+      throw new SQLException("Unable to write the features into the response.", e);
+    }
+  }
+
+  /**
+   * Returns true, if the geometries in the second column of the result set are selected as TWKB.
+   */
+  private static boolean isTwkbGeometry(ResultSet rs) throws SQLException {
+    return rs.getMetaData().getColumnType(2) == Types.BINARY;
+  }
+
+  /**
+   * Replaces the closing bracket of the feature in the string builder by the geometry from the second column of the current row. The
+   * geometry is either added as GeoJSON geometry or as base64 encoded TWKB geometry, depending on how it was selected.
+   */
+  private static void appendGeometry(StringBuilder sb, ResultSet rs, boolean twkb) throws SQLException {
+    sb.setLength(sb.length() - 1);
+    if (twkb) {
+      final byte[] geom = rs.getBytes(2);
+      if (geom != null) {
+        sb.append(",\"twkbGeometry\":\"").append(Base64.getEncoder().encodeToString(geom)).append("\"}");
+        return;
+      }
+      sb.append(",\"geometry\":null}");
+      return;
+    }
+
+    final String geom = rs.getString(2);
+    sb.append(",\"geometry\":");
+    sb.append(geom == null ? "null" : geom);
+    sb.append("}");
+  }
+
   /**
    * handler for delete by tags results.
    *
@@ -328,14 +594,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     String prefix = "[";
     sb.append(prefix);
     while (rs.next()) {
-      sb.append("{\"type\":\"Feature\",\"id\":");
-      sb.append(rs.getString("id"));
-      String geom = rs.getString("geometry");
-      if (geom != null) {
-        sb.append(",\"geometry\":");
-        sb.append(geom);
-        sb.append("}");
-      }
+      appendOldState(sb, rs);
       sb.append(",");
     }
     if (sb.length() > prefix.length()) {
@@ -348,6 +607,20 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     return featureCollection;
   }
 
+  /**
+   * Appends the old state of a deleted feature, which consists of its id and its geometry.
+   */
+  private void appendOldState(StringBuilder sb, ResultSet rs) throws SQLException {
+    sb.append("{\"type\":\"Feature\",\"id\":");
+    sb.append(rs.getString("id"));
+    String geom = rs.getString("geometry");
+    if (geom != null) {
+      sb.append(",\"geometry\":");
+      sb.append(geom);
+    }
+    sb.append("}");
+  }
+
   @Override
   protected FeatureCollection processGetFeaturesByIdEvent(GetFeaturesByIdEvent event) throws Exception {
     final List<String> ids = event.getIds();
@@ -366,6 +639,52 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     return executeQueryWithRetry(query, this::resultSetHandler);
   }
 
+  /**
+   * Executes the query, which selects features. If streaming is enabled by the connector parameters, the query is executed with a cursor
+   * and the features are written directly into the output stream, while they are fetched. The query is retried only before the response
+   * is written. A direct call has no output stream, so the features are always returned as feature collection then.
+   */
+  private XyzResponse executeFeatureQueryWithRetry(SQLQuery query) throws SQLException {
+    final int fetchSize = PSQLConfig.readConnectorParam(event, PSQLConfig.STREAMING_FETCH_SIZE, 0);
+    if (fetchSize <= 0 || isDirect()) {
+      return executeQueryWithRetry(query);
+    }
+
+    final QueryCursor featureCursor = openCursorWithRetry(query, fetchSize);
+    return new StreamingResponse() {
+      @Override
+      public void writeTo(OutputStream os) throws Exception {
+        try {
+          streamingResultSetHandler(featureCursor.rs, os);
+        } catch (Exception e) {
+          throw mapException(e);
+        } finally {
+          featureCursor.close();
+        }
+      }
+
+      @Override
+      public void close() {
+        featureCursor.close();
+      }
+    };
+  }
+
+  private QueryCursor openCursorWithRetry(SQLQuery query, int fetchSize) throws SQLException {
+    try {
+      return openCursor(query, fetchSize);
+    } catch (Exception e) {
+      try {
+        if (canRetryAttempt(e)) {
+          return openCursor(query, fetchSize);
+        }
+      } catch (Exception e1) {
+        throw e;
+      }
+      throw e;
+    }
+  }
+
   /**
    * Executes the query and reattempt to execute the query, after
    */
@@ -374,7 +693,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
       return executeQuery(query, handler);
     } catch (Exception e) {
       try {
-        if (canRetryAttempt()) {
+        if (canRetryAttempt(e)) {
           return executeQuery(query, handler);
         }
       } catch (Exception e1) {
@@ -389,7 +708,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
       return executeUpdate(query);
     } catch (Exception e) {
       try {
-        if (canRetryAttempt()) {
+        if (canRetryAttempt(e)) {
           return executeUpdate(query);
         }
       } catch (Exception e1) {
@@ -399,10 +718,51 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     }
   }
 
-  protected FeatureCollection processGetFeaturesByTileEvent(GetFeaturesByTileEvent event) throws Exception {
+  protected XyzResponse processGetFeaturesByTileEvent(GetFeaturesByTileEvent event) throws Exception {
+    if (event.getResponseType() == ResponseType.MVT && event.getClusteringType() == null) {
+      return processMvtGetFeaturesByTileEvent(event);
+    }
     return processGetFeaturesByBBoxEvent(event);
   }
 
+  /**
+   * Creates the MapBox Vector Tile in the database. The tile contains one layer, named like the space, with the id and the properties of
+   * each feature as attributes.
+   */
+  private BinaryResponse processMvtGetFeaturesByTileEvent(GetFeaturesByTileEvent event) throws Exception {
+    final WebMercatorTile tile = WebMercatorTile.forWeb(event.getLevel(), event.getX(), event.getY());
+    final BBox bbox = event.getBbox();
+    final double minLat = Math.max(bbox.minLat(), WebMercatorTile.MinLatitude);
+    final double maxLat = Math.min(bbox.maxLat(), WebMercatorTile.MaxLatitude);
+
+    final SQLQuery searchQuery = generateSearchQuery(event);
+    final SQLQuery query = new SQLQuery("SELECT ST_AsMVT(tile, ?, ?, 'geom') FROM (SELECT jsondata->>'id' AS id,"
+        + " jsondata->'properties' AS properties,", event.getSpace(), MVT_EXTENT);
+    query.append("ST_AsMVTGeom(ST_Transform(ST_ClipByBox2D(geo, ST_MakeEnvelope(?, ?, ?, ?, 4326)), 3857),"
+            + " ST_MakeEnvelope(?, ?, ?, ?, 3857), ?, ?, true) AS geom",
+        bbox.minLon(), minLat, bbox.maxLon(), maxLat,
+        tile.left, Math.min(tile.bottom, tile.top), tile.right, Math.max(tile.bottom, tile.top),
+        MVT_EXTENT, event.getMargin() * MVT_EXTENT / (int) TILE_SIZE);
+    query.append("FROM ${schema}.${table} WHERE ST_Intersects(geo, ST_MakeEnvelope(?, ?, ?, ?, 4326))",
+        bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
+    final SQLQuery partitionQuery = generatePartitionQuery(bbox);
+    if (partitionQuery != null) {
+      query.append("AND");
+      query.append(partitionQuery);
+    }
+    if (searchQuery != null) {
+      query.append("AND (");
+      query.append(searchQuery);
+      query.append(")");
+    }
+    query.append("LIMIT ?) tile WHERE geom IS NOT NULL", event.getLimit());
+
+    return executeQueryWithRetry(query, rs -> {
+      final byte[] bytes = resultSetStreamHandler(rs);
+      return new BinaryResponse().withBytes(bytes != null ? bytes : new byte[0]);
+    });
+  }
+
   /**** Begin - HEXBIN related section ******/
 
   private FeatureCollection processHexbinGetFeaturesByBBoxEvent(GetFeaturesByBBoxEvent event, BBox bbox, boolean isBigQuery, Map<String, Object> clusteringParams) throws Exception {
@@ -425,6 +785,8 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
            filterEmptyGeo = ( !event.getClip() ? "" : String.format(" and not st_isempty( %s ) ", clippedGeo ) );
 
     final SQLQuery searchQuery = generateSearchQuery(event);
+    final boolean useH3CellColumn = PSQLConfig.readConnectorParam(event, PSQLConfig.H3_CELL_COLUMN, false)
+        && hasCompleteColumn(H3_CELL_COLUMN, metadata.tablesWithH3Cell, metadata.tablesWithoutH3Cell);
 
     String aggField = ( statisticalPropertyProvided ? "jsonb_set('{}'::jsonb, ? , agg::jsonb)::json" : "agg" );
 
@@ -445,17 +807,37 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
 
     query.append(expBboxSql);
 
-    if (!statisticalPropertyProvided) {
-      query.append(new SQLQuery(String.format(H3.h3sqlMid, h3res, "(0.0)::numeric", zLevel, H3.pxSize)));
+    final String statisticalValue = statisticalPropertyProvided ? "(jsondata#>> ?)::numeric" : "(0.0)::numeric";
+    if (useH3CellColumn) {
+      query.append(new SQLQuery(String.format(H3.h3sqlCellMid, statisticalValue, H3.h3ParentSql("v.h3cell", h3res))));
     } else {
+      query.append(new SQLQuery(String.format(H3.h3sqlMid, h3res, statisticalValue, zLevel, H3.pxSize)));
+    }
+
+    if (statisticalPropertyProvided) {
       ArrayList<String> jpath = new ArrayList<>();
       jpath.add("properties");
       jpath.addAll(Arrays.asList(statisticalProperty.split("\\.")));
-
-      query.append(new SQLQuery(String.format(H3.h3sqlMid, h3res, "(jsondata#>> ?)::numeric", zLevel, H3.pxSize)));
       query.addParameter(createSQLArray(jpath.toArray(new String[]{}), "text"));
     }
 
+    if (useH3CellColumn) {
+      query.append(" from ${schema}.${table} v where v.h3cell is not null and geo && ");
+      query.append(expBboxSql);
+      query.append(" and st_intersects( geo ,");
+      query.append(expBboxSql);
+      query.append(" ) ");
+
+      if (searchQuery != null) {
+        query.append(" and ");
+        query.append(searchQuery);
+      }
+
+      query.append(String.format(H3.h3sqlCellEnd, filterEmptyGeo));
+      query.append("LIMIT ?", event.getLimit());
+      return executeQueryWithRetry(query);
+    }
+
     //query.append(" case st_geometrytype(geo) when 'ST_Point' then geo else st_intersection( geo ," ); query.append( expBboxSql ); query.append(" ) end as geo ");
     query.append(" case st_geometrytype(geo) when 'ST_Point' then geo else st_closestpoint( geo, geo ) end as refpt ");
     query.append(" from ${schema}.${table} v where 1 = 1 and geo && ");
@@ -483,6 +865,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
 
     return executeQueryWithRetry(query);
   }
+
   /**** End - HEXBIN related section ******/
 
   private FeatureCollection processQuadCount(GetFeaturesByBBoxEvent event, BBox bbox, Map<String, Object> clusteringParams)   throws Exception  {
@@ -512,10 +895,15 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
         }
       }
     }
+    if (!QuadClustering.QUADMODE_ESTIMATED.equalsIgnoreCase(quadMode) && tile.level + resolution <= QuadClustering.QUADKEY_LEVEL
+        && PSQLConfig.readConnectorParam(event, PSQLConfig.QUADKEY_COLUMN, false)
+        && hasCompleteColumn(QUADKEY_COLUMN, metadata.tablesWithQuadkey, metadata.tablesWithoutQuadkey)) {
+      return executeQueryWithRetry(QuadClustering.generateQuadkeyColumnSQL(config.schema(),config.table(event),resolution,propQuerySQL,tile));
+    }
     return executeQueryWithRetry(QuadClustering.generateQuadClusteringSQL(config.schema(),config.table(event),resolution,quadMode,propQuerySQL,tile));
   }
 
-  private FeatureCollection performGeometrySearch(GetFeaturesByGeometryEvent event)
+  private XyzResponse performGeometrySearch(GetFeaturesByGeometryEvent event)
        throws Exception {
 
     final int radius = event.getRadius();
@@ -524,9 +912,18 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     final SQLQuery query;
     final SQLQuery searchQuery = generateSearchQuery(event);
 
-    final SQLQuery geoQuery = radius != 0 ? new SQLQuery("ST_Intersects(geo, ST_Buffer(ST_GeomFromText('"
-        +WKTHelper.geometryToWKB(geometry)+"')::geography, ? )::geometry)",radius) : new SQLQuery("ST_Intersects(geo, ST_GeomFromText('"
-            +WKTHelper.geometryToWKB(geometry)+"',4326))");
+    final int subdivisionThreshold = PSQLConfig.readConnectorParam(event, PSQLConfig.GEOMETRY_SUBDIVISION_THRESHOLD, 0);
+    final SQLQuery geoQuery;
+    if (subdivisionThreshold > 0 && geometry.getJTSGeometry().getNumPoints() > subdivisionThreshold) {
+      // Each feature is only returned once, even if it intersects several parts
+      geoQuery = new SQLQuery("i IN (SELECT t.i FROM ${schema}.${table} t, (SELECT ST_GeomFromWKB(decode(unnest(?), 'hex'), 4326) AS geo) p"
+          + " WHERE ST_Intersects(t.geo, p.geo))", createSQLArray(subdivideGeometry(event), "text"));
+    }
+    else {
+      geoQuery = radius != 0 ? new SQLQuery("ST_Intersects(geo, ST_Buffer(ST_GeomFromText('"
+          +WKTHelper.geometryToWKB(geometry)+"')::geography, ? )::geometry)",radius) : new SQLQuery("ST_Intersects(geo, ST_GeomFromText('"
+              +WKTHelper.geometryToWKB(geometry)+"',4326))");
+    }
 
     if (searchQuery == null) {
       query = new SQLQuery("SELECT");
@@ -540,17 +937,54 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
       query = getCombinedQuery(event, geoQuery, searchQuery);
     }
 
-    return executeQueryWithRetry(query);
+    return executeFeatureQueryWithRetry(query);
+  }
+
+  /**
+   * Subdivides the (buffered) geometry of the event into parts with at most {@link #SUBDIVISION_MAX_VERTICES} vertices. The parts of the
+   * geometries of referenced features are cached.
+   *
+   * @return the parts as hex encoded WKB.
+   */
+  private String[] subdivideGeometry(GetFeaturesByGeometryEvent event) throws SQLException {
+    final String wkt = WKTHelper.geometryToWKB(event.getGeometry());
+    final String key = SubdivisionCache.key(event.getRefSpaceId(), event.getRefFeatureId(), event.getRadius());
+    if (key != null) {
+      final String[] cached = SubdivisionCache.get(key, wkt);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    final SQLQuery query = new SQLQuery("SELECT encode(ST_AsBinary(ST_Subdivide(");
+    if (event.getRadius() != 0) {
+      query.append("ST_Buffer(ST_GeomFromText(?, 4326)::geography, ?)::geometry", wkt, event.getRadius());
+    } else {
+      query.append("ST_GeomFromText(?, 4326)", wkt);
+    }
+    query.append(", ?)), 'hex')", SUBDIVISION_MAX_VERTICES);
+
+    final String[] parts = executeQuery(query, rs -> {
+      final List<String> result = new ArrayList<>();
+      while (rs.next()) {
+        result.add(rs.getString(1));
+      }
+      return result.toArray(new String[0]);
+    });
+    if (key != null) {
+      SubdivisionCache.put(key, wkt, parts);
+    }
+    return parts;
   }
 
   @Override
-  protected FeatureCollection processGetFeaturesByGeometryEvent(GetFeaturesByGeometryEvent event)
+  protected XyzResponse processGetFeaturesByGeometryEvent(GetFeaturesByGeometryEvent event)
       throws Exception {
     return performGeometrySearch(event);
   }
 
   @Override
-  protected FeatureCollection processGetFeaturesByBBoxEvent(GetFeaturesByBBoxEvent event) throws Exception {
+  protected XyzResponse processGetFeaturesByBBoxEvent(GetFeaturesByBBoxEvent event) throws Exception {
     final BBox bbox = event.getBbox();
     final boolean isBigQuery = (bbox.widthInDegree(false) >= (360d / 4d) || (bbox.heightInDegree() >= (180d / 4d)));
 
@@ -564,8 +998,22 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     }
 
     final SQLQuery searchQuery = generateSearchQuery(event);
-    final SQLQuery geoQuery = new SQLQuery("ST_Intersects(geo, ST_MakeEnvelope(?, ?, ?, ?, 4326))",
-        bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
+    if (searchQuery != null && isBigQuery && !Capabilities.canSearchFor(event.getSpace(), event.getPropertiesQuery(), this)) {
+      throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
+          "Invalid request parameters. Search for the provided properties is not supported for this space.");
+    }
+
+    // A big query with a search is not split, because the combined query, which starts with the search, is more selective.
+    final boolean isLowZoomTile = event instanceof GetFeaturesByTileEvent && ((GetFeaturesByTileEvent) event).getLevel() <= FAN_OUT_MAX_LEVEL;
+    if ((isBigQuery || isLowZoomTile) && !(isBigQuery && searchQuery != null)) {
+      final int parallelism = Math.min(PSQLConfig.readConnectorParam(event, PSQLConfig.BBOX_FAN_OUT_PARALLELISM, 0), freeReadConnections());
+      if (parallelism > 1) {
+        return processFanOutGetFeaturesByBBoxEvent(event, searchQuery, parallelism);
+      }
+    }
+
+    final SQLQuery geoQuery = SQLQuery.join("AND", new SQLQuery("ST_Intersects(geo, ST_MakeEnvelope(?, ?, ?, ?, 4326))",
+        bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat()), generatePartitionQuery(bbox));
 
     final SQLQuery query;
     if (searchQuery == null) {
@@ -578,16 +1026,139 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
       query.append("LIMIT ?", event.getLimit());
 
     } else if (isBigQuery) {
-      if (!Capabilities.canSearchFor(event.getSpace(), event.getPropertiesQuery(), this)) {
-        throw new ErrorResponseException(streamId, XyzError.ILLEGAL_ARGUMENT,
-            "Invalid request parameters. Search for the provided properties is not supported for this space.");
-      }
       query = getCombinedQuery(event, searchQuery, geoQuery);
     } else {
       query = getCombinedQuery(event, geoQuery, searchQuery);
     }
 
-    return executeQueryWithRetry(query);
+    return executeFeatureQueryWithRetry(query);
+  }
+
+  /**
+   * Splits the bounding box into quadrants and queries them in parallel on several pooled connections. The features are merged in the
+   * order of the quadrants, features which intersect several quadrants are only returned once and the limit is kept.
+   */
+  private FeatureCollection processFanOutGetFeaturesByBBoxEvent(GetFeaturesByBBoxEvent event, SQLQuery searchQuery, int parallelism)
+      throws Exception {
+    final BBox bbox = event.getBbox();
+    final List<SQLQuery> queries = new ArrayList<>();
+    for (BBox envelope : splitIntoQuadrants(bbox, parallelism > 4 ? 2 : 1)) {
+      final SQLQuery query = new SQLQuery("SELECT");
+      query.append(selectJson(event.getSelection()));
+      query.append(",");
+      query.append(geometrySelectorForEvent(event));
+      query.append(", jsondata->>'id' FROM ${schema}.${table} WHERE ST_Intersects(geo, ST_MakeEnvelope(?, ?, ?, ?, 4326))",
+          envelope.minLon(), envelope.minLat(), envelope.maxLon(), envelope.maxLat());
+      final SQLQuery partitionQuery = generatePartitionQuery(envelope);
+      if (partitionQuery != null) {
+        query.append("AND");
+        query.append(partitionQuery);
+      }
+      if (searchQuery != null) {
+        query.append("AND (");
+        query.append(searchQuery);
+        query.append(")");
+      }
+      query.append("LIMIT ?", event.getLimit());
+      queries.add(query);
+    }
+
+    List<Map<String, String>> results;
+    try {
+      results = executeQueriesInParallel(queries, parallelism);
+    } catch (Exception e) {
+      if (!canRetryAttempt(e)) {
+        throw e;
+      }
+      results = executeQueriesInParallel(queries, parallelism);
+    }
+
+    final Map<String, String> features = new LinkedHashMap<>();
+    for (Map<String, String> result : results) {
+      for (Map.Entry<String, String> feature : result.entrySet()) {
+        if (features.size() >= event.getLimit()) {
+          break;
+        }
+        features.putIfAbsent(feature.getKey(), feature.getValue());
+      }
+    }
+
+    final FeatureCollection collection = new FeatureCollection();
+    collection._setFeatures("[" + String.join(",", features.values()) + "]");
+    return collection;
+  }
+
+  /**
+   * Executes the queries in parallel and returns the features of each query, mapped by their id, in the order of the queries. At most
+   * the given number of queries run at the same time, each on its own pooled connection.
+   */
+  private List<Map<String, String>> executeQueriesInParallel(List<SQLQuery> queries, int parallelism) throws Exception {
+    final List<Map<String, String>> results = new ArrayList<>(Collections.nCopies(queries.size(), null));
+    final AtomicInteger next = new AtomicInteger();
+    final List<Future<Void>> workers = new ArrayList<>();
+    for (int i = 0; i < Math.min(parallelism, queries.size()); i++) {
+      workers.add(fanOutExecutor.submit(() -> {
+        int index;
+        while ((index = next.getAndIncrement()) < queries.size()) {
+          results.set(index, executeQuery(queries.get(index), this::featuresByIdResultSetHandler));
+        }
+        return null;
+      }));
+    }
+
+    try {
+      for (Future<Void> worker : workers) {
+        try {
+          worker.get();
+        } catch (ExecutionException e) {
+          throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+      }
+    } catch (Exception e) {
+      // Let the other workers stop, once their current query is done
+      next.set(queries.size());
+      throw e;
+    }
+    return results;
+  }
+
+  /**
+   * The handler for the sub-queries of a fan-out, which select the feature, its geometry and its id.
+   */
+  private Map<String, String> featuresByIdResultSetHandler(ResultSet rs) throws SQLException {
+    final Map<String, String> features = new LinkedHashMap<>();
+    final boolean twkb = isTwkbGeometry(rs);
+    while (rs.next()) {
+      final StringBuilder sb = new StringBuilder(rs.getString(1));
+      appendGeometry(sb, rs, twkb);
+      features.put(rs.getString(3), sb.toString());
+    }
+    return features;
+  }
+
+  /**
+   * Splits the bounding box recursively into four quadrants, as done by the quadkeys of a tile.
+   *
+   * @param bbox the bounding box.
+   * @param depth the number of splits, each split quadruples the number of the bounding boxes.
+   * @return the quadrants.
+   */
+  private static List<BBox> splitIntoQuadrants(BBox bbox, int depth) {
+    if (depth <= 0) {
+      return Collections.singletonList(bbox);
+    }
+
+    final double midLon = bbox.minLon() + (bbox.maxLon() - bbox.minLon()) / 2;
+    final double midLat = bbox.minLat() + (bbox.maxLat() - bbox.minLat()) / 2;
+    final List<BBox> quadrants = new ArrayList<>();
+    for (BBox quadrant : Arrays.asList(
+        new BBox(bbox.minLon(), midLat, midLon, bbox.maxLat()),
+        new BBox(midLon, midLat, bbox.maxLon(), bbox.maxLat()),
+        new BBox(bbox.minLon(), bbox.minLat(), midLon, midLat),
+        new BBox(midLon, bbox.minLat(), bbox.maxLon(), midLat))) {
+      quadrants.addAll(splitIntoQuadrants(quadrant, depth - 1));
+    }
+    return quadrants;
   }
 
   private SQLQuery getCombinedQuery(SearchForFeaturesEvent event, SQLQuery indexedQuery, SQLQuery secondaryQuery) throws SQLException {
@@ -612,97 +1183,517 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
   }
 
   /**
-   * Returns the query, which will contains the geometry object.
+   * Returns the query, which will contains the geometry object. If requested by the event, the geometry is selected as TWKB.
    */
   private SQLQuery geometrySelectorForEvent(final GetFeaturesByBBoxEvent event) {
     final long simplificationLevel = Optional.ofNullable(event.getSimplificationLevel()).orElse(0L);
     final double pixelSize = (double) EQUATOR_LENGTH / (TILE_SIZE << simplificationLevel);
+    final String geometryFunction = event.getBinaryGeometry() ? TWKB_GEOMETRY : "ST_AsGeoJson(%s)";
 
     if (!event.getClip()) {
       if (simplificationLevel <= 0) {
-        return new SQLQuery("geojson");
+        return new SQLQuery(event.getBinaryGeometry() ? String.format(TWKB_GEOMETRY, "geo") : "geojson");
 
       }
-      return new SQLQuery("ST_AsGeoJson(ST_Transform(ST_MakeValid(ST_SnapToGrid(ST_Force2D(ST_Transform(geo,3857)),?)),4326))", pixelSize);
+      return new SQLQuery(String.format(geometryFunction, "ST_Transform(ST_MakeValid(ST_SnapToGrid(ST_Force2D(ST_Transform(geo,3857)),?)),4326)"),
+          pixelSize);
     }
 
     final BBox bbox = event.getBbox();
     if (simplificationLevel <= 0) {
-      return new SQLQuery("ST_AsGeoJson(ST_Intersection(ST_MakeValid(geo),ST_MakeEnvelope(?,?,?,?,4326)))",
+      return new SQLQuery(String.format(geometryFunction, "ST_Intersection(ST_MakeValid(geo),ST_MakeEnvelope(?,?,?,?,4326))"),
           bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
     }
 
-    return new SQLQuery(
-        "ST_AsGeoJson(ST_Intersection(ST_Transform(ST_MakeValid(ST_SnapToGrid(ST_Force2D(ST_Transform(geo,3857)),?)),4326),ST_MakeEnvelope(?,?,?,?,4326)))",
+    return new SQLQuery(String.format(geometryFunction,
+        "ST_Intersection(ST_Transform(ST_MakeValid(ST_SnapToGrid(ST_Force2D(ST_Transform(geo,3857)),?)),4326),ST_MakeEnvelope(?,?,?,?,4326))"),
         pixelSize, bbox.minLon(), bbox.minLat(), bbox.maxLon(), bbox.maxLat());
   }
 
-  @Override
-  protected XyzResponse processGetStatistics(GetStatisticsEvent event) throws Exception {
-    final String schema = config.schema();
-    final String table = config.table(event);
+  @Override
+  protected XyzResponse processGetStatistics(GetStatisticsEvent event) throws Exception {
+    final String schema = config.schema();
+    final String table = config.table(event);
+
+    if (PSQLConfig.readConnectorParam(event, PSQLConfig.CACHED_STATISTICS, false)) {
+      final XyzResponse response = readCachedStatistics(sqlQuote(schema) + "." + sqlQuote(table));
+      if (response != null) {
+        return response;
+      }
+    }
+
+    SQLQuery query = new SQLQuery("SELECT * from " + schema + ".xyz_statistic_space('" + schema + "','" + table + "')");
+
+    try {
+      return executeQueryWithRetry(query, this::getStatisticsResultSetHandler);
+    } catch (SQLException e) {
+      throw new SQLException(e);
+    }
+  }
+
+  /**
+   * Returns the exact number of features of the space from the feature counter, which is maintained by the triggers of the table. The
+   * counter is initialized by the index maintenance.
+   *
+   * @param schemaTable the quoted schema and table name.
+   * @return the exact count or null, if the counter is not available.
+   */
+  private Long readExactCount(String schemaTable) {
+    try (final Connection connection = dataSource.getConnection()) {
+      return readFeatureCount(connection, schemaTable);
+    } catch (SQLException e) {
+      logger.warn("{} - Unable to read the exact feature count, falling back to the estimation: {}", streamId, e);
+      return null;
+    }
+  }
+
+  private Long readFeatureCount(Connection connection, String schemaTable) throws SQLException {
+    try (final PreparedStatement stmt = createStatement(connection, replaceVars(SELECT_FEATURE_COUNT))) {
+      stmt.setString(1, schemaTable);
+      try (final ResultSet rs = stmt.executeQuery()) {
+        return rs.next() ? rs.getLong(1) : null;
+      }
+    }
+  }
+  /**
+   * Returns true, if the table of the space has the given maintained column and the column is filled for all features. The column is
+   * added and filled by the index maintenance, which creates the index of the column at last, so that a valid index marks the column as
+   * complete.
+   *
+   * @param column the maintained column.
+   * @param tablesWithColumn the tables, which are known to have the complete column.
+   * @param tablesWithoutColumn the tables, which are known to not have the complete column, mapped to the time of the next check.
+   * @return true, if the column can be used, false otherwise.
+   */
+  private boolean hasCompleteColumn(MaintainedColumn column, Set<String> tablesWithColumn, Map<String, Long> tablesWithoutColumn) {
+    final String table = config.table(event);
+    if (tablesWithColumn.contains(table)) {
+      return true;
+    }
+    final Long nextCheck = tablesWithoutColumn.get(table);
+    if (nextCheck != null && nextCheck > System.currentTimeMillis()) {
+      return false;
+    }
+
+    try {
+      if (executeQuery(new SQLQuery(SELECT_VALID_INDEX, sqlQuote(config.schema()) + "." + sqlQuote(column.index(table))), ResultSet::next)) {
+        tablesWithColumn.add(table);
+        tablesWithoutColumn.remove(table);
+        return true;
+      }
+    } catch (SQLException e) {
+      logger.warn("{} - Unable to check the column '{}', falling back to the query without it: {}", streamId, column.name, e);
+    }
+    tablesWithoutColumn.put(table, System.currentTimeMillis() + MAINTAINED_COLUMN_CHECK_INTERVAL_MS);
+    return false;
+  }
+
+  /**
+   * Runs the index maintenance and adds the maintained columns, which are requested by the connector parameters, to the existing tables.
+   */
+  @Override
+  protected XyzResponse processIndexMaintenanceEvent(IndexMaintenanceEvent event) {
+    final XyzResponse response = super.processIndexMaintenanceEvent(event);
+    final long deadline = System.currentTimeMillis() + MAINTAINED_COLUMN_TIME_BUDGET_MS;
+    if (PSQLConfig.readConnectorParam(event, PSQLConfig.EXACT_COUNTS, false)) {
+      maintainFeatureCounts(event.getMaxSpaces(), deadline);
+    }
+    if (PSQLConfig.readConnectorParam(event, PSQLConfig.H3_CELL_COLUMN, false)) {
+      maintainColumn(H3_CELL_COLUMN, metadata.tablesWithH3Cell, metadata.tablesWithoutH3Cell, event.getMaxSpaces(), deadline);
+    }
+    if (PSQLConfig.readConnectorParam(event, PSQLConfig.QUADKEY_COLUMN, false)) {
+      maintainColumn(QUADKEY_COLUMN, metadata.tablesWithQuadkey, metadata.tablesWithoutQuadkey, event.getMaxSpaces(), deadline);
+    }
+    return response;
+  }
+
+  /**
+   * Folds the changes of the feature counts into the counts and initializes the feature counters of the tables, which don't have them
+   * yet. The triggers are added first, then the count is initialized without blocking the writes, because it is read from the same
+   * snapshot as the changes, which the triggers recorded in the meantime.
+   *
+   * @param maxTables the maximal amount of tables to initialize.
+   * @param deadline the time, at which the run stops.
+   */
+  private void maintainFeatureCounts(int maxTables, long deadline) {
+    try (final Connection connection = dataSource.getConnection()) {
+      try (final PreparedStatement stmt = createStatement(connection, "SELECT xyz_fold_feature_count(?)")) {
+        stmt.setString(1, config.schema());
+        stmt.execute();
+      }
+
+      final List<String> tables = new ArrayList<>();
+      try (final PreparedStatement stmt = createStatement(connection, replaceVars(SELECT_TABLES_WITHOUT_FEATURE_COUNT))) {
+        stmt.setString(1, config.schema());
+        stmt.setInt(2, maxTables);
+        try (final ResultSet rs = stmt.executeQuery()) {
+          while (rs.next()) {
+            tables.add(rs.getString(1));
+          }
+        }
+      }
+
+      for (String table : tables) {
+        if (System.currentTimeMillis() >= deadline) {
+          return;
+        }
+        initializeFeatureCount(connection, table);
+      }
+    } catch (Exception e) {
+      logger.error("{} - Failed to maintain the feature counts on database {} : {}", streamId, config.database(), e);
+    }
+  }
+
+  private void initializeFeatureCount(Connection connection, String table) throws SQLException {
+    final String schemaTable = sqlQuote(config.schema()) + "." + sqlQuote(table);
+    if (!hasTrigger(connection, schemaTable, "xyz_count_insert")) {
+      connection.setAutoCommit(false);
+      try (final Statement stmt = connection.createStatement()) {
+        stmt.setQueryTimeout(STATEMENT_TIMEOUT_SECONDS);
+        // Do not queue up the writes behind the short lock, while a long running query blocks it
+        stmt.execute("SET LOCAL lock_timeout = " + TimeUnit.SECONDS.toMillis(5));
+        for (String trigger : FEATURE_COUNT_TRIGGERS) {
+          stmt.execute(replaceVars(trigger, table));
+        }
+        // A count of a dropped table, whose oid was reused, must not be folded with the changes of the new table
+        stmt.execute(replaceVars("DELETE FROM ${schema}.xyz_feature_count WHERE relid = '${schema}.${table}'::regclass", table));
+        connection.commit();
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    }
+
+    connection.setAutoCommit(false);
+    connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+    try (final PreparedStatement stmt = connection.prepareStatement(replaceVars(INITIALIZE_FEATURE_COUNT, table))) {
+      stmt.setQueryTimeout(MAINTENANCE_STATEMENT_TIMEOUT_SECONDS);
+      stmt.setString(1, schemaTable);
+      stmt.setString(2, schemaTable);
+      stmt.executeUpdate();
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+      connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+    }
+    logger.info("{} - Initialized the feature counter of the table of space '{}'", streamId, table);
+  }
+
+  /**
+   * Adds the maintained column to the tables of the spaces, which don't have it completely yet. The trigger is added first, then the
+   * column is filled for the existing features in chunks, each one in its own transaction, so that writes are never blocked for long.
+   * At last the index is created concurrently, which marks the column as complete. A run stops at the deadline and the next run
+   * continues the filling.
+   *
+   * @param column the maintained column.
+   * @param tablesWithColumn the tables, which are known to have the complete column.
+   * @param tablesWithoutColumn the tables, which are known to not have the complete column, mapped to the time of the next check.
+   * @param maxTables the maximal amount of tables to process.
+   * @param deadline the time, at which the run stops.
+   */
+  private void maintainColumn(MaintainedColumn column, Set<String> tablesWithColumn, Map<String, Long> tablesWithoutColumn,
+      int maxTables, long deadline) {
+    try (final Connection connection = dataSource.getConnection()) {
+      final List<String> tables = new ArrayList<>();
+      try (final PreparedStatement stmt = createStatement(connection, SELECT_TABLES_WITHOUT_MAINTAINED_COLUMN)) {
+        stmt.setString(1, config.schema());
+        stmt.setString(2, column.name);
+        stmt.setInt(3, maxTables);
+        try (final ResultSet rs = stmt.executeQuery()) {
+          while (rs.next()) {
+            tables.add(rs.getString(1));
+          }
+        }
+      }
+
+      for (String table : tables) {
+        if (System.currentTimeMillis() >= deadline || !maintainColumn(connection, column, table, deadline)) {
+          return;
+        }
+        tablesWithColumn.add(table);
+        tablesWithoutColumn.remove(table);
+      }
+    } catch (Exception e) {
+      logger.error("{} - Failed to maintain the column '{}' on database {} : {}", streamId, column.name, config.database(), e);
+    }
+  }
+
+  /**
+   * Adds the maintained column to the given table, fills it and creates its index.
+   *
+   * @return true, if the column is complete, false if the deadline was reached before.
+   */
+  private boolean maintainColumn(Connection connection, MaintainedColumn column, String table, long deadline) throws SQLException {
+    final String schemaTable = sqlQuote(config.schema()) + "." + sqlQuote(table);
+    if (!hasTrigger(connection, schemaTable, column.trigger())) {
+      connection.setAutoCommit(false);
+      try (final Statement stmt = connection.createStatement()) {
+        stmt.setQueryTimeout(STATEMENT_TIMEOUT_SECONDS);
+        // Do not queue up the writes behind the short lock, while a long running query blocks it
+        stmt.execute("SET LOCAL lock_timeout = " + TimeUnit.SECONDS.toMillis(5));
+        for (String query : column.setUpQueries) {
+          stmt.execute(replaceVars(query, table));
+        }
+        connection.commit();
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    }
+
+    // The features, which are written from now on, are filled by the trigger, so only the existing serial numbers need to be filled
+    long min = 0, max = -1;
+    try (final Statement stmt = connection.createStatement();
+        final ResultSet rs = stmt.executeQuery(replaceVars("SELECT min(i), max(i) FROM ${schema}.${table}", table))) {
+      if (rs.next() && rs.getObject(1) != null) {
+        min = rs.getLong(1);
+        max = rs.getLong(2);
+      }
+    }
+
+    final String progressKey = table + "." + column.name;
+    long from = Math.max(min, metadata.maintainedColumnProgress.getOrDefault(progressKey, min));
+    try (final PreparedStatement stmt = createStatement(connection, replaceVars(column.fillQuery, table))) {
+      while (from <= max) {
+        if (System.currentTimeMillis() >= deadline) {
+          metadata.maintainedColumnProgress.put(progressKey, from);
+          logger.info("{} - Filled the column '{}' of the table of space '{}' up to the serial number {}", streamId, column.name, table, from);
+          return false;
+        }
+        stmt.setLong(1, from);
+        stmt.setLong(2, from + MAINTAINED_COLUMN_CHUNK_SIZE);
+        stmt.executeUpdate();
+        from += MAINTAINED_COLUMN_CHUNK_SIZE;
+      }
+    }
+    metadata.maintainedColumnProgress.remove(progressKey);
+
+    try (final Statement stmt = connection.createStatement()) {
+      stmt.setQueryTimeout(MAINTENANCE_STATEMENT_TIMEOUT_SECONDS);
+      // An index, which is left invalid by a failed run, would not be replaced otherwise
+      final String index = sqlQuote(column.index(table));
+      stmt.execute(replaceVars("DROP INDEX CONCURRENTLY IF EXISTS ${schema}." + index, table));
+      stmt.execute(replaceVars(column.createIndexQuery(index, true), table));
+    }
+    logger.info("{} - Added the column '{}' to the table of space '{}'", streamId, column.name, table);
+    return true;
+  }
+
+  /**
+   * Returns the partition level, which is requested by the space parameters for the table of the space.
+   */
+  private int requestedPartitionLevel() {
+    if (event.getParams() == null || !(event.getParams().get(PSQLConfig.PARTITION_LEVEL) instanceof Number)) {
+      return 0;
+    }
+    final int level = ((Number) event.getParams().get(PSQLConfig.PARTITION_LEVEL)).intValue();
+    return Math.max(0, Math.min(level, SpatialPartitioning.MAX_LEVEL));
+  }
+
+  /**
+   * Returns the partition level of the table of the space or zero, if the table is not partitioned. The layout is only looked up for the
+   * spaces, which request a partitioned table, and the actual level of the table is used, because the parameter may have been changed
+   * after the table was created.
+   */
+  private int partitionLevel() {
+    final String table = config.table(event);
+    final Integer cached = metadata.partitionLevels.get(table);
+    if (cached != null) {
+      return cached;
+    }
+    if (requestedPartitionLevel() == 0) {
+      return 0;
+    }
+
+    try (final Connection connection = dataSource.getConnection();
+        final PreparedStatement stmt = createStatement(connection, SELECT_PARTITION_KEY)) {
+      stmt.setString(1, sqlQuote(config.schema()) + "." + sqlQuote(table));
+      try (final ResultSet rs = stmt.executeQuery()) {
+        if (!rs.next()) {
+          return 0;
+        }
+        final int level = SpatialPartitioning.parseLevel(rs.getString(1));
+        metadata.partitionLevels.put(table, level);
+        return level;
+      }
+    } catch (SQLException e) {
+      logger.warn("{} - Unable to read the partition key of the table of space '{}': {}", streamId, event.getSpace(), e);
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the condition, which restricts a query for the given bounding box to the partitions, that may contain intersecting features,
+   * or null, if the table of the space is not partitioned.
+   */
+  private SQLQuery generatePartitionQuery(BBox bbox) throws SQLException {
+    final int level = partitionLevel();
+    if (level == 0) {
+      return null;
+    }
+    return new SQLQuery(SpatialPartitioning.partitionKey(level) + " = ANY(?)",
+        createSQLArray(SpatialPartitioning.intersectingKeys(bbox, level), "text"));
+  }
+
+  private boolean hasTrigger(Connection connection, String schemaTable, String trigger) throws SQLException {
+    try (final PreparedStatement stmt = createStatement(connection, SELECT_TRIGGER)) {
+      stmt.setString(1, schemaTable);
+      stmt.setString(2, trigger);
+      try (final ResultSet rs = stmt.executeQuery()) {
+        return rs.next();
+      }
+    }
+  }
+
+
+  /**
+   * The result handler for a CountFeatures event.
+   *
+   * @param rs the result set.
+   * @return the feature collection generated from the result.
+   */
+  private XyzResponse getStatisticsResultSetHandler(ResultSet rs) {
+    try {
+      rs.next();
+      return readStatistics(rs);
+    } catch (Exception e) {
+      return new ErrorResponse().withStreamId(streamId).withError(XyzError.EXCEPTION).withErrorMessage(e.getMessage());
+    }
+  }
+
+  /**
+   * The result handler for the persisted statistics. If features were written since the statistics were computed, the count is
+   * corrected by the known change and all values are marked as estimated.
+   *
+   * @return the statistics or null, if no statistics are persisted for the space.
+   */
+  private XyzResponse cachedStatisticsResultSetHandler(ResultSet rs) {
+    try {
+      if (!rs.next()) {
+        return null;
+      }
+
+      final StatisticsResponse statistics = readStatistics(rs);
+      if (rs.getLong("changes") > 0) {
+        final long count = statistics.getCount().getValue() + rs.getLong("count_delta");
+        statistics.getCount().setValue(Math.max(0, count));
+        for (Value<?> value : Arrays.asList(statistics.getCount(), statistics.getByteSize(), statistics.getBbox(),
+            statistics.getGeometryTypes(), statistics.getTags(), statistics.getProperties())) {
+          value.setEstimated(true);
+        }
+      }
+      return statistics;
+    } catch (Exception e) {
+      return new ErrorResponse().withStreamId(streamId).withError(XyzError.EXCEPTION).withErrorMessage(e.getMessage());
+    }
+  }
+
+  /**
+   * Reads the statistics from the current row of the result set.
+   */
+  private StatisticsResponse readStatistics(ResultSet rs) throws Exception {
+    Value<Long> tablesize = XyzSerializable.deserialize(rs.getString("tablesize"), new TypeReference<Value<Long>>() {
+    });
+    Value<List<String>> geometryTypes = XyzSerializable
+        .deserialize(rs.getString("geometryTypes"), new TypeReference<Value<List<String>>>() {
+        });
+    Value<List<PropertyStatistics>> tags = XyzSerializable
+        .deserialize(rs.getString("tags"), new TypeReference<Value<List<PropertyStatistics>>>() {
+        });
+    PropertiesStatistics properties = XyzSerializable.deserialize(rs.getString("properties"), PropertiesStatistics.class);
+    Value<Long> count = XyzSerializable.deserialize(rs.getString("count"), new TypeReference<Value<Long>>() {
+    });
+    Map<String, Object> bboxMap = XyzSerializable.deserialize(rs.getString("bbox"), new TypeReference<Map<String, Object>>() {
+    });
 
-    SQLQuery query = new SQLQuery("SELECT * from " + schema + ".xyz_statistic_space('" + schema + "','" + table + "')");
+    final String searchable = rs.getString("searchable");
+    properties.setSearchable(Searchable.valueOf(searchable));
 
-    try {
-      return executeQueryWithRetry(query, this::getStatisticsResultSetHandler);
-    } catch (SQLException e) {
-      throw new SQLException(e);
+    String bboxs = (String) bboxMap.get("value");
+    if (bboxs == null) {
+      bboxs = "";
+    }
+
+    BBox bbox = new BBox();
+    Matcher matcher = pattern.matcher(bboxs);
+    if (matcher.matches()) {
+      bbox = new BBox(
+          Math.max(-180, Math.min(180, Double.parseDouble(matcher.group(1)))),
+          Math.max(-90, Math.min(90, Double.parseDouble(matcher.group(2)))),
+          Math.max(-180, Math.min(180, Double.parseDouble(matcher.group(3)))),
+          Math.max(-90, Math.min(90, Double.parseDouble(matcher.group(4))))
+      );
     }
+
+    return new StatisticsResponse()
+        .withBBox(new Value<BBox>().withValue(bbox).withEstimated(bboxMap.get("estimated") == Boolean.TRUE))
+        .withByteSize(tablesize)
+        .withCount(count)
+        .withGeometryTypes(geometryTypes)
+        .withTags(tags)
+        .withProperties(properties);
   }
 
   /**
-   * The result handler for a CountFeatures event.
+   * Returns the persisted statistics of the space. If no statistics are persisted yet, they are computed and persisted once, afterwards
+   * they are only refreshed by the index maintenance, when features were written.
    *
-   * @param rs the result set.
-   * @return the feature collection generated from the result.
+   * @param schemaTable the quoted schema and table name.
+   * @return the statistics or null, if the persisted statistics are not available.
    */
-  private XyzResponse getStatisticsResultSetHandler(ResultSet rs) {
+  private XyzResponse readCachedStatistics(String schemaTable) {
     try {
-      rs.next();
-
-      Value<Long> tablesize = XyzSerializable.deserialize(rs.getString("tablesize"), new TypeReference<Value<Long>>() {
-      });
-      Value<List<String>> geometryTypes = XyzSerializable
-          .deserialize(rs.getString("geometryTypes"), new TypeReference<Value<List<String>>>() {
-          });
-      Value<List<PropertyStatistics>> tags = XyzSerializable
-          .deserialize(rs.getString("tags"), new TypeReference<Value<List<PropertyStatistics>>>() {
-          });
-      PropertiesStatistics properties = XyzSerializable.deserialize(rs.getString("properties"), PropertiesStatistics.class);
-      Value<Long> count = XyzSerializable.deserialize(rs.getString("count"), new TypeReference<Value<Long>>() {
-      });
-      Map<String, Object> bboxMap = XyzSerializable.deserialize(rs.getString("bbox"), new TypeReference<Map<String, Object>>() {
-      });
-
-      final String searchable = rs.getString("searchable");
-      properties.setSearchable(Searchable.valueOf(searchable));
-
-      String bboxs = (String) bboxMap.get("value");
-      if (bboxs == null) {
-        bboxs = "";
+      XyzResponse response = executeQuery(new SQLQuery(SELECT_CACHED_STATISTICS, schemaTable), this::cachedStatisticsResultSetHandler);
+      if (response != null) {
+        return response;
       }
 
-      BBox bbox = new BBox();
-      Matcher matcher = pattern.matcher(bboxs);
-      if (matcher.matches()) {
-        bbox = new BBox(
-            Math.max(-180, Math.min(180, Double.parseDouble(matcher.group(1)))),
-            Math.max(-90, Math.min(90, Double.parseDouble(matcher.group(2)))),
-            Math.max(-180, Math.min(180, Double.parseDouble(matcher.group(3)))),
-            Math.max(-90, Math.min(90, Double.parseDouble(matcher.group(4))))
-        );
+      try (final Connection connection = dataSource.getConnection();
+          final PreparedStatement stmt = createStatement(connection, "SELECT xyz_refresh_space_statistics(?, ?)")) {
+        stmt.setString(1, config.schema());
+        stmt.setString(2, config.table(event));
+        stmt.execute();
+      }
+      logger.info("{} - Persisted the statistics of space '{}'", streamId, event.getSpace());
+
+      // Read from the primary, the replica may not yet contain the statistics
+      try (final Connection connection = dataSource.getConnection();
+          final PreparedStatement stmt = createStatement(connection, replaceVars(SELECT_CACHED_STATISTICS))) {
+        stmt.setString(1, schemaTable);
+        try (final ResultSet rs = stmt.executeQuery()) {
+          return cachedStatisticsResultSetHandler(rs);
+        }
       }
-
-      return new StatisticsResponse()
-          .withBBox(new Value<BBox>().withValue(bbox).withEstimated(bboxMap.get("estimated") == Boolean.TRUE))
-          .withByteSize(tablesize)
-          .withCount(count)
-          .withGeometryTypes(geometryTypes)
-          .withTags(tags)
-          .withProperties(properties);
     } catch (Exception e) {
-      return new ErrorResponse().withStreamId(streamId).withError(XyzError.EXCEPTION).withErrorMessage(e.getMessage());
+      logger.warn("{} - Unable to read the persisted statistics, computing them: {}", streamId, e);
+      return null;
+    }
+  }
+
+  /**
+   * Marks the persisted statistics of the space as stale, after features were written.
+   *
+   * @param changes the number of written features.
+   * @param countDelta the change of the feature count.
+   */
+  private void markStatisticsStale(long changes, long countDelta) {
+    if (changes <= 0 || !PSQLConfig.readConnectorParam(event, PSQLConfig.CACHED_STATISTICS, false)) {
+      return;
+    }
+
+    final String schemaTable = sqlQuote(config.schema()) + "." + sqlQuote(config.table(event));
+    try {
+      executeUpdate(new SQLQuery("UPDATE ${schema}.xyz_space_statistics SET changes = changes + ?, count_delta = count_delta + ?"
+          + " WHERE relid = ?::regclass", changes, countDelta, schemaTable));
+    } catch (SQLException e) {
+      logger.warn("{} - Unable to mark the statistics of space '{}' as stale: {}", streamId, event.getSpace(), e);
     }
   }
 
@@ -712,6 +1703,13 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     final String schema = config.schema();
     final String table = config.table(event);
     final String schemaTable = sqlQuote(schema) + "." + sqlQuote(table);
+    if (searchQuery == null && PSQLConfig.readConnectorParam(event, PSQLConfig.EXACT_COUNTS, false)) {
+      final Long count = readExactCount(schemaTable);
+      if (count != null) {
+        return new CountResponse().withCount(count).withEstimated(false);
+      }
+    }
+
     final SQLQuery query;
     if (searchQuery != null) {
       query = new SQLQuery("SELECT count(*) FROM ${schema}.${table} WHERE");
@@ -792,30 +1790,26 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
       query.append("WHERE");
     }
 
-    if (hasSearch) {
+    if (hasSearch && hasHandle) {
+      query.append("(");
+      query.append(searchQuery);
+      query.append(") AND");
+    } else if (hasSearch) {
       query.append(searchQuery);
     }
 
+    // Keyset pagination, the handle is the serial of the last returned feature
     if (hasHandle) {
-      if (hasSearch) {
-        query.append("OFFSET ?", start);
-      } else {
-        query.append("i > ?", start);
-      }
+      query.append("i > ?", start);
     }
 
-    if (isIterate && !hasSearch) {
+    if (isIterate) {
       query.append("ORDER BY i");
     }
 
     query.append("LIMIT ?", event.getLimit());
 
-    FeatureCollection collection = executeQueryWithRetry(query);
-    if (isIterate && hasSearch && collection.getHandle() != null) {
-      collection.setHandle("" + (start + event.getLimit()));
-    }
-
-    return collection;
+    return executeQueryWithRetry(query);
   }
 
   @Override
@@ -835,12 +1829,97 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     }
 
     boolean includeOldStates = event.getParams() != null && event.getParams().get(PSQLConfig.INCLUDE_OLD_STATES) == Boolean.TRUE;
+    if (searchQuery != null && event.getLimit() > 0) {
+      return deleteFeaturesInChunks(event, searchQuery, includeOldStates);
+    }
+
     if (searchQuery != null && includeOldStates) {
       query.append(" RETURNING jsondata->'id' as id, geojson as geometry");
-      return executeQueryWithRetry(query, this::oldStatesResultSetHandler);
+      final FeatureCollection collection = executeQueryWithRetry(query, this::oldStatesResultSetHandler);
+      if (PSQLConfig.readConnectorParam(event, PSQLConfig.CACHED_STATISTICS, false)) {
+        final long count = collection.getFeatures().size();
+        markStatisticsStale(count, -count);
+      }
+      return collection;
+    }
+
+    if (searchQuery == null) {
+      final long count = executeUpdateWithRetry(query);
+      // The number of truncated features is unknown, so let the statistics be computed again
+      if (PSQLConfig.readConnectorParam(event, PSQLConfig.CACHED_STATISTICS, false)) {
+        try {
+          executeUpdate(new SQLQuery("DELETE FROM ${schema}.xyz_space_statistics WHERE relid = ?::regclass",
+              sqlQuote(config.schema()) + "." + sqlQuote(config.table(event))));
+        } catch (SQLException e) {
+          logger.warn("{} - Unable to remove the statistics of space '{}': {}", streamId, event.getSpace(), e);
+        }
+      }
+      return new FeatureCollection().withCount(count);
+    }
+
+    final long count = executeUpdateWithRetry(query);
+    markStatisticsStale(count, -count);
+    return new FeatureCollection().withCount(count);
+  }
+
+  /**
+   * Deletes the features, which match the search query, in chunks ordered by their serial. Each chunk is deleted in its own transaction,
+   * so that the row locks are only held shortly and the write ahead log is written in small portions. At most the limit of the event is
+   * deleted, if more features match the query, the response contains a handle to continue the deletion with the next event.
+   *
+   * @return the feature collection with the number of deleted features, the handle and, if requested, the old states.
+   */
+  private XyzResponse deleteFeaturesInChunks(DeleteFeaturesByTagEvent event, SQLQuery searchQuery, boolean includeOldStates)
+      throws Exception {
+    final int chunkSize = Math.max(1, PSQLConfig.readConnectorParam(event, PSQLConfig.DELETE_CHUNK_SIZE, DEFAULT_DELETE_CHUNK_SIZE));
+    final StringBuilder oldStates = new StringBuilder("[");
+    long handle = event.getHandle() != null ? Long.parseLong(event.getHandle()) : 0L;
+    long count = 0;
+    boolean hasMore = true;
+
+    while (hasMore && count < event.getLimit()) {
+      final int limit = (int) Math.min(chunkSize, event.getLimit() - count);
+      final SQLQuery query = new SQLQuery("DELETE FROM ${schema}.${table} WHERE i IN (SELECT i FROM ${schema}.${table} WHERE (");
+      query.append(searchQuery);
+      query.append(") AND i > ? ORDER BY i LIMIT ?)", handle, limit);
+      query.append(includeOldStates ? "RETURNING i, jsondata->'id' as id, geojson as geometry" : "RETURNING i");
+
+      final FeatureCollection chunk = executeQueryWithRetry(query, rs -> {
+        final StringBuilder sb = new StringBuilder();
+        long deleted = 0;
+        long lastSerial = 0;
+        while (rs.next()) {
+          deleted++;
+          lastSerial = Math.max(lastSerial, rs.getLong("i"));
+          if (includeOldStates) {
+            appendOldState(sb.length() > 0 ? sb.append(",") : sb, rs);
+          }
+        }
+        // The old states are only taken over, after the whole chunk was read
+        if (sb.length() > 0) {
+          oldStates.append(oldStates.length() > 1 ? "," : "").append(sb);
+        }
+        return new FeatureCollection().withCount(deleted).withHandle("" + lastSerial);
+      });
+
+      final long deleted = chunk.getCount();
+      if (deleted > 0) {
+        handle = Long.parseLong(chunk.getHandle());
+      }
+      count += deleted;
+      hasMore = deleted == limit;
+      logger.info("{} - Deleted a chunk of {} features from space '{}', {} features in total", streamId, deleted, event.getSpace(), count);
     }
+    markStatisticsStale(count, -count);
 
-    return new FeatureCollection().withCount((long) executeUpdateWithRetry(query));
+    final FeatureCollection collection = new FeatureCollection().withCount(count);
+    if (hasMore) {
+      collection.setHandle("" + handle);
+    }
+    if (includeOldStates) {
+      collection._setFeatures(oldStates.append("]").toString());
+    }
+    return collection;
   }
 
   @Override
@@ -882,12 +1961,16 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
       }
     }
 
-    return executeModifyFeatures(event);
+    final FeatureCollection collection = executeModifyFeatures(event);
+    final long inserted = collection.getInserted() == null ? 0 : collection.getInserted().size();
+    final long updated = collection.getUpdated() == null ? 0 : collection.getUpdated().size();
+    final long deleted = collection.getDeleted() == null ? 0 : collection.getDeleted().size();
+    markStatisticsStale(inserted + updated + deleted, inserted - deleted);
+    return collection;
   }
 
   private FeatureCollection executeModifyFeatures(ModifyFeaturesEvent event) throws Exception {
     boolean includeOldStates = event.getParams() != null && event.getParams().get(PSQLConfig.INCLUDE_OLD_STATES) == Boolean.TRUE;
-    List<Feature> oldFeatures = null;
 
     List<Feature> inserts = Optional.ofNullable(event.getInsertFeatures()).orElse(new ArrayList<>());
     List<Feature> updates = Optional.ofNullable(event.getUpdateFeatures()).orElse(new ArrayList<>());
@@ -897,34 +1980,28 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     List<String> updateIds = updates.stream().map(Feature::getId).filter(Objects::nonNull).collect(Collectors.toList());
     List<String> deleteIds = new ArrayList<>(deletes.keySet());
 
-    if (includeOldStates) {
-      String[] idsToFetch = Stream.of(insertIds, updateIds, deleteIds).flatMap(List::stream).toArray(String[]::new);
-
-      SQLQuery query = new SQLQuery("SELECT jsondata, geojson FROM ${schema}.${table} WHERE jsondata->>'id' = ANY(?)",
-          createSQLArray(idsToFetch, "text"));
-      FeatureCollection oldFeaturesCollection = executeQueryWithRetry(query);
-      if (oldFeaturesCollection != null) {
-        oldFeatures = oldFeaturesCollection.getFeatures();
-      }
-    }
-
     try (final Connection connection = dataSource.getConnection()) {
       final FeatureCollection collection = new FeatureCollection();
       collection.setFeatures(new ArrayList<>());
+      final Set<String> failedIds = new HashSet<>();
+      // The old states are returned by the update and delete statements themselves, inserts do not have an old state.
+      final List<String> oldStates = includeOldStates ? new ArrayList<>() : null;
       try {
         boolean transaction = event.getTransaction() == Boolean.TRUE;
         connection.setAutoCommit(!transaction);
         boolean firstConnectionAttempt = true;
+        final int batchSize = transaction ? 0 : PSQLConfig.readConnectorParam(event, PSQLConfig.NON_TRANSACTIONAL_BATCH_SIZE, 0);
 
         // DELETE
-        if (deletes.size() > 0) {
+        if (deletes.size() > 0 && batchSize > 0) {
+          failedIds.addAll(batchedDeleteFeatures(connection, deletes, batchSize, fails, oldStates));
+        } else if (deletes.size() > 0) {
           final ArrayList<String> idsToDelete = new ArrayList<>();
 
-          String deleteAtomicStmtSQL = "DELETE FROM ${schema}.${table} WHERE jsondata->>'id' = ? AND jsondata->'properties'->'@ns:com:here:xyz'->>'hash' = ?";
-          deleteAtomicStmtSQL = replaceVars(deleteAtomicStmtSQL);
+          final String deleteAtomicStmtSQL = replaceVars(includeOldStates ? DELETE_ATOMIC_STMT_SQL + RETURNING_OLD_STATE : DELETE_ATOMIC_STMT_SQL);
           boolean batchDeleteAtomic = false;
 
-          try (final PreparedStatement deleteAtomicStmt = createStatement(connection, deleteAtomicStmtSQL)) {
+          try (final PreparedStatement deleteAtomicStmt = createStatement(connection, deleteAtomicStmtSQL, includeOldStates)) {
             for (String id : deletes.keySet()) {
               final String hash = deletes.get(id);
               try {
@@ -938,6 +2015,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
                     batchDeleteAtomic = true;
                   } else {
                     deleteAtomicStmt.execute();
+                    readOldStates(deleteAtomicStmt, oldStates);
                   }
                 }
               } catch (Exception e) {
@@ -945,7 +2023,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
                   if (firstConnectionAttempt && !retryAttempted) {
                     deleteAtomicStmt.close();
                     connection.close();
-                    canRetryAttempt();
+                    canRetryAttempt(e);
                     return executeModifyFeatures(event);
                   }
 
@@ -958,6 +2036,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
             }
             if (batchDeleteAtomic) {
               deleteAtomicStmt.executeBatch();
+              readOldStates(deleteAtomicStmt, oldStates);
             }
           } catch (Exception dex) {
             throw dex;
@@ -965,17 +2044,18 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
 
           if (idsToDelete.size() > 0) {
             String deleteStmtSQL = "DELETE FROM ${schema}.${table} WHERE jsondata->>'id' = ANY(?)";
-            deleteStmtSQL = replaceVars(deleteStmtSQL);
-            try (final PreparedStatement deleteStmt = createStatement(connection, deleteStmtSQL)) {
+            deleteStmtSQL = replaceVars(includeOldStates ? deleteStmtSQL + RETURNING_OLD_STATE : deleteStmtSQL);
+            try (final PreparedStatement deleteStmt = createStatement(connection, deleteStmtSQL, includeOldStates)) {
               try {
                 deleteStmt.setArray(1, connection.createArrayOf("text", idsToDelete.toArray(new String[idsToDelete.size()])));
                 deleteStmt.execute();
+                readOldStates(deleteStmt, oldStates);
               } catch (Exception e) {
                 if (!transaction) {
                   if (firstConnectionAttempt && !retryAttempted) {
                     deleteStmt.close();
                     connection.close();
-                    canRetryAttempt();
+                    canRetryAttempt(e);
                     return executeModifyFeatures(event);
                   }
 
@@ -989,13 +2069,28 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
         }
 
         // INSERT
-        if (inserts.size() > 0) {
-          String insertStmtSQL = "INSERT INTO ${schema}.${table} (jsondata, geo, geojson) VALUES(?::jsonb, ST_Force3D(ST_GeomFromWKB(?,4326)), ?::jsonb)";
-          insertStmtSQL = replaceVars(insertStmtSQL);
+        final int copyInsertThreshold = PSQLConfig.readConnectorParam(event, PSQLConfig.COPY_INSERT_THRESHOLD, 0);
+        final boolean copyInserted = copyInsertThreshold > 0 && inserts.size() > copyInsertThreshold
+            && copyInsertFeatures(connection, inserts, transaction, collection);
+
+        // INSERT and UPDATE as one set based upsert
+        // The ids of a partitioned table are only unique per partition, so that there is no conflict target for the upsert
+        final Set<String> upsertFailedIds = PSQLConfig.readConnectorParam(event, PSQLConfig.SET_BASED_WRITES, false)
+            && partitionLevel() == 0
+            ? upsertFeatures(connection, copyInserted ? Collections.emptyList() : inserts, updates, transaction, collection, fails, oldStates)
+            : null;
+        final boolean upserted = upsertFailedIds != null;
+        if (upserted) {
+          failedIds.addAll(upsertFailedIds);
+        }
+
+        if (inserts.size() > 0 && !copyInserted && !upserted && batchSize > 0) {
+          failedIds.addAll(batchedWriteFeatures(connection, inserts, false, batchSize, collection, fails, null));
+        } else if (inserts.size() > 0 && !copyInserted && !upserted) {
+          final String insertStmtSQL = replaceVars(INSERT_STMT_SQL);
           boolean batchInsert = false;
 
-          String insertWithoutGeometryStmtSQL = "INSERT INTO ${schema}.${table} (jsondata, geo, geojson) VALUES(?::jsonb, NULL, NULL)";
-          insertWithoutGeometryStmtSQL = replaceVars(insertWithoutGeometryStmtSQL);
+          final String insertWithoutGeometryStmtSQL = replaceVars(INSERT_WITHOUT_GEOMETRY_STMT_SQL);
           boolean batchInsertWithoutGeometry = false;
 
           try (
@@ -1054,7 +2149,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
                     insertStmt.close();
                     insertWithoutGeometryStmt.close();
                     connection.close();
-                    canRetryAttempt();
+                    canRetryAttempt(e);
                     return executeModifyFeatures(event);
                   }
                   logger.error("{} - Failed to insert object #{}: {}", streamId, i, e);
@@ -1076,18 +2171,19 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
         }
 
         // UPDATE
-        if (updates.size() > 0) {
-          String updateStmtSQL = "UPDATE ${schema}.${table} SET jsondata = ?::jsonb, geo=ST_Force3D(ST_GeomFromWKB(?,4326)), geojson = ?::jsonb WHERE jsondata->>'id' = ?";
-          updateStmtSQL = replaceVars(updateStmtSQL);
+        if (updates.size() > 0 && !upserted && batchSize > 0) {
+          failedIds.addAll(batchedWriteFeatures(connection, updates, true, batchSize, collection, fails, oldStates));
+        } else if (updates.size() > 0 && !upserted) {
+          final String updateStmtSQL = replaceVars(includeOldStates ? UPDATE_RETURNING_OLD_STATE_STMT_SQL : UPDATE_STMT_SQL);
           boolean batchUpdate = false;
 
-          String updateWithoutGeometryStmtSQL = "UPDATE ${schema}.${table} SET  jsondata = ?::jsonb, geo=NULL, geojson = NULL WHERE jsondata->>'id' = ?";
-          updateWithoutGeometryStmtSQL = replaceVars(updateWithoutGeometryStmtSQL);
+          final String updateWithoutGeometryStmtSQL = replaceVars(
+              includeOldStates ? UPDATE_WITHOUT_GEOMETRY_RETURNING_OLD_STATE_STMT_SQL : UPDATE_WITHOUT_GEOMETRY_STMT_SQL);
           boolean batchUpdateWithoutGeometry = false;
 
           try (
-              final PreparedStatement updateStmt = createStatement(connection, updateStmtSQL);
-              final PreparedStatement updateWithoutGeometryStmt = createStatement(connection, updateWithoutGeometryStmtSQL);
+              final PreparedStatement updateStmt = createStatement(connection, updateStmtSQL, includeOldStates);
+              final PreparedStatement updateWithoutGeometryStmt = createStatement(connection, updateWithoutGeometryStmtSQL, includeOldStates);
           ) {
             for (int i = 0; i < updates.size(); i++) {
               try {
@@ -1123,6 +2219,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
                     batchUpdateWithoutGeometry = true;
                   } else {
                     updateWithoutGeometryStmt.execute();
+                    readOldStates(updateWithoutGeometryStmt, oldStates);
                   }
                 } else {
                   updateStmt.setObject(1, jsonbObject);
@@ -1135,6 +2232,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
                     batchUpdate = true;
                   } else {
                     updateStmt.execute();
+                    readOldStates(updateStmt, oldStates);
                   }
                 }
                 collection.getFeatures().add(feature);
@@ -1144,7 +2242,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
                     updateStmt.close();
                     updateWithoutGeometryStmt.close();
                     connection.close();
-                    canRetryAttempt();
+                    canRetryAttempt(e);
                     return executeModifyFeatures(event);
                   }
                   logger.error("{} - Failed to update object #{}: {}", streamId, i, e);
@@ -1156,9 +2254,11 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
             }
             if (batchUpdate) {
               updateStmt.executeBatch();
+              readOldStates(updateStmt, oldStates);
             }
             if (batchUpdateWithoutGeometry) {
               updateWithoutGeometryStmt.executeBatch();
+              readOldStates(updateWithoutGeometryStmt, oldStates);
             }
           }
         }
@@ -1172,7 +2272,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
             connection.rollback();
             if (!retryAttempted) {
               connection.close();
-              canRetryAttempt();
+              canRetryAttempt(e);
               return executeModifyFeatures(event);
             }
           }
@@ -1188,6 +2288,9 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
       }
 
       collection.setFailed(fails);
+      insertIds.removeAll(failedIds);
+      updateIds.removeAll(failedIds);
+      deleteIds.removeAll(failedIds);
 
       if (insertIds.size() > 0) {
         if (collection.getInserted() == null) {
@@ -1210,19 +2313,439 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
         collection.getDeleted().addAll(deleteIds);
       }
 
-      if (oldFeatures != null) {
-        collection.setOldFeatures(oldFeatures);
-        ;
+      if (oldStates != null) {
+        final FeatureCollection oldFeatures = new FeatureCollection();
+        oldFeatures._setFeatures("[" + String.join(",", oldStates) + "]");
+        collection.setOldFeatures(oldFeatures.getFeatures());
       }
 
       return collection;
     }
   }
 
-  private boolean canRetryAttempt() throws Exception {
+  /**
+   * Reads the old states, which are returned by an executed update or delete statement, and adds them as serialized features to the given
+   * list. After a batch the old states of all its statements are returned.
+   *
+   * @param stmt the executed statement, which was created to return the columns jsondata and geojson of the previous rows.
+   * @param oldStates the list to which to add the old states or null, if no old states are requested.
+   */
+  private static void readOldStates(PreparedStatement stmt, List<String> oldStates) throws SQLException {
+    if (oldStates == null) {
+      return;
+    }
+    try (final ResultSet rs = stmt.getGeneratedKeys()) {
+      while (rs.next()) {
+        oldStates.add(oldState(rs.getString(1), rs.getString(2)));
+      }
+    }
+  }
+
+  /**
+   * Returns the old state of a feature as serialized feature, which consists of its JSON document and its geometry.
+   */
+  private static String oldState(String jsondata, String geojson) {
+    return jsondata.substring(0, jsondata.length() - 1) + ",\"geometry\":" + (geojson == null ? "null" : geojson) + "}";
+  }
+
+  /**
+   * Inserts the features by streaming them through the COPY protocol into a temporary staging table, from which they are moved into the
+   * space table with one statement. When not running in a transaction, a failure is rolled back and reported by returning false, so that
+   * the caller can fall back to the single inserts, which isolate the failing rows.
+   *
+   * @return true if all features were inserted; false if the caller must insert the features itself.
+   */
+  private boolean copyInsertFeatures(Connection connection, List<Feature> inserts, boolean transaction, FeatureCollection collection)
+      throws Exception {
+    final long start = System.currentTimeMillis();
+    if (!transaction) {
+      connection.setAutoCommit(false);
+    }
+
+    try (Statement stmt = connection.createStatement()) {
+      stmt.setQueryTimeout(STATEMENT_TIMEOUT_SECONDS);
+      stmt.execute("CREATE TEMPORARY TABLE xyz_copy_stage (jsondata jsonb, wkb bytea, geojson jsonb) ON COMMIT DROP");
+
+      final CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+          .copyIn("COPY xyz_copy_stage (jsondata, wkb, geojson) FROM STDIN WITH (FORMAT csv)");
+      try {
+        final WKBWriter wkbWriter = new WKBWriter(3);
+        final StringBuilder row = new StringBuilder();
+        for (Feature feature : inserts) {
+          final Geometry geometry = feature.getGeometry();
+          feature.setGeometry(null); // Do not serialize the geometry in the JSON object
+
+          row.setLength(0);
+          try {
+            appendCsvValue(row, feature.serialize()).append(',');
+            if (geometry != null) {
+              row.append("\\x").append(WKBWriter.toHex(wkbWriter.write(geometry.getJTSGeometry()))).append(',');
+              appendCsvValue(row, geometry.serialize());
+            } else {
+              row.append(',');
+            }
+          } finally {
+            feature.setGeometry(geometry);
+          }
+          row.append('\n');
+
+          final byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+          copyIn.writeToCopy(bytes, 0, bytes.length);
+        }
+        copyIn.endCopy();
+      } finally {
+        if (copyIn.isActive()) {
+          copyIn.cancelCopy();
+        }
+      }
+
+      stmt.executeUpdate(replaceVars("INSERT INTO ${schema}.${table} (jsondata, geo, geojson) "
+          + "SELECT jsondata, ST_Force3D(ST_GeomFromWKB(wkb,4326)), geojson FROM xyz_copy_stage"));
+      if (!transaction) {
+        connection.commit();
+      }
+
+      collection.getFeatures().addAll(inserts);
+      logger.info("{} - Inserted {} features using COPY in {}ms", streamId, inserts.size(), System.currentTimeMillis() - start);
+      return true;
+    } catch (Exception e) {
+      if (transaction) {
+        throw e;
+      }
+      connection.rollback();
+      logger.warn("{} - Failed to insert {} features using COPY, falling back to single inserts: {}", streamId, inserts.size(), e);
+      return false;
+    } finally {
+      if (!transaction) {
+        connection.setAutoCommit(true);
+      }
+    }
+  }
+
+  /**
+   * Deletes the features in batches without a surrounding transaction.
+   *
+   * @param oldStates the list to which to add the old states of the deleted features or null, if no old states are requested.
+   * @return the ids of the features, which could not be deleted.
+   * @see #executeBatchedWrites(Connection, List, int, List, List)
+   */
+  private Set<String> batchedDeleteFeatures(Connection connection, Map<String, String> deletes, int batchSize,
+      List<ModificationFailure> fails, List<String> oldStates) throws Exception {
+    final String returning = oldStates != null ? RETURNING_OLD_STATE : "";
+    try (
+        final PreparedStatement deleteStmt = createStatement(connection, replaceVars(DELETE_STMT_SQL + returning), oldStates != null);
+        final PreparedStatement deleteAtomicStmt = createStatement(connection, replaceVars(DELETE_ATOMIC_STMT_SQL + returning),
+            oldStates != null)
+    ) {
+      final List<BatchedWrite> writes = new ArrayList<>();
+      for (String id : deletes.keySet()) {
+        final String hash = deletes.get(id);
+        writes.add(hash == null
+            ? new BatchedWrite(id, writes.size(), null, deleteStmt, id)
+            : new BatchedWrite(id, writes.size(), null, deleteAtomicStmt, id, hash));
+      }
+      return executeBatchedWrites(connection, writes, batchSize, fails, oldStates);
+    }
+  }
+
+  /**
+   * Inserts or updates the features in batches without a surrounding transaction. The successfully written features are added to the
+   * collection.
+   *
+   * @param oldStates the list to which to add the old states of the updated features or null, if no old states are requested.
+   * @return the ids of the features, which could not be written.
+   * @see #executeBatchedWrites(Connection, List, int, List, List)
+   */
+  private Set<String> batchedWriteFeatures(Connection connection, List<Feature> features, boolean update, int batchSize,
+      FeatureCollection collection, List<ModificationFailure> fails, List<String> oldStates) throws Exception {
+    final boolean returning = update && oldStates != null;
+    try (
+        final PreparedStatement stmt = createStatement(connection, replaceVars(!update ? INSERT_STMT_SQL
+            : returning ? UPDATE_RETURNING_OLD_STATE_STMT_SQL : UPDATE_STMT_SQL), returning);
+        final PreparedStatement withoutGeometryStmt = createStatement(connection, replaceVars(!update ? INSERT_WITHOUT_GEOMETRY_STMT_SQL
+            : returning ? UPDATE_WITHOUT_GEOMETRY_RETURNING_OLD_STATE_STMT_SQL : UPDATE_WITHOUT_GEOMETRY_STMT_SQL), returning)
+    ) {
+      final WKBWriter wkbWriter = new WKBWriter(3);
+      final List<BatchedWrite> writes = new ArrayList<>();
+      for (Feature feature : features) {
+        if (update && feature.getId() == null) {
+          throw new NullPointerException("id");
+        }
+        final Geometry geometry = feature.getGeometry();
+        feature.setGeometry(null); // Do not serialize the geometry in the JSON object
+
+        final PGobject jsonbObject = new PGobject();
+        jsonbObject.setType("jsonb");
+        final PGobject geojsonbObject = new PGobject();
+        geojsonbObject.setType("jsonb");
+        try {
+          jsonbObject.setValue(feature.serialize());
+          geojsonbObject.setValue(geometry != null ? geometry.serialize() : null);
+        } finally {
+          feature.setGeometry(geometry);
+        }
+
+        final List<Object> values = new ArrayList<>();
+        values.add(jsonbObject);
+        if (geometry != null) {
+          values.add(wkbWriter.write(geometry.getJTSGeometry()));
+          values.add(geojsonbObject);
+        }
+        if (update) {
+          values.add(feature.getId());
+        }
+        writes.add(new BatchedWrite(feature.getId(), writes.size(), feature, geometry != null ? stmt : withoutGeometryStmt,
+            values.toArray()));
+      }
+
+      final Set<String> failedIds = executeBatchedWrites(connection, writes, batchSize, fails, returning ? oldStates : null);
+      for (BatchedWrite write : writes) {
+        if (!failedIds.contains(write.id)) {
+          collection.getFeatures().add(write.feature);
+        }
+      }
+      return failedIds;
+    }
+  }
+
+  /**
+   * Executes the writes in chunks of the given batch size. Every chunk is sent as one batch within an own transaction. If a chunk fails,
+   * it is rolled back and its writes are executed one by one, so that only the failing writes are reported as {@link
+   * ModificationFailure}.
+   *
+   * @param oldStates the list to which to add the old states returned by the statements or null, if no old states are requested.
+   * @return the ids of the writes, which failed.
+   */
+  private Set<String> executeBatchedWrites(Connection connection, List<BatchedWrite> writes, int batchSize,
+      List<ModificationFailure> fails, List<String> oldStates) throws Exception {
+    final Set<String> failedIds = new HashSet<>();
+    for (int from = 0; from < writes.size(); from += batchSize) {
+      final List<BatchedWrite> chunk = writes.subList(from, Math.min(from + batchSize, writes.size()));
+      if (executeBatch(connection, chunk, oldStates) || canRetryAttempt(null) && executeBatch(connection, chunk, oldStates)) {
+        continue;
+      }
+
+      for (BatchedWrite write : chunk) {
+        try {
+          write.bind();
+          write.stmt.execute();
+          readOldStates(write.stmt, oldStates);
+        } catch (SQLException e) {
+          logger.error("{} - Failed to write object '{}': {}", streamId, write.id, e);
+          failedIds.add(write.id);
+          fails.add(new ModificationFailure().withId(write.id).withPosition(write.position).withMessage("Failed to write the object."));
+        }
+      }
+    }
+    return failedIds;
+  }
+
+  /**
+   * Executes the writes as one batch within a transaction. The old states are only added, if the batch was committed.
+   *
+   * @return true if the batch was committed; false if it was rolled back.
+   */
+  private boolean executeBatch(Connection connection, List<BatchedWrite> writes, List<String> oldStates) throws SQLException {
+    final Set<PreparedStatement> statements = new LinkedHashSet<>();
+    final List<String> batchOldStates = oldStates != null ? new ArrayList<>() : null;
+    connection.setAutoCommit(false);
+    try {
+      for (BatchedWrite write : writes) {
+        write.bind();
+        write.stmt.addBatch();
+        statements.add(write.stmt);
+      }
+      for (PreparedStatement stmt : statements) {
+        stmt.executeBatch();
+        readOldStates(stmt, batchOldStates);
+      }
+      connection.commit();
+      if (oldStates != null) {
+        oldStates.addAll(batchOldStates);
+      }
+      return true;
+    } catch (SQLException e) {
+      logger.warn("{} - Failed to execute batch of {} writes, isolating the failing writes: {}", streamId, writes.size(), e);
+      invalidateMetadata(e);
+      connection.rollback();
+      for (PreparedStatement stmt : statements) {
+        stmt.clearBatch();
+      }
+      return false;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  /**
+   * A single write of a batched modification together with the values to be bound to its prepared statement.
+   */
+  private static class BatchedWrite {
+
+    final String id;
+    final long position;
+    final Feature feature;
+    final PreparedStatement stmt;
+    final Object[] values;
+
+    BatchedWrite(String id, long position, Feature feature, PreparedStatement stmt, Object... values) {
+      this.id = id;
+      this.position = position;
+      this.feature = feature;
+      this.stmt = stmt;
+      this.values = values;
+    }
+
+    void bind() throws SQLException {
+      for (int i = 0; i < values.length; i++) {
+        stmt.setObject(i + 1, values[i]);
+      }
+    }
+  }
+
+  private static StringBuilder appendCsvValue(StringBuilder sb, String value) {
+    return sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+  }
+
+  /**
+   * Writes the features with one set based upsert statement. The JSON documents, the WKB geometries (hex encoded) and the GeoJSON
+   * geometries are bound as parallel arrays, which are expanded on the database side using unnest. When not running in a transaction,
+   * a failure is rolled back and reported by returning null, so that the caller can fall back to the single inserts and updates.
+   *
+   * <p>The upsert must not turn the insert of an existing feature into an update, nor the update of a missing feature into an insert. So
+   * the conflicting rows are only updated, if they are meant as update, and updates are only written, if the feature exists. The returned
+   * rows tell, whether each row was inserted or updated, every feature, which was not written as intended, is reported as failure. Within
+   * a transaction such a failure rolls back the transaction, like the unique violation of a single insert does.
+   *
+   * <p>A row can only be affected once by the statement, so the features are deduplicated by their ids. Like for single writes in the
+   * same order, the last state of a feature is written and the feature is inserted, if its first write is an insert.
+   *
+   * <p>If the old states are requested, the rows of the updated features are locked and returned by the same statement, so they are
+   * exactly the states, which were overwritten.
+   *
+   * @param oldStates the list to which to add the old states of the updated features or null, if no old states are requested.
+   * @return the ids of the features, which were not written, or null, if the caller must write the features itself.
+   */
+  private Set<String> upsertFeatures(Connection connection, List<Feature> inserts, List<Feature> updates, boolean transaction,
+      FeatureCollection collection, List<ModificationFailure> fails, List<String> oldStates) throws Exception {
+    final Map<String, Feature> features = new LinkedHashMap<>();
+    final Map<String, Long> positions = new HashMap<>();
+    final Set<String> updateIds = new HashSet<>();
+    long position = 0;
+    for (Feature feature : Stream.concat(inserts.stream(), updates.stream()).collect(Collectors.toList())) {
+      if (feature.getId() == null) {
+        throw new NullPointerException("id");
+      }
+      if (features.put(feature.getId(), feature) == null) {
+        positions.put(feature.getId(), position);
+        if (position >= inserts.size()) {
+          updateIds.add(feature.getId());
+        }
+      }
+      position++;
+    }
+    if (features.size() == 0) {
+      return Collections.emptySet();
+    }
+
+    final long start = System.currentTimeMillis();
+    final String[] jsondata = new String[features.size()];
+    final String[] wkb = new String[features.size()];
+    final String[] geojson = new String[features.size()];
+    final Boolean[] update = new Boolean[features.size()];
+    final WKBWriter wkbWriter = new WKBWriter(3);
+    int i = 0;
+    for (Feature feature : features.values()) {
+      final Geometry geometry = feature.getGeometry();
+      feature.setGeometry(null); // Do not serialize the geometry in the JSON object
+      try {
+        jsondata[i] = feature.serialize();
+        wkb[i] = geometry != null ? WKBWriter.toHex(wkbWriter.write(geometry.getJTSGeometry())) : null;
+        geojson[i] = geometry != null ? geometry.serialize() : null;
+        update[i] = updateIds.contains(feature.getId());
+      } finally {
+        feature.setGeometry(geometry);
+      }
+      i++;
+    }
+
+    final String upsertSQL = "INSERT INTO ${schema}.${table} AS f (jsondata, geo, geojson) "
+        + "SELECT t.jsondata::jsonb, ST_Force3D(ST_GeomFromWKB(decode(t.wkb, 'hex'),4326)), t.geojson::jsonb "
+        + "FROM unnest(?::text[], ?::text[], ?::text[], ?::boolean[]) AS t(jsondata, wkb, geojson, is_update) "
+        + "WHERE NOT t.is_update OR EXISTS (SELECT 1 FROM ${schema}.${table} e WHERE e.jsondata->>'id' = t.jsondata::jsonb->>'id') "
+        + "ON CONFLICT ((jsondata->>'id')) DO UPDATE SET jsondata = EXCLUDED.jsondata, geo = EXCLUDED.geo, geojson = EXCLUDED.geojson "
+        + "WHERE EXCLUDED.jsondata->>'id' = ANY(?::text[]) "
+        + "RETURNING f.jsondata->>'id' AS id, f.xmax = 0 AS inserted";
+    final String upsertStmtSQL = replaceVars(oldStates == null ? upsertSQL
+        : "WITH old AS (SELECT jsondata, geojson FROM ${schema}.${table} WHERE jsondata->>'id' = ANY(?::text[]) FOR UPDATE), "
+            + "upserted AS (" + upsertSQL + ") "
+            + "SELECT u.id, u.inserted, old.jsondata, old.geojson FROM upserted u LEFT JOIN old ON old.jsondata->>'id' = u.id");
+
+    final Map<String, Boolean> written = new HashMap<>();
+    final Map<String, String> writtenOldStates = new HashMap<>();
+    try (final PreparedStatement upsertStmt = createStatement(connection, upsertStmtSQL)) {
+      final Array updateIdsArray = connection.createArrayOf("text", updateIds.toArray(new String[0]));
+      int index = 1;
+      if (oldStates != null) {
+        upsertStmt.setArray(index++, updateIdsArray);
+      }
+      upsertStmt.setArray(index++, connection.createArrayOf("text", jsondata));
+      upsertStmt.setArray(index++, connection.createArrayOf("text", wkb));
+      upsertStmt.setArray(index++, connection.createArrayOf("text", geojson));
+      upsertStmt.setArray(index++, connection.createArrayOf("boolean", update));
+      upsertStmt.setArray(index, updateIdsArray);
+      try (final ResultSet rs = upsertStmt.executeQuery()) {
+        while (rs.next()) {
+          written.put(rs.getString(1), rs.getBoolean(2));
+          if (oldStates != null && rs.getString(3) != null) {
+            writtenOldStates.put(rs.getString(1), oldState(rs.getString(3), rs.getString(4)));
+          }
+        }
+      }
+    } catch (Exception e) {
+      if (transaction) {
+        throw e;
+      }
+      logger.warn("{} - Failed to upsert {} features, falling back to single writes: {}", streamId, features.size(), e);
+      return null;
+    }
+
+    final Set<String> failedIds = new HashSet<>();
+    for (Feature feature : features.values()) {
+      final String id = feature.getId();
+      final boolean isUpdate = updateIds.contains(id);
+      final Boolean inserted = written.get(id);
+      if (inserted != null && inserted != isUpdate) {
+        collection.getFeatures().add(feature);
+        if (isUpdate && oldStates != null && writtenOldStates.containsKey(id)) {
+          oldStates.add(writtenOldStates.get(id));
+        }
+        continue;
+      }
+
+      final String message = isUpdate ? "The object does not exist." : "The object exists already.";
+      if (transaction) {
+        throw new SQLException("Failed to " + (isUpdate ? "update" : "insert") + " object '" + id + "': " + message);
+      }
+      logger.error("{} - Failed to {} object '{}': {}", streamId, isUpdate ? "update" : "insert", id, message);
+      failedIds.add(id);
+      fails.add(new ModificationFailure().withId(id).withPosition(positions.get(id)).withMessage(message));
+    }
+    logger.info("{} - Upserted {} features in {}ms", streamId, features.size() - failedIds.size(), System.currentTimeMillis() - start);
+    return failedIds;
+  }
+
+  /**
+   * Checks after a failed execution, if the table of the space was missing and creates it, so that the execution can be retried once.
+   *
+   * @param cause the exception of the failed execution, if available.
+   * @return true if the table was created and the execution should be retried; false otherwise.
+   */
+  private boolean canRetryAttempt(Exception cause) throws Exception {
     if (retryAttempted) {
       return false;
     }
+    invalidateMetadata(cause);
     if (hasTable()) {
       retryAttempted = true; // the table is there, do not retry
       return false;
@@ -1234,8 +2757,36 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
     return true;
   }
 
+  /**
+   * Invalidates the cached metadata, if the exception shows that the table (42P01) or the schema (3F000) does not exist anymore.
+   */
+  private void invalidateMetadata(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof SQLException) {
+        for (SQLException sqlException = (SQLException) t; sqlException != null; sqlException = sqlException.getNextException()) {
+          if ("42P01".equals(sqlException.getSQLState())) {
+            metadata.invalidateTable(config.table(event));
+          } else if ("3F000".equals(sqlException.getSQLState())) {
+            metadata.invalidate();
+          }
+        }
+      }
+    }
+  }
+
   private PreparedStatement createStatement(Connection connection, String statement) throws SQLException {
-    final PreparedStatement preparedStatement = connection.prepareStatement(statement);
+    return createStatement(connection, statement, false);
+  }
+
+  /**
+   * Creates a statement, whose returned rows can be read by {@link PreparedStatement#getGeneratedKeys()}, if requested. That works for
+   * single executions and for batches, the RETURNING clause of the statement is kept as it is.
+   *
+   * @param returning whether the rows returned by the statement are read.
+   */
+  private PreparedStatement createStatement(Connection connection, String statement, boolean returning) throws SQLException {
+    final PreparedStatement preparedStatement = returning ? connection.prepareStatement(statement, Statement.RETURN_GENERATED_KEYS)
+        : connection.prepareStatement(statement);
     preparedStatement.setQueryTimeout(STATEMENT_TIMEOUT_SECONDS);
     return preparedStatement;
   }
@@ -1363,6 +2914,17 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
 
   @Override
   protected SuccessResponse processModifySpaceEvent(ModifySpaceEvent event) throws Exception {
+    if (Operation.CREATE == event.getOperation()) {
+      metadata.invalidateTable(config.table(event));
+      // The layout of the table can not be changed later on, so a partitioned table is created together with the space
+      if (requestedPartitionLevel() > 0) {
+        ensureSpace();
+      }
+    }
+    // The searchable properties may have been changed
+    else if (Operation.UPDATE == event.getOperation()) {
+      metadata.indexLists.remove(config.table(event));
+    }
 
     if ((Operation.UPDATE == event.getOperation() || Operation.CREATE == event.getOperation()) && event.getConnectorParams()
         .get("propertySearch") == Boolean.TRUE) {
@@ -1399,6 +2961,7 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
             String query = "DROP TABLE ${schema}.${table}";
             query = replaceVars(query);
             stmt.executeUpdate(query);
+            metadata.invalidateTable(config.table(event));
 
             logger.info("{} - Successfully deleted table for space '{}'", streamId, event.getSpace());
           } catch (Exception e) {
@@ -1459,4 +3022,46 @@ public class PSQLXyzConnector extends PSQLRequestStreamHandler {
 
     return new SQLQuery("prj_build(?,jsondata)", createSQLArray(selection.toArray(new String[0]), "text"));
   }
+
+  /**
+   * A column with a value, which is precomputed from the geometry of the features and maintained by a trigger named after the column.
+   */
+  private static class MaintainedColumn {
+
+    final String name;
+    /**
+     * The queries, which add the column and its trigger.
+     */
+    final List<String> setUpQueries;
+    /**
+     * The query, which fills the column for the existing features within a range of serial numbers.
+     */
+    final String fillQuery;
+    private final String indexDefinition;
+
+    MaintainedColumn(String name, String type, String triggerFunction, String value, String indexDefinition) {
+      this.name = name;
+      this.setUpQueries = Arrays.asList(
+          "ALTER TABLE ${schema}.${table} ADD COLUMN IF NOT EXISTS " + name + " " + type,
+          "DROP TRIGGER IF EXISTS " + trigger() + " ON ${schema}.${table}",
+          "CREATE TRIGGER " + trigger() + " BEFORE INSERT OR UPDATE OF geo ON ${schema}.${table} FOR EACH ROW EXECUTE PROCEDURE "
+              + triggerFunction);
+      this.fillQuery = "UPDATE ${schema}.${table} SET " + name + " = " + value + " WHERE i >= ? AND i < ? AND " + name + " IS NULL"
+          + " AND geo IS NOT NULL";
+      this.indexDefinition = indexDefinition;
+    }
+
+    String trigger() {
+      return "xyz_" + name;
+    }
+
+    String index(String table) {
+      return "idx_" + table + "_" + name;
+    }
+
+    String createIndexQuery(String quotedIndex, boolean concurrently) {
+      return "CREATE INDEX " + (concurrently ? "CONCURRENTLY" : "IF NOT EXISTS") + " " + quotedIndex + " ON ${schema}.${table} USING "
+          + indexDefinition;
+    }
+  }
 }
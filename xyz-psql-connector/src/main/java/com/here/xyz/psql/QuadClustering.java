@@ -10,6 +10,8 @@ public class QuadClustering {
     public static final String QUADMODE_REAL = "real";
     public static final String QUADMODE_ESTIMATED = "estimated";
     public static final String QUADMODE_MIXED = "mixed";
+    /** The level of the quadkeys, which are stored in the quadkey column of a table. */
+    public static final int QUADKEY_LEVEL = 24;
 
     protected static void checkQuadInput(String quadMode, int resolution, GetFeaturesByBBoxEvent event, String streamId,
                                          PSQLXyzConnector connector) throws
@@ -115,4 +117,37 @@ public class QuadClustering {
                 ")x, stats ) d WHERE geojson IS NOT null ");
         return query;
     }
+
+    /**
+     * Generates the query, which counts the features exactly by grouping the stored quadkeys of the features by their prefix with the
+     * level of the child tiles. A feature is counted in the tile of its reference point.
+     */
+    public static SQLQuery generateQuadkeyColumnSQL(String schema, String space, int resolution, String propQuery, WebMercatorTile tile) {
+        SQLQuery query = new SQLQuery("");
+        String quadkey = tile.asQuadkey();
+
+        query.append(
+                "WITH stats AS("+
+                        "    SELECT reltuples as est_cnt FROM pg_class WHERE oid = '"+schema+".\""+space+"\"'::regclass"+
+                        ")"+
+                        "SELECT  (SELECT concat('{\"id\": \"',ceil(random()*10000000),'\", \"type\": \"Feature\""+
+                        "       ,\"properties\": {\"count\": ',cnt,',\"qk\":\"',qk,'\""+
+                        "       ,\"xyz\":\"',qkxyz,'\" ,\"estimated\":false,\"total_count\":',est_cnt::bigint,',\"equipartition_count\":',"+
+                        "          (floor((est_cnt/POW(2,"+(tile.level+1)+")/POW(4,"+resolution+")))),'}}')::jsonb) as properties,"+
+                        "    (SELECT ST_AsGeojson( ST_Buffer(qkbbox,-0.01/"+tile.level+")) ::jsonb) as geojson"+
+                        "    FROM stats,"+
+                        "        (SELECT qk, cnt, xyz_qk_qk2bbox( qk ) as qkbbox, xyz_qk_qk2lrc(qk) as qkxyz from ("+
+                        "            SELECT left(qk, "+(quadkey.length()+resolution)+") as qk, count(1) as cnt"+
+                        "                FROM "+schema+".\""+space+"\""+
+                        "                WHERE qk LIKE '"+quadkey+"%'");
+        if(propQuery != null) {
+            query.append(" AND ");
+            query.append(propQuery);
+        }
+        query.append(
+                "                GROUP BY 1"+
+                "        ) a"+
+                "    ) b");
+        return query;
+    }
 }
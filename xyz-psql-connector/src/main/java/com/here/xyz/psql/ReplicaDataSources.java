@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.psql;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The read replicas of a database. The reads are balanced across the replicas by choosing the one with less busy connections out of two
+ * randomly picked replicas. Replicas, which are not reachable or whose replication lag exceeds the configured bound, are skipped.
+ *
+ * The replicas are checked in the background, so that a replica, which is not reachable, never blocks the requests. Until its first
+ * check succeeded, a replica is not used.
+ */
+class ReplicaDataSources {
+
+  private static final Logger logger = LoggerFactory.getLogger(PSQLXyzConnector.class);
+
+  /**
+   * The interval, in which the replicas are checked again.
+   */
+  static final long LAG_CHECK_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+  /**
+   * The time after which the check of a replica is considered to have failed.
+   */
+  static final int LAG_CHECK_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(3);
+
+  /**
+   * The replication lag in milliseconds. A replica, which has replayed all received changes, has no lag, even if the primary was not
+   * written for a while.
+   */
+  private static final String REPLICATION_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+      + "ELSE COALESCE((EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint, 0) END";
+
+  private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "replica-check"));
+  private static final ExecutorService checks = Executors.newCachedThreadPool(r -> daemon(r, "replica-check-query"));
+
+  private final List<Replica> replicas;
+  private final long maxLagMillis;
+
+  /**
+   * @param dataSources the data sources of the replicas.
+   * @param maxLagMillis the maximal replication lag in milliseconds of a replica, which is used for reads. A value of zero or below
+   * disables the check of the lag, but the replicas are still checked to be reachable.
+   */
+  static ReplicaDataSources create(List<ComboPooledDataSource> dataSources, long maxLagMillis) {
+    final List<Replica> replicas = new ArrayList<>();
+    for (ComboPooledDataSource dataSource : dataSources) {
+      // Fail fast instead of waiting for the acquisition of a connection to a replica, which is not reachable
+      dataSource.setCheckoutTimeout(LAG_CHECK_TIMEOUT_MS);
+      replicas.add(new PooledReplica(dataSource));
+    }
+    final ReplicaDataSources replicaDataSources = new ReplicaDataSources(replicas, maxLagMillis);
+    scheduler.scheduleWithFixedDelay(replicaDataSources::check, 0, LAG_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    return replicaDataSources;
+  }
+
+  ReplicaDataSources(List<Replica> replicas, long maxLagMillis) {
+    this.replicas = replicas;
+    this.maxLagMillis = maxLagMillis;
+  }
+
+  private static Thread daemon(Runnable r, String name) {
+    final Thread thread = new Thread(r, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Returns the data source of the replica, which should be used for the next reads.
+   *
+   * @return the data source or null, if no replica is available.
+   */
+  DataSource select() {
+    final List<Replica> available = replicas.stream().filter(this::isAvailable).collect(Collectors.toList());
+    if (available.isEmpty()) {
+      return null;
+    }
+    if (available.size() == 1) {
+      return available.get(0).dataSource;
+    }
+
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final int first = random.nextInt(available.size());
+    final int second = (first + 1 + random.nextInt(available.size() - 1)) % available.size();
+    final Replica a = available.get(first);
+    final Replica b = available.get(second);
+    return (a.busyConnections() <= b.busyConnections() ? a : b).dataSource;
+  }
+
+  private boolean isAvailable(Replica replica) {
+    final long lagMillis = replica.lagMillis;
+    return lagMillis != Replica.UNAVAILABLE && (maxLagMillis <= 0 || lagMillis <= maxLagMillis);
+  }
+
+  /**
+   * Starts the check of all replicas in the background. A replica, whose previous check did not complete within the
+   * {@link #LAG_CHECK_TIMEOUT_MS}, is considered not reachable.
+   */
+  void check() {
+    for (Replica replica : replicas) {
+      if (replica.checking.compareAndSet(false, true)) {
+        replica.checkStartedAt = System.currentTimeMillis();
+        checks.execute(() -> {
+          try {
+            final long lagMillis = replica.queryLag();
+            replica.update(lagMillis);
+            if (lagMillis != Replica.UNAVAILABLE && maxLagMillis > 0 && lagMillis > maxLagMillis) {
+              logger.info("Skipping replica {} with a replication lag of {}ms", replica, lagMillis);
+            }
+          } finally {
+            replica.checking.set(false);
+          }
+        });
+      } else if (replica.checkStartedAt + LAG_CHECK_TIMEOUT_MS < System.currentTimeMillis()) {
+        replica.update(Replica.UNAVAILABLE);
+      }
+    }
+  }
+
+  /**
+   * A read replica with the result of its last check.
+   */
+  abstract static class Replica {
+
+    /**
+     * The lag of a replica, which is not reachable.
+     */
+    static final long UNAVAILABLE = Long.MAX_VALUE;
+
+    final DataSource dataSource;
+    volatile long lagMillis = UNAVAILABLE;
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private volatile long checkStartedAt;
+
+    Replica(DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+
+    /**
+     * Returns the replication lag in milliseconds or {@link #UNAVAILABLE}, if the replica is not reachable.
+     */
+    abstract long queryLag();
+
+    /**
+     * Returns the number of the connections, which are currently used.
+     */
+    abstract int busyConnections();
+
+    void update(long lagMillis) {
+      if (lagMillis == UNAVAILABLE && this.lagMillis != UNAVAILABLE) {
+        logger.warn("Skipping replica {}, as it is not reachable", this);
+      }
+      this.lagMillis = lagMillis;
+    }
+  }
+
+  private static class PooledReplica extends Replica {
+
+    PooledReplica(ComboPooledDataSource dataSource) {
+      super(dataSource);
+    }
+
+    @Override
+    long queryLag() {
+      try (final Connection connection = dataSource.getConnection();
+          final Statement stmt = connection.createStatement()) {
+        stmt.setQueryTimeout((int) TimeUnit.MILLISECONDS.toSeconds(LAG_CHECK_TIMEOUT_MS));
+        try (final ResultSet rs = stmt.executeQuery(REPLICATION_LAG_QUERY)) {
+          return rs.next() ? rs.getLong(1) : 0;
+        }
+      } catch (SQLException e) {
+        logger.warn("Failed to check the replication lag of replica {}: {}", this, e.getMessage());
+        return UNAVAILABLE;
+      }
+    }
+
+    @Override
+    int busyConnections() {
+      try {
+        return ((ComboPooledDataSource) dataSource).getNumBusyConnectionsDefaultUser();
+      } catch (SQLException e) {
+        return Integer.MAX_VALUE;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return ((ComboPooledDataSource) dataSource).getJdbcUrl();
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.psql;
+
+import com.here.xyz.models.geojson.WebMercatorTile;
+import com.here.xyz.models.geojson.coordinates.BBox;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The partitioned layout of the table of a space. The features are partitioned by the quadkey of the deepest tile up to the partition
+ * level, which contains the envelope of their geometry. There is one partition for each tile of the partition level and one partition for
+ * the features without geometry and the features, which cross the border of such a tile.
+ */
+class SpatialPartitioning {
+
+  /**
+   * The maximal partition level, which results in 64 partitions for the tiles and one partition for the remaining features.
+   */
+  static final int MAX_LEVEL = 3;
+
+  /**
+   * The partition key, the level is inserted as literal, because the query must use the same expression to prune the partitions.
+   */
+  private static final String PARTITION_KEY = "xyz_qk_envelope2qk(geo, %d)";
+
+  private static final Pattern PARTITION_KEY_PATTERN = Pattern.compile("xyz_qk_envelope2qk\\(geo, (\\d+)\\)");
+
+  /**
+   * A small margin in degrees, by which the bounding box is extended, so that rounding differences to the partition key computed by the
+   * database never lead to a missing partition.
+   */
+  private static final double MARGIN = 1e-7;
+
+  /**
+   * Returns the queries, which create the partitioned table and its partitions. The indices are created by the caller on the partitioned
+   * table, except for the unique index of the ids, which can only be created per partition.
+   *
+   * @param schema the unquoted schema.
+   * @param table the unquoted name of the table.
+   * @param level the partition level.
+   * @param quote the function, which quotes the names.
+   */
+  static List<String> createTableQueries(String schema, String table, int level, UnaryOperator<String> quote) {
+    final String parent = quote.apply(schema) + "." + quote.apply(table);
+    final List<String> queries = new ArrayList<>();
+    queries.add("CREATE TABLE " + parent + " (jsondata jsonb, geo geometry(GeometryZ,4326), i SERIAL, geojson jsonb) PARTITION BY LIST ("
+        + partitionKey(level) + ")");
+
+    final StringBuilder coarseKeys = new StringBuilder("NULL");
+    for (int l = 0; l < level; l++) {
+      for (String quadkey : quadkeys(l)) {
+        coarseKeys.append(", '").append(quadkey).append("'");
+      }
+    }
+    addPartition(queries, parent, quote.apply(schema) + "." + quote.apply(table + "_p"), coarseKeys.toString());
+    for (String quadkey : quadkeys(level)) {
+      addPartition(queries, parent, quote.apply(schema) + "." + quote.apply(table + "_p" + quadkey), "'" + quadkey + "'");
+    }
+    return queries;
+  }
+
+  private static void addPartition(List<String> queries, String parent, String quotedPartition, String values) {
+    queries.add("CREATE TABLE " + quotedPartition + " PARTITION OF " + parent + " FOR VALUES IN (" + values + ")");
+    queries.add("CREATE UNIQUE INDEX ON " + quotedPartition + " ((jsondata->>'id'))");
+  }
+
+  /**
+   * Returns the partition key expression for the given level.
+   */
+  static String partitionKey(int level) {
+    return String.format(PARTITION_KEY, level);
+  }
+
+  /**
+   * Returns the partition level of a table from the definition of its partition key.
+   *
+   * @param partitionKeyDefinition the definition as returned by pg_get_partkeydef.
+   * @return the partition level or zero, if the table is not partitioned by the quadkeys.
+   */
+  static int parseLevel(String partitionKeyDefinition) {
+    if (partitionKeyDefinition == null) {
+      return 0;
+    }
+    final Matcher matcher = PARTITION_KEY_PATTERN.matcher(partitionKeyDefinition);
+    return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+  }
+
+  /**
+   * Returns the partition keys of all tiles up to the partition level, which intersect the bounding box. Features, which intersect the
+   * bounding box, can only be stored in the partitions with these keys.
+   */
+  static String[] intersectingKeys(BBox bbox, int level) {
+    final double west = WebMercatorTile.clip(bbox.minLon() - MARGIN, WebMercatorTile.MinLongitude, WebMercatorTile.MaxLongitude);
+    final double east = WebMercatorTile.clip(bbox.maxLon() + MARGIN, WebMercatorTile.MinLongitude, WebMercatorTile.MaxLongitude);
+    final double south = WebMercatorTile.clip(bbox.minLat() - MARGIN, WebMercatorTile.MinLatitude, WebMercatorTile.MaxLatitude);
+    final double north = WebMercatorTile.clip(bbox.maxLat() + MARGIN, WebMercatorTile.MinLatitude, WebMercatorTile.MaxLatitude);
+
+    final List<String> keys = new ArrayList<>();
+    for (int l = 0; l <= level; l++) {
+      final int size = 1 << l;
+      final int minX = column(west, size);
+      final int maxX = column(east, size);
+      final int minY = row(north, size);
+      final int maxY = row(south, size);
+      for (int x = minX; x <= maxX; x++) {
+        for (int y = minY; y <= maxY; y++) {
+          keys.add(WebMercatorTile.tileToQuadKey(x, y, l));
+        }
+      }
+    }
+    return keys.toArray(new String[0]);
+  }
+
+  private static List<String> quadkeys(int level) {
+    final List<String> quadkeys = new ArrayList<>();
+    final int size = 1 << level;
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        quadkeys.add(WebMercatorTile.tileToQuadKey(x, y, level));
+      }
+    }
+    return quadkeys;
+  }
+
+  private static int column(double longitude, int size) {
+    return clamp((int) Math.floor((longitude + 180) / 360 * size), size);
+  }
+
+  private static int row(double latitude, int size) {
+    final double sinLatitude = Math.sin(latitude * Math.PI / 180);
+    return clamp((int) Math.floor((0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI)) * size), size);
+  }
+
+  private static int clamp(int value, int size) {
+    return Math.max(0, Math.min(size - 1, value));
+  }
+}
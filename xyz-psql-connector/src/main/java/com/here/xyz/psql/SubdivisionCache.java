@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.psql;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache for the subdivided geometries of the referenced features of geometry queries, so that the same reference geometry, for example
+ * a country, is only subdivided once per warm connector instance. The least recently used entries are removed first.
+ */
+class SubdivisionCache {
+
+  /**
+   * The maximal number of cached geometries.
+   */
+  static int MAX_ENTRIES = 100;
+
+  private static final Map<String, Entry> cache = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  });
+
+  /**
+   * Returns the cached parts of the referenced geometry.
+   *
+   * @param key the key of the referenced feature.
+   * @param wkt the current geometry of the referenced feature, the cached parts are only returned, if they were created from the same
+   * geometry.
+   * @return the parts as hex encoded WKB or null, if they are not cached.
+   */
+  static String[] get(String key, String wkt) {
+    final Entry entry = cache.get(key);
+    return entry != null && entry.wkt.equals(wkt) ? entry.parts : null;
+  }
+
+  static void put(String key, String wkt, String[] parts) {
+    cache.put(key, new Entry(wkt, parts));
+  }
+
+  /**
+   * Returns the key of a referenced feature, or null, if the geometry is not the one of a referenced feature.
+   */
+  static String key(String refSpaceId, String refFeatureId, int radius) {
+    if (refSpaceId == null || refFeatureId == null) {
+      return null;
+    }
+    return refSpaceId + "/" + refFeatureId + "/" + radius;
+  }
+
+  private static class Entry {
+
+    final String wkt;
+    final String[] parts;
+
+    Entry(String wkt, String[] parts) {
+      this.wkt = wkt;
+      this.parts = parts;
+    }
+  }
+}
@@ -83,6 +83,14 @@
 -- xyz_qk_grird								:	select xyz_qk_grird(3)
 -- xyz_qk_child_calculation					:	select select * from xyz_qk_child_calculation('012',3,null)
 -- xyz_count_estimation                     :   select xyz_count_estimation('select 1')
+-- xyz_feature_count_trigger				:	CREATE TRIGGER xyz_count_insert AFTER INSERT ON xyz."QgQCHStH" REFERENCING NEW TABLE AS new_rows
+--													FOR EACH STATEMENT EXECUTE PROCEDURE xyz_feature_count_trigger();
+-- xyz_fold_feature_count					:	select xyz_fold_feature_count('xyz');
+-- xyz_refresh_space_statistics				:	select xyz_refresh_space_statistics('xyz', 'QgQCHStH');
+-- xyz_stale_statistics						:	select spaceid from xyz_stale_statistics('xyz', 10);
+-- xyz_h3cell								:	select to_hex(xyz_h3cell(ST_GeomFromText('POINT(-64.78767 32.29703)', 4326)));
+-- xyz_h3cell_trigger						:	CREATE TRIGGER xyz_h3cell BEFORE INSERT OR UPDATE OF geo ON xyz."QgQCHStH"
+--													FOR EACH ROW EXECUTE PROCEDURE xyz_h3cell_trigger();
 ---------------------------------------------------------------------------------
 ---------------------------------------------------------------------------------
 -- xyz_qk_point2lrc							:	select * from xyz_qk_point2lrc( ST_GeomFromText( 'POINT( -64.78767  32.29703)' ), 3 );
@@ -91,6 +99,10 @@
 -- xyz_qk_lrc2bbox							:	select ST_ASText(xyz_qk_lrc2bbox(3,2,3));
 -- xyz_qk_qk2bbox							:	select xyz_qk_qk2bbox( '001' );
 -- xyz_qk_point2qk							:	select xyz_qk_point2qk(ST_GeomFromText( 'POINT( -64.78767  32.29703)' ), 3)
+-- xyz_qk_geo2qk							:	select xyz_qk_geo2qk(ST_GeomFromText( 'LINESTRING(-71.160281 42.258729,-71.160837 42.259113)' ), 24)
+-- xyz_qk_envelope2qk						:	select xyz_qk_envelope2qk(ST_GeomFromText( 'LINESTRING(-71.160281 42.258729,-71.160837 42.259113)' ), 3)
+-- xyz_qk_trigger							:	CREATE TRIGGER xyz_qk BEFORE INSERT OR UPDATE OF geo ON xyz."QgQCHStH"
+--													FOR EACH ROW EXECUTE PROCEDURE xyz_qk_trigger(24);
 -- xyz_qk_bbox2zooml						:	select xyz_qk_bbox2zooml(
 --													ST_GeomFromText('POLYGON((49.1430885846288 -122.003173828125,49.1430885846288 -122.001800537109,49.1439869452885
 --													-122.001800537109,49.1439869452885 -122.003173828125,49.1430885846288 -122.003173828125))' ));
@@ -138,7 +150,7 @@ DROP TYPE IF EXISTS rid_t;
 CREATE OR REPLACE FUNCTION xyz_ext_version()
   RETURNS integer AS
 $BODY$
- select 122
+ select 129
 $BODY$
   LANGUAGE sql IMMUTABLE;
 ------------------------------------------------
@@ -163,6 +175,149 @@ $BODY$
     LANGUAGE plpgsql VOLATILE;
 ------------------------------------------------
 ------------------------------------------------
+-- The exact number of features per space table. The statement level triggers of the table append the changes to
+-- xyz_feature_count_delta, so that concurrent writes do not wait for each other, the index maintenance folds them into the count.
+CREATE TABLE IF NOT EXISTS xyz_feature_count
+(
+	relid oid NOT NULL,
+	count bigint NOT NULL,
+	CONSTRAINT xyz_feature_count_pkey PRIMARY KEY (relid)
+);
+------------------------------------------------
+------------------------------------------------
+CREATE TABLE IF NOT EXISTS xyz_feature_count_delta
+(
+	relid oid NOT NULL,
+	delta bigint NOT NULL
+);
+CREATE INDEX IF NOT EXISTS xyz_feature_count_delta_relid ON xyz_feature_count_delta (relid);
+------------------------------------------------
+------------------------------------------------
+CREATE OR REPLACE FUNCTION xyz_feature_count_trigger()
+	RETURNS trigger AS
+$BODY$
+DECLARE
+	delta bigint;
+BEGIN
+	IF TG_OP = 'TRUNCATE' THEN
+		EXECUTE format('DELETE FROM %I.xyz_feature_count_delta WHERE relid = $1', TG_TABLE_SCHEMA) USING TG_RELID;
+		EXECUTE format('UPDATE %I.xyz_feature_count SET count = 0 WHERE relid = $1', TG_TABLE_SCHEMA) USING TG_RELID;
+		RETURN NULL;
+	ELSIF TG_OP = 'INSERT' THEN
+		SELECT count(*) INTO delta FROM new_rows;
+	ELSE
+		SELECT -count(*) INTO delta FROM old_rows;
+	END IF;
+
+	IF delta <> 0 THEN
+		EXECUTE format('INSERT INTO %I.xyz_feature_count_delta (relid, delta) VALUES ($1, $2)', TG_TABLE_SCHEMA) USING TG_RELID, delta;
+	END IF;
+	RETURN NULL;
+END;
+$BODY$
+	LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
+-- Adds the changes of the feature counts to the counts and removes them. The changes of tables, whose count is not yet initialized,
+-- are kept, because the initialization subtracts the changes, which are visible to its count.
+CREATE OR REPLACE FUNCTION xyz_fold_feature_count(schema text)
+	RETURNS void AS
+$BODY$
+BEGIN
+	EXECUTE format('WITH folded AS ('
+		|| ' DELETE FROM %1$I.xyz_feature_count_delta d'
+		|| ' WHERE EXISTS (SELECT 1 FROM %1$I.xyz_feature_count c WHERE c.relid = d.relid)'
+		|| ' RETURNING d.relid, d.delta'
+		|| ' ) UPDATE %1$I.xyz_feature_count c SET count = c.count + f.delta'
+		|| ' FROM (SELECT relid, sum(delta) AS delta FROM folded GROUP BY relid) f WHERE c.relid = f.relid', schema);
+END;
+$BODY$
+	LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
+-- The persisted statistics per space table, together with the number of changed features and the change of the feature count since
+-- the statistics were computed
+CREATE TABLE IF NOT EXISTS xyz_space_statistics
+(
+	relid oid NOT NULL,
+	statistics jsonb NOT NULL,
+	computed_at timestamp with time zone NOT NULL,
+	changes bigint NOT NULL DEFAULT 0,
+	count_delta bigint NOT NULL DEFAULT 0,
+	CONSTRAINT xyz_space_statistics_pkey PRIMARY KEY (relid)
+);
+------------------------------------------------
+------------------------------------------------
+CREATE OR REPLACE FUNCTION xyz_refresh_space_statistics(schema text, spaceid text)
+	RETURNS void AS
+$BODY$
+	/**
+	* Description: Computes the statistics of a space with xyz_statistic_space and persists them. The changes, which were written while
+	*		the statistics were computed, are kept.
+	*/
+DECLARE
+	table_oid oid := (quote_ident(schema) || '.' || quote_ident(spaceid))::regclass;
+	old_changes bigint := 0;
+	old_count_delta bigint := 0;
+BEGIN
+	SELECT changes, count_delta INTO old_changes, old_count_delta FROM xyz_space_statistics WHERE relid = table_oid;
+
+	INSERT INTO xyz_space_statistics (relid, statistics, computed_at)
+		SELECT table_oid, to_jsonb(s), now() FROM xyz_statistic_space(schema, spaceid) s
+	ON CONFLICT (relid) DO UPDATE SET statistics = EXCLUDED.statistics, computed_at = EXCLUDED.computed_at,
+		changes = xyz_space_statistics.changes - COALESCE(old_changes, 0),
+		count_delta = xyz_space_statistics.count_delta - COALESCE(old_count_delta, 0);
+END;
+$BODY$
+	LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
+CREATE OR REPLACE FUNCTION xyz_stale_statistics(schema text, max_spaces integer)
+	RETURNS TABLE(spaceid text) AS
+$BODY$
+	/**
+	* Description: Returns the spaces with the most changes since their persisted statistics were computed and removes the statistics
+	*		of dropped spaces.
+	*
+	* Parameters:
+	*   @schema			- schema in which the XYZ-spaces are located
+	*   @max_spaces		- the maximal number of spaces to return
+	*/
+BEGIN
+	DELETE FROM xyz_space_statistics s WHERE NOT EXISTS (SELECT 1 FROM pg_class c WHERE c.oid = s.relid);
+
+	RETURN QUERY
+		SELECT c.relname::text FROM xyz_space_statistics s
+			JOIN pg_class c ON c.oid = s.relid
+			JOIN pg_namespace n ON n.oid = c.relnamespace AND n.nspname = schema
+		WHERE s.changes > 0 ORDER BY s.changes DESC LIMIT max_spaces;
+END;
+$BODY$
+	LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
+-- The H3 cell at the maximal resolution of the reference point of a geometry, which is the point itself or the first point of the geometry
+CREATE OR REPLACE FUNCTION xyz_h3cell(geo geometry)
+	RETURNS bigint AS
+$BODY$
+	SELECT CASE WHEN geo IS NULL OR ST_IsEmpty(geo) THEN NULL
+		ELSE geoToH3Deg_p(CASE ST_GeometryType(geo) WHEN 'ST_Point' THEN geo ELSE ST_ClosestPoint(geo, geo) END, 15)::bigint END
+$BODY$
+	LANGUAGE sql IMMUTABLE
+	SET search_path = h3, public;
+------------------------------------------------
+------------------------------------------------
+CREATE OR REPLACE FUNCTION xyz_h3cell_trigger()
+	RETURNS trigger AS
+$BODY$
+BEGIN
+	NEW.h3cell := xyz_h3cell(NEW.geo);
+	RETURN NEW;
+END;
+$BODY$
+	LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
 CREATE OR REPLACE FUNCTION xyz_qk_child_calculation(quadkey text,resolution integer, result text[])
  RETURNS TEXT[] AS
 $BODY$
@@ -282,7 +437,7 @@ CREATE OR REPLACE FUNCTION xyz_create_idxs_over_dblink(
 			v_conn_str  text := 'port='||port||' dbname='||dbname||' host=localhost user='||usr||' password='||pwd||' options=-csearch_path='||searchp||'';
 			v_query     text;
 		BEGIN
-			v_query := 'select xyz_create_idxs_v2('''||schema||''',100, 0)';
+			v_query := 'select xyz_create_idxs_v2('''||schema||''','||lim||','||off||')';
 			/** Requires the installed dblink extension - we use dblink to avoid connection interruption through Lambda termination */
 			PERFORM * FROM dblink(v_conn_str, v_query) AS t1(test text);
 		END;
@@ -912,7 +1067,7 @@ $BODY$
 			LEFT JOIN pg_tables D ON (D.tablename = C.relname)
 			LEFT JOIN pg_namespace N ON (N.oid = C.relnamespace)
 			LEFT JOIN xyz_config.xyz_idxs_status E ON (E.spaceid = C.relname)
-		WHERE relkind='r' AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
+		WHERE relkind='r' AND NOT C.relispartition AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
 			/** More than 3000 objecs has changed OR space is new and has more than min_table_count entries */
 			AND ((ABS(COALESCE(E.count,0) - COALESCE(reltuples,0)) > 3000 AND reltuples > min_table_count )  OR ( E.count IS null AND reltuples > min_table_count ))
 			AND relname != 'spatial_ref_sys'
@@ -1113,7 +1268,7 @@ $BODY$
 			FROM pg_class C
 				LEFT JOIN pg_tables D ON (D.tablename = C.relname)
 				LEFT JOIN pg_namespace N ON (N.oid = C.relnamespace)
-			WHERE relkind='r' AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
+			WHERE relkind='r' AND NOT C.relispartition AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
 				ORDER BY reltuples DESC
 	LOOP
 		spaceid := xyz_spaces.spaceid;
@@ -1594,7 +1749,7 @@ $BODY$
 				FROM pg_class C
 					LEFT JOIN pg_tables D ON (D.tablename = C.relname)
 					LEFT JOIN pg_namespace N ON (N.oid = C.relnamespace)
-				WHERE relkind='r' AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
+				WHERE relkind='r' AND NOT C.relispartition AND nspname = ''||schema||'' AND array_position(owner_list, tableowner::text) > 0
 					ORDER BY reltuples ASC, spaceid
 			) B WHERE idx_available IS NULL OR jsonb_array_length(idx_available) < 2;
 	END;
@@ -2381,6 +2536,74 @@ END;
 $$ LANGUAGE plpgsql IMMUTABLE;
 ------------------------------------------------
 ------------------------------------------------
+-- The quadkey of the reference point of a geometry, which is the point itself or the first point of the geometry. Points outside of
+-- the web mercator bounds are moved to the nearest tile.
+CREATE OR REPLACE FUNCTION xyz_qk_geo2qk( geo geometry, level integer )
+	RETURNS text AS $$
+DECLARE
+	refpt geometry;
+BEGIN
+	IF geo IS NULL OR ST_IsEmpty(geo) THEN
+		RETURN NULL;
+	END IF;
+
+	refpt = CASE ST_GeometryType(geo) WHEN 'ST_Point' THEN geo ELSE ST_ClosestPoint(geo, geo) END;
+	RETURN xyz_qk_point2qk(ST_SetSRID(ST_MakePoint(
+		least(greatest(ST_X(refpt), -180), 179.9999999),
+		least(greatest(ST_Y(refpt), -85.0511287), 85.0511287)), 4326), level);
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
+------------------------------------------------
+------------------------------------------------
+-- The quadkey of the deepest tile up to the given level, which contains the whole envelope of a geometry. It is used as the partition
+-- key of partitioned spaces, so that a geometry, which crosses a tile border, is kept in the partition of a coarser tile.
+CREATE OR REPLACE FUNCTION xyz_qk_envelope2qk( geo geometry, level integer )
+	RETURNS text AS $$
+DECLARE
+	numRowsCols constant integer := 1 << level;
+	minLat double precision;
+	maxLat double precision;
+	minX integer;
+	maxX integer;
+	minY integer;
+	maxY integer;
+	lev integer := level;
+	qk text := '';
+BEGIN
+	IF geo IS NULL OR ST_IsEmpty(geo) THEN
+		RETURN NULL;
+	END IF;
+
+	minLat = sin(radians(least(greatest(ST_YMin(geo), -85.05112878), 85.05112878)));
+	maxLat = sin(radians(least(greatest(ST_YMax(geo), -85.05112878), 85.05112878)));
+	minX = least(greatest(floor((ST_XMin(geo) + 180.0) / 360.0 * numRowsCols), 0), numRowsCols - 1);
+	maxX = least(greatest(floor((ST_XMax(geo) + 180.0) / 360.0 * numRowsCols), 0), numRowsCols - 1);
+	minY = least(greatest(floor((0.5 - ln((1 + maxLat) / (1 - maxLat)) / (4 * pi())) * numRowsCols), 0), numRowsCols - 1);
+	maxY = least(greatest(floor((0.5 - ln((1 + minLat) / (1 - minLat)) / (4 * pi())) * numRowsCols), 0), numRowsCols - 1);
+
+	WHILE minX <> maxX OR minY <> maxY LOOP
+		minX = minX >> 1; maxX = maxX >> 1;
+		minY = minY >> 1; maxY = maxY >> 1;
+		lev = lev - 1;
+	END LOOP;
+
+	FOR i IN REVERSE lev .. 1 LOOP
+		qk = qk || (((minX >> (i - 1)) & 1) + ((minY >> (i - 1)) & 1) * 2);
+	END LOOP;
+	RETURN qk;
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
+------------------------------------------------
+------------------------------------------------
+CREATE OR REPLACE FUNCTION xyz_qk_trigger()
+	RETURNS trigger AS $$
+BEGIN
+	NEW.qk := xyz_qk_geo2qk(NEW.geo, TG_ARGV[0]::integer);
+	RETURN NEW;
+END;
+$$ LANGUAGE plpgsql VOLATILE;
+------------------------------------------------
+------------------------------------------------
 CREATE OR REPLACE FUNCTION xyz_qk_bbox2zooml( geometry )
   RETURNS integer AS
 $body$ -- select round( ( ln( 360 ) - ln( st_xmax(i.env) - st_xmin(i.env) )  )/ ln(2) )::integer as zm
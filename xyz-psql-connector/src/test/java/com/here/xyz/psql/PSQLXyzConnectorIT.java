@@ -33,14 +33,21 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.here.xyz.Payload;
 import com.here.xyz.XyzSerializable;
+import com.here.xyz.connectors.ErrorResponseException;
+import com.here.xyz.events.CancelEvent;
 import com.here.xyz.events.GetFeaturesByGeometryEvent;
+import com.here.xyz.events.GetFeaturesByTileEvent;
+import com.here.xyz.events.GetFeaturesByTileEvent.ResponseType;
 import com.here.xyz.events.GetStatisticsEvent;
 import com.here.xyz.events.HealthCheckEvent;
+import com.here.xyz.events.IndexMaintenanceEvent;
+import com.here.xyz.events.IterateFeaturesEvent;
 import com.here.xyz.events.ModifyFeaturesEvent;
 import com.here.xyz.events.PropertiesQuery;
 import com.here.xyz.events.PropertyQuery;
 import com.here.xyz.events.PropertyQuery.QueryOperation;
 import com.here.xyz.events.PropertyQueryList;
+import com.here.xyz.models.geojson.coordinates.BBox;
 import com.here.xyz.models.geojson.coordinates.LineStringCoordinates;
 import com.here.xyz.models.geojson.coordinates.LinearRingCoordinates;
 import com.here.xyz.models.geojson.coordinates.MultiPolygonCoordinates;
@@ -55,10 +62,13 @@ import com.here.xyz.models.geojson.implementation.MultiPolygon;
 import com.here.xyz.models.geojson.implementation.Point;
 import com.here.xyz.models.geojson.implementation.Polygon;
 import com.here.xyz.models.geojson.implementation.Properties;
+import com.here.xyz.models.geojson.implementation.XyzError;
+import com.here.xyz.responses.BinaryResponse;
 import com.here.xyz.responses.ErrorResponse;
 import com.here.xyz.responses.StatisticsResponse;
 import com.here.xyz.responses.StatisticsResponse.PropertiesStatistics;
 import com.here.xyz.responses.StatisticsResponse.PropertyStatistics;
+import com.here.xyz.responses.XyzResponse;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
@@ -67,16 +77,24 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -128,6 +146,82 @@ public class PSQLXyzConnectorIT {
     assertEquals("Check response status", "OK", JsonPath.read(response, "$.status").toString());
   }
 
+  @Test
+  public void testCancelNotRunningEvent() throws Exception {
+    String response = invokeLambda(new CancelEvent().withStreamId("not-running").serialize());
+    assertEquals("Check response status", "NOT_RUNNING", JsonPath.read(response, "$.status").toString());
+  }
+
+  @Test
+  public void testCancelRunningEvent() throws Exception {
+    assertNoErrorInResponse(invokeLambdaFromFile("/events/InsertFeaturesEvent.json"));
+    final String queryEvent = "{\"type\": \"GetFeaturesByBBoxEvent\", \"streamId\": \"cancelled-query\", \"space\": \"foo\","
+        + " \"bbox\": [14, -3, 15, -2], \"limit\": 10}";
+
+    // A separate handler processes the query, so that the cancel event can be processed meanwhile
+    final PSQLXyzConnector queryHandler = new PSQLXyzConnector();
+    queryHandler.setEmbedded(true);
+    assertNoErrorInResponse(invokeLambda(queryHandler, queryEvent));
+
+    try (final Connection lockConnection = lambda.dataSource.getConnection()) {
+      // The lock keeps the query waiting, until it's cancelled
+      lockConnection.setAutoCommit(false);
+      lockConnection.createStatement().execute("LOCK TABLE public.\"foo\" IN ACCESS EXCLUSIVE MODE");
+      final CompletableFuture<String> queryResponse = CompletableFuture.supplyAsync(() -> {
+        try {
+          return invokeLambda(queryHandler, queryEvent);
+        } catch (Exception e) {
+          throw new CompletionException(e);
+        }
+      });
+      waitForLockedQuery(lockConnection);
+
+      final long start = System.currentTimeMillis();
+      final String cancelResponse = invokeLambda(new CancelEvent().withStreamId("cancelled-query").serialize());
+      assertEquals("Check response status", "OK", JsonPath.read(cancelResponse, "$.status").toString());
+      final XyzResponse response = XyzSerializable.deserialize(queryResponse.get(10, TimeUnit.SECONDS));
+      assertTrue(response instanceof ErrorResponse);
+      assertEquals(XyzError.TIMEOUT, ((ErrorResponse) response).getError());
+      assertTrue("The query must stop right after the cancellation", System.currentTimeMillis() - start < 5000);
+      lockConnection.rollback();
+    }
+
+    // The handler processes the next events as usual
+    assertNoErrorInResponse(invokeLambda(queryHandler, queryEvent));
+  }
+
+  private static void waitForLockedQuery(Connection connection) throws Exception {
+    final long end = System.currentTimeMillis() + 10000;
+    while (true) {
+      final ResultSet rs = connection.createStatement().executeQuery("SELECT count(*) FROM pg_stat_activity"
+          + " WHERE wait_event_type = 'Lock' AND datname = current_database()");
+      rs.next();
+      if (rs.getInt(1) > 0) {
+        return;
+      }
+      assertTrue("Timed out waiting for the query to be locked", System.currentTimeMillis() < end);
+      Thread.sleep(50);
+    }
+  }
+
+  @Test
+  public void testCancelBeforeStatementStarts() throws Exception {
+    // The event gets cancelled, while it's processed, but before its query was started
+    final PSQLXyzConnector handler = new PSQLXyzConnector();
+    handler.cancel();
+    try (final Connection connection = lambda.dataSource.getConnection(); final Statement stmt = connection.createStatement()) {
+      try {
+        handler.startStatement(stmt);
+        fail("The statement of a cancelled event must not be started.");
+      } catch (SQLException e) {
+        assertEquals("57014", e.getSQLState());
+        final Exception mapped = handler.mapException(e);
+        assertTrue(mapped instanceof ErrorResponseException);
+        assertEquals(XyzError.TIMEOUT, ((ErrorResponseException) mapped).getErrorResponse().getError());
+      }
+    }
+  }
+
   @Test
   public void testHealthCheckWithConnectorParams() throws Exception {
     Map<String, Object> connectorParams = new HashMap();
@@ -171,6 +265,53 @@ public class PSQLXyzConnectorIT {
     System.out.println(features.serialize(true));
   }
 
+  @Test
+  public void testIterateWithSearch() throws Exception {
+    final FeatureCollection collection = new FeatureCollection();
+    final List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      final String group = i % 2 == 0 ? "a" : "b";
+      collection.getFeatures().add(new Feature().withId("F" + i)
+          .withGeometry(new Point().withCoordinates(new PointCoordinates(14.3 + i / 100d, 50.1)))
+          .withProperties(new Properties().with("group", group)));
+      if ("a".equals(group)) {
+        expected.add("F" + i);
+      }
+    }
+    ModifyFeaturesEvent mfevent = new ModifyFeaturesEvent();
+    mfevent.setSpace("foo");
+    mfevent.setTransaction(true);
+    mfevent.setInsertFeatures(collection.getFeatures());
+    assertNoErrorInResponse(invokeLambda(mfevent.serialize()));
+
+    PropertiesQuery pq = new PropertiesQuery();
+    PropertyQueryList pql = new PropertyQueryList();
+    pql.add(new PropertyQuery().withKey("properties.group").withOperation(QueryOperation.EQUALS)
+        .withValues(new ArrayList<>(Collections.singletonList("a"))));
+    pq.add(pql);
+
+    // The pages are following each other in the insertion order without gaps or duplicates, the handle is the serial of the last feature
+    final List<String> iterated = new ArrayList<>();
+    String handle = null;
+    long lastHandle = -1;
+    int pages = 0;
+    do {
+      IterateFeaturesEvent iterateEvent = new IterateFeaturesEvent().withSpace("foo").withLimit(3).withPropertiesQuery(pq)
+          .withHandle(handle);
+      final FeatureCollection page = XyzSerializable.deserialize(invokeLambda(iterateEvent.serialize()));
+      page.getFeatures().forEach(f -> iterated.add(f.getId()));
+      handle = page.getHandle();
+      if (handle != null) {
+        assertTrue(Long.parseLong(handle) > lastHandle);
+        lastHandle = Long.parseLong(handle);
+      }
+      pages++;
+    } while (handle != null && pages <= expected.size());
+
+    assertEquals(expected, iterated);
+    assertEquals(5, pages);
+  }
+
   /**
    * Test getFeaturesByGeometryEvent
    */
@@ -300,6 +441,22 @@ public class PSQLXyzConnectorIT {
     }
     assertEquals(114, featureCollection.getFeatures().size());
     logger.info("Area Query with POLYGON incl. hole tested successfully");
+    // =========== QUERY WITH SUBDIVIDED REFERENCE POLYGON ==========
+    // The second query uses the cached parts of the referenced feature
+    for (int i = 0; i < 2; i++) {
+      geometryEvent = new GetFeaturesByGeometryEvent()
+          .withSpace("foo")
+          .withGeometry(geo)
+          .withRefSpaceId("bar")
+          .withRefFeatureId("region")
+          .withConnectorParams(Collections.<String, Object>singletonMap(PSQLConfig.GEOMETRY_SUBDIVISION_THRESHOLD, 4));
+
+      queryResponse = invokeLambda(geometryEvent.serialize());
+      assertNoErrorInResponse(queryResponse);
+      featureCollection = XyzSerializable.deserialize(queryResponse);
+      assertEquals(114, featureCollection.getFeatures().size());
+    }
+    logger.info("Area Query with subdivided POLYGON tested successfully");
     // =========== QUERY WITH MULTIPOLYGON ==========
     PolygonCoordinates polyCoords2 = new PolygonCoordinates();
     LinearRingCoordinates ringCords2 = new LinearRingCoordinates();
@@ -369,6 +526,295 @@ public class PSQLXyzConnectorIT {
     logger.info("Area Query with MULTIPOLYGON + SELECTION tested successfully");
   }
 
+  @Test
+  public void testStreamingBBoxQuery() throws Exception {
+    // =========== INSERT ==========
+    final String insertJsonFile = "/events/InsertFeaturesEventTransactional.json";
+    final String insertResponse = invokeLambdaFromFile(insertJsonFile);
+    final String insertRequest = IOUtils.toString(GSContext.class.getResourceAsStream(insertJsonFile));
+    assertRead(insertRequest, insertResponse, true);
+
+    // =========== QUERY BBOX ==========
+    final String queryEvent = "{\n"
+        + "\t\"streamId\": \"Z1YaJv1PCHCl00000waR\",\n"
+        + "\t\"bbox\": [-170, -170, 170, 170],\n"
+        + "\t\"type\": \"GetFeaturesByBBoxEvent\",\n"
+        + "\t\"space\": \"foo\",\n"
+        + "\t\"connectorParams\": {\"" + PSQLConfig.STREAMING_FETCH_SIZE + "\": 2},\n"
+        + "\t\"limit\": 30000\n"
+        + "}";
+    final String queryResponse = invokeLambda(queryEvent);
+    final FeatureCollection featureCollection = XyzSerializable.deserialize(queryResponse);
+    assertNotNull(featureCollection.getEtag());
+    assertEquals(3, featureCollection.getFeatures().size());
+    featureCollection.getFeatures().forEach(feature -> assertNotNull(feature.getGeometry()));
+
+    // The streamed response has the same e-tag as the buffered response of the same query. The bounding box contains a single
+    // feature, so that the e-tags don't depend on the order of the rows, which may differ for the cursor
+    final String singleFeatureQuery = "{\"type\": \"GetFeaturesByBBoxEvent\", \"space\": \"foo\", \"bbox\": [14.4, -2.2, 14.5, -2.1],"
+        + " \"limit\": 30000, \"connectorParams\": {\"" + PSQLConfig.STREAMING_FETCH_SIZE + "\": %d}}";
+    final FeatureCollection streamed = XyzSerializable.deserialize(invokeLambda(String.format(singleFeatureQuery, 2)));
+    final FeatureCollection buffered = XyzSerializable.deserialize(invokeLambda(String.format(singleFeatureQuery, 0)));
+    assertEquals(1, streamed.getFeatures().size());
+    assertEquals(1, buffered.getFeatures().size());
+    assertNotNull(buffered.getEtag());
+    assertEquals(buffered.getEtag(), streamed.getEtag());
+    logger.info("Streaming bbox query tested successfully");
+  }
+
+  @Test
+  public void testBinaryGeometryBBoxQuery() throws Exception {
+    // =========== INSERT ==========
+    final String insertJsonFile = "/events/InsertFeaturesEventTransactional.json";
+    final String insertResponse = invokeLambdaFromFile(insertJsonFile);
+    final String insertRequest = IOUtils.toString(GSContext.class.getResourceAsStream(insertJsonFile));
+    assertRead(insertRequest, insertResponse, true);
+
+    // =========== QUERY BBOX ==========
+    final String queryEvent = "{\n"
+        + "\t\"streamId\": \"Z1YaJv1PCHCl00000waR\",\n"
+        + "\t\"bbox\": [-170, -170, 170, 170],\n"
+        + "\t\"type\": \"GetFeaturesByBBoxEvent\",\n"
+        + "\t\"space\": \"foo\",\n"
+        + "\t\"binaryGeometry\": true,\n"
+        + "\t\"limit\": 30000\n"
+        + "}";
+    final String queryResponse = invokeLambda(queryEvent);
+    assertTrue(queryResponse.contains("\"twkbGeometry\""));
+    final FeatureCollection featureCollection = XyzSerializable.deserialize(queryResponse);
+    assertEquals(3, featureCollection.getFeatures().size());
+    featureCollection.getFeatures().forEach(feature -> assertNotNull(feature.getGeometry()));
+    logger.info("Binary geometry bbox query tested successfully");
+  }
+
+  @Test
+  public void testMvtTile() throws Exception {
+    // =========== INSERT ==========
+    final String insertResponse = invokeLambdaFromFile("/events/InsertFeaturesEvent.json");
+    assertNoErrorInResponse(insertResponse);
+    final List<String> ids = JsonPath.read(insertResponse, "$.features[*].id");
+
+    final GetFeaturesByTileEvent tileEvent = new GetFeaturesByTileEvent()
+        .withLevel(0)
+        .withX(0)
+        .withY(0)
+        .withBbox(new BBox(-180, -85.05112878, 180, 85.05112878))
+        .withLimit(30000);
+    tileEvent.setSpace("foo");
+
+    // =========== WITHOUT THE RESPONSE TYPE ==========
+    // The service did not request the vector tile, because the storage does not advertise the capability
+    XyzResponse response = XyzSerializable.deserialize(invokeLambda(tileEvent.serialize()));
+    assertTrue(response instanceof FeatureCollection);
+    assertEquals(2, ((FeatureCollection) response).getFeatures().size());
+
+    // =========== CLUSTERED ==========
+    // Clustered tiles are always encoded by the service
+    tileEvent.setResponseType(ResponseType.MVT);
+    tileEvent.setClusteringType("quad");
+    tileEvent.setClusteringParams(Collections.<String, Object>singletonMap("resolution", 0));
+    response = XyzSerializable.deserialize(invokeLambda(tileEvent.serialize()));
+    assertTrue(response instanceof FeatureCollection);
+
+    // =========== MVT ==========
+    tileEvent.setClusteringType(null);
+    tileEvent.setClusteringParams(null);
+    response = XyzSerializable.deserialize(invokeLambda(tileEvent.serialize()));
+    assertTrue(response instanceof BinaryResponse);
+    final MvtLayer layer = MvtLayer.read(((BinaryResponse) response).getBytes());
+    assertEquals("foo", layer.name);
+    assertEquals(4096, layer.extent);
+    assertEquals(2, layer.geometryTypes.size());
+    // Both features are points
+    assertEquals(Collections.singleton(1), new HashSet<>(layer.geometryTypes));
+    assertTrue(layer.keys.contains("id"));
+    assertTrue(layer.stringValues.containsAll(ids));
+
+    // =========== EMPTY MVT ==========
+    // The features are in the south east of the first level, so the tile in the north west is empty
+    tileEvent.setLevel(1);
+    tileEvent.setBbox(new BBox(-180, 0, 0, 85.05112878));
+    response = XyzSerializable.deserialize(invokeLambda(tileEvent.serialize()));
+    assertTrue(response instanceof BinaryResponse);
+    assertEquals(0, ((BinaryResponse) response).getBytes().length);
+    logger.info("MVT tile tested successfully");
+  }
+
+  @Test
+  public void testHexbinWithH3CellColumn() throws Exception {
+    // =========== INSERT ==========
+    final String insertJsonFile = "/events/InsertFeaturesEventTransactional.json";
+    final String insertResponse = invokeLambdaFromFile(insertJsonFile);
+    final String insertRequest = IOUtils.toString(GSContext.class.getResourceAsStream(insertJsonFile));
+    assertRead(insertRequest, insertResponse, true);
+
+    // =========== QUERY HEXBIN ==========
+    final String queryEvent = "{\n"
+        + "\t\"streamId\": \"Z1YaJv1PCHCl00000waR\",\n"
+        + "\t\"bbox\": [-170, -80, 170, 80],\n"
+        + "\t\"type\": \"GetFeaturesByBBoxEvent\",\n"
+        + "\t\"space\": \"foo\",\n"
+        + "\t\"clusteringType\": \"hexbin\",\n"
+        + "\t\"clusteringParams\": {\"resolution\": 2},\n"
+        + "\t\"connectorParams\": {\"" + PSQLConfig.H3_CELL_COLUMN + "\": %s},\n"
+        + "\t\"limit\": 30000\n"
+        + "}";
+    final String calculatedResponse = invokeLambda(String.format(queryEvent, false));
+    assertNoErrorInResponse(calculatedResponse);
+    final Map<String, Object> calculated = readAggregation(calculatedResponse, "kind_detail", "aggregation.qty");
+    assertFalse(calculated.isEmpty());
+
+    // The query falls back to the calculated cells, as long as the column is not complete
+    String precomputedResponse = invokeLambda(String.format(queryEvent, true));
+    assertNoErrorInResponse(precomputedResponse);
+    assertEquals(calculated, readAggregation(precomputedResponse, "kind_detail", "aggregation.qty"));
+
+    // The index maintenance adds and fills the column
+    final IndexMaintenanceEvent maintenance = new IndexMaintenanceEvent();
+    maintenance.setConnectorParams(Collections.singletonMap(PSQLConfig.H3_CELL_COLUMN, true));
+    assertNoErrorInResponse(invokeLambda(maintenance.serialize()));
+    assertTrue(hasValidIndex("idx_foo_h3cell"));
+    precomputedResponse = invokeLambda(String.format(queryEvent, true));
+    assertNoErrorInResponse(precomputedResponse);
+    assertEquals(calculated, readAggregation(precomputedResponse, "kind_detail", "aggregation.qty"));
+
+    // The trigger maintains the column for the features, which are written later
+    invokeLambdaFromFile("/events/InsertFeaturesEvent.json");
+    final Map<String, Object> recalculated = readAggregation(invokeLambda(String.format(queryEvent, false)), "kind_detail",
+        "aggregation.qty");
+    assertNotEquals(calculated, recalculated);
+    assertEquals(recalculated, readAggregation(invokeLambda(String.format(queryEvent, true)), "kind_detail", "aggregation.qty"));
+    logger.info("Hexbin with H3 cell column tested successfully");
+  }
+
+  @Test
+  public void testQuadClusteringWithQuadkeyColumn() throws Exception {
+    // =========== INSERT ==========
+    final String insertJsonFile = "/events/InsertFeaturesEventTransactional.json";
+    final String insertResponse = invokeLambdaFromFile(insertJsonFile);
+    final String insertRequest = IOUtils.toString(GSContext.class.getResourceAsStream(insertJsonFile));
+    assertRead(insertRequest, insertResponse, true);
+
+    // =========== QUERY QUAD CLUSTERING ==========
+    final String queryEvent = "{\n"
+        + "\t\"streamId\": \"Z1YaJv1PCHCl00000waR\",\n"
+        + "\t\"bbox\": [0, -20, 40, 0],\n"
+        + "\t\"type\": \"GetFeaturesByBBoxEvent\",\n"
+        + "\t\"space\": \"foo\",\n"
+        + "\t\"clusteringType\": \"quad\",\n"
+        + "\t\"clusteringParams\": {\"resolution\": 2, \"quadmode\": \"real\"},\n"
+        + "\t\"connectorParams\": {\"" + PSQLConfig.QUADKEY_COLUMN + "\": %s},\n"
+        + "\t\"limit\": 30000\n"
+        + "}";
+    final String calculatedResponse = invokeLambda(String.format(queryEvent, false));
+    assertNoErrorInResponse(calculatedResponse);
+    final Map<String, Object> calculated = readAggregation(calculatedResponse, "qk", "count");
+    assertFalse(calculated.isEmpty());
+
+    // The query falls back to the calculated quadkeys, as long as the column is not complete
+    assertEquals(calculated, readAggregation(invokeLambda(String.format(queryEvent, true)), "qk", "count"));
+
+    // The index maintenance adds and fills the column
+    final IndexMaintenanceEvent maintenance = new IndexMaintenanceEvent();
+    maintenance.setConnectorParams(Collections.singletonMap(PSQLConfig.QUADKEY_COLUMN, true));
+    assertNoErrorInResponse(invokeLambda(maintenance.serialize()));
+    assertTrue(hasValidIndex("idx_foo_qk"));
+    final String precomputedResponse = invokeLambda(String.format(queryEvent, true));
+    assertNoErrorInResponse(precomputedResponse);
+    final List<Boolean> estimated = JsonPath.read(precomputedResponse, "$.features[*].properties.estimated");
+    assertFalse(estimated.contains(true));
+    assertEquals(calculated, readAggregation(precomputedResponse, "qk", "count"));
+    logger.info("Quad clustering with quadkey column tested successfully");
+  }
+
+  @Test
+  public void testPartitionedSpace() throws Exception {
+    // =========== CREATE THE PARTITIONED TABLE ==========
+    final String params = "{\"" + PSQLConfig.PARTITION_LEVEL + "\": 2}";
+    final String createResponse = invokeLambda("{\"type\": \"ModifySpaceEvent\", \"space\": \"foo\", \"operation\": \"CREATE\", "
+        + "\"params\": " + params + "}");
+    assertNoErrorInResponse(createResponse);
+
+    // =========== INSERT ==========
+    final String insertJsonFile = "/events/InsertFeaturesEventTransactional.json";
+    final String insertResponse = invokeLambdaFromFile(insertJsonFile);
+    final String insertRequest = IOUtils.toString(GSContext.class.getResourceAsStream(insertJsonFile));
+    assertRead(insertRequest, insertResponse, true);
+
+    // =========== QUERY BBOX ==========
+    final String worldQuery = "{\"type\": \"GetFeaturesByBBoxEvent\", \"space\": \"foo\", \"params\": " + params + ", "
+        + "\"bbox\": [-180, -85, 180, 85], \"limit\": 30000}";
+    final FeatureCollection world = XyzSerializable.deserialize(invokeLambda(worldQuery));
+    assertEquals(3, world.getFeatures().size());
+
+    // Only the partitions of the tiles, which intersect the bounding box, are read
+    final String smallQuery = "{\"type\": \"GetFeaturesByBBoxEvent\", \"space\": \"foo\", \"params\": " + params + ", "
+        + "\"bbox\": [14.4, -2.2, 14.5, -2.1], \"limit\": 30000}";
+    final FeatureCollection small = XyzSerializable.deserialize(invokeLambda(smallQuery));
+    assertEquals(1, small.getFeatures().size());
+    assertEquals("test", small.getFeatures().get(0).getId());
+    logger.info("Partitioned space tested successfully");
+  }
+
+  @Test
+  public void testBBoxFanOut() throws Exception {
+    // =========== INSERT points in all quadrants and a line, which crosses them ==========
+    final List<Feature> features = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      for (int lon : new int[]{-90, 90}) {
+        for (int lat : new int[]{-45, 45}) {
+          features.add(new Feature().withId("p" + lon + "_" + lat + "_" + i)
+              .withGeometry(new Point().withCoordinates(new PointCoordinates(lon + i, lat + i)))
+              .withProperties(new Properties()));
+        }
+      }
+    }
+    final LineStringCoordinates crossing = new LineStringCoordinates();
+    crossing.add(new Position(-10, -10));
+    crossing.add(new Position(10, 10));
+    features.add(new Feature().withId("crossing").withGeometry(new LineString().withCoordinates(crossing)).withProperties(new Properties()));
+
+    ModifyFeaturesEvent mfevent = new ModifyFeaturesEvent();
+    mfevent.setSpace("foo");
+    mfevent.setTransaction(true);
+    mfevent.setInsertFeatures(features);
+    assertNoErrorInResponse(invokeLambda(mfevent.serialize()));
+
+    // A separate connection pool, which has enough connections for the fan-out
+    final Map<String, Object> parametersToEncrypt = new HashMap<>();
+    parametersToEncrypt.put(PSQLConfig.PSQL_HOST, "localhost");
+    parametersToEncrypt.put(PSQLConfig.PSQL_USER, "postgres");
+    parametersToEncrypt.put(PSQLConfig.PSQL_PASSWORD, "password");
+    parametersToEncrypt.put(PSQLConfig.PSQL_MAX_CONN, "4");
+    final String ecps = PSQLConfig.encryptCPS(new ObjectMapper().writeValueAsString(parametersToEncrypt), "testing");
+    final String singleParams = "{\"ecps\": \"" + ecps + "\"}";
+    final String fanOutParams = "{\"ecps\": \"" + ecps + "\", \"" + PSQLConfig.BBOX_FAN_OUT_PARALLELISM + "\": 4}";
+
+    // =========== QUERY the world with a single query and with the fan-out ==========
+    final String query = "{\"type\": \"GetFeaturesByBBoxEvent\", \"space\": \"foo\", \"connectorParams\": %s, "
+        + "\"bbox\": [-180, -90, 180, 90], \"limit\": %d}";
+    final String singleResponse = invokeLambda(String.format(query, singleParams, 30000));
+    assertNoErrorInResponse(singleResponse);
+    final String fanOutResponse = invokeLambda(String.format(query, fanOutParams, 30000));
+    assertNoErrorInResponse(fanOutResponse);
+
+    final List<String> singleIds = JsonPath.compile("$.features..id").read(singleResponse, jsonPathConf);
+    final List<String> fanOutIds = JsonPath.compile("$.features..id").read(fanOutResponse, jsonPathConf);
+    assertEquals(features.size(), singleIds.size());
+    // The line, which intersects all quadrants, is returned only once
+    assertEquals(features.size(), fanOutIds.size());
+    assertEquals(new HashSet<>(singleIds), new HashSet<>(fanOutIds));
+
+    // =========== QUERY with a limit ==========
+    final String limitedResponse = invokeLambda(String.format(query, fanOutParams, 5));
+    assertNoErrorInResponse(limitedResponse);
+    final List<String> limitedIds = JsonPath.compile("$.features..id").read(limitedResponse, jsonPathConf);
+    assertEquals(5, limitedIds.size());
+    assertEquals(5, new HashSet<>(limitedIds).size());
+    assertTrue(singleIds.containsAll(limitedIds));
+    logger.info("BBox fan-out tested successfully");
+  }
+
   /**
    * Test all branches of the BBox query.
    */
@@ -588,6 +1034,22 @@ public class PSQLXyzConnectorIT {
   }
 
 
+  @Test
+  public void testMetadataCacheWithDroppedTable() throws Exception {
+    final String insertJsonFile = "/events/InsertFeaturesEventTransactional.json";
+    final String insertRequest = IOUtils.toString(GSContext.class.getResourceAsStream(insertJsonFile));
+    assertRead(insertRequest, invokeLambdaFromFile(insertJsonFile), true);
+
+    // Drop the table without the connector, so that the cached table existence is outdated
+    try (final Connection connection = lambda.dataSource.getConnection()) {
+      Statement stmt = connection.createStatement();
+      stmt.execute("DROP TABLE public.\"foo\";");
+    }
+
+    assertRead(insertRequest, invokeLambdaFromFile(insertJsonFile), true);
+    logger.info("Metadata cache with dropped table tested successfully");
+  }
+
   @Test
   public void testCrudFeatureWithHash() throws Exception {
     // =========== INSERT ==========
@@ -662,6 +1124,40 @@ public class PSQLXyzConnectorIT {
     System.out.println(deleteResponse);
   }
 
+  @Test
+  public void testCachedStatistics() throws Exception {
+    final Map<String, Object> connectorParams = Collections.singletonMap(PSQLConfig.CACHED_STATISTICS, true);
+    final DocumentContext insertEventDoc = getEventFromResource("/events/InsertFeaturesEventTransactional.json");
+    insertEventDoc.put("$", "connectorParams", connectorParams);
+    final String insertEvent = insertEventDoc.jsonString();
+    assertNoErrorInResponse(invokeLambda(insertEvent));
+
+    final GetStatisticsEvent statisticsEvent = new GetStatisticsEvent();
+    statisticsEvent.setSpace("foo");
+    statisticsEvent.setConnectorParams(connectorParams);
+
+    // The first request computes and persists the statistics
+    StatisticsResponse response = XyzSerializable.deserialize(invokeLambda(statisticsEvent.serialize()));
+    assertEquals(new Long(3), response.getCount().getValue());
+    assertEquals(false, response.getCount().getEstimated());
+
+    // The write marks the statistics as stale and corrects the count
+    assertNoErrorInResponse(invokeLambda(insertEvent));
+    response = XyzSerializable.deserialize(invokeLambda(statisticsEvent.serialize()));
+    assertEquals(new Long(6), response.getCount().getValue());
+    assertEquals(true, response.getCount().getEstimated());
+    assertEquals(true, response.getTags().getEstimated());
+
+    // The index maintenance refreshes the stale statistics
+    final IndexMaintenanceEvent maintenance = new IndexMaintenanceEvent();
+    maintenance.setConnectorParams(connectorParams);
+    assertNoErrorInResponse(invokeLambda(maintenance.serialize()));
+    response = XyzSerializable.deserialize(invokeLambda(statisticsEvent.serialize()));
+    assertEquals(new Long(6), response.getCount().getValue());
+    assertEquals(false, response.getCount().getEstimated());
+    logger.info("Cached statistics tested successfully");
+  }
+
   public void testGetStatisticsEvent() throws Exception {
 
     // =========== INSERT ==========
@@ -792,11 +1288,11 @@ public class PSQLXyzConnectorIT {
       stmt.execute("ANALYZE public.\"foo\";");
     }
 
-    HealthCheckEvent health = new HealthCheckEvent();
-    health.setConnectorParams(new HashMap<String, Object>() {{
+    IndexMaintenanceEvent maintenance = new IndexMaintenanceEvent();
+    maintenance.setConnectorParams(new HashMap<String, Object>() {{
       put("propertySearch", true);
     }});
-    invokeLambda(health.serialize());
+    invokeLambda(maintenance.serialize());
 
     System.out.println("Test");
   }
@@ -1104,6 +1600,223 @@ public class PSQLXyzConnectorIT {
     testDeleteFeaturesByTag(true);
   }
 
+  @Test
+  public void testCopyInsertFeatures() throws Exception {
+    testCopyInsertFeatures(false);
+  }
+
+  @Test
+  public void testCopyInsertFeaturesWithTransaction() throws Exception {
+    testCopyInsertFeatures(true);
+  }
+
+  private void testCopyInsertFeatures(boolean transaction) throws Exception {
+    final DocumentContext insertFeaturesEventDoc = getEventFromResource("/events/InsertFeaturesEvent.json");
+    insertFeaturesEventDoc.put("$", "connectorParams", Collections.singletonMap(PSQLConfig.COPY_INSERT_THRESHOLD, 1));
+    insertFeaturesEventDoc.put("$", "transaction", transaction);
+    final String insertRequest = insertFeaturesEventDoc.jsonString();
+
+    final String insertResponse = invokeLambda(insertRequest);
+    assertNoErrorInResponse(insertResponse);
+    assertRead(insertRequest, insertResponse, false);
+
+    final List<String> ids = JsonPath.compile("$.features..id").read(insertResponse, jsonPathConf);
+    assertEquals(ids, JsonPath.compile("$.inserted").read(insertResponse, jsonPathConf));
+
+    final String countResponse = invokeLambdaFromFile("/events/CountFeaturesEvent.json");
+    assertCount(insertRequest, countResponse);
+    logger.info("Insert features using COPY tested successfully");
+  }
+
+  @Test
+  public void testBatchedNonTransactionalWrites() throws Exception {
+    final Map<String, Object> connectorParams = Collections.singletonMap(PSQLConfig.NON_TRANSACTIONAL_BATCH_SIZE, 2);
+
+    // =========== INSERT ==========
+    final DocumentContext insertFeaturesEventDoc = getEventFromResource("/events/InsertFeaturesEvent.json");
+    insertFeaturesEventDoc.put("$", "connectorParams", connectorParams);
+    insertFeaturesEventDoc.put("$", "transaction", false);
+    final String insertRequest = insertFeaturesEventDoc.jsonString();
+    final String insertResponse = invokeLambda(insertRequest);
+    assertNoErrorInResponse(insertResponse);
+    assertRead(insertRequest, insertResponse, false);
+
+    final List<String> ids = JsonPath.compile("$.features..id").read(insertResponse, jsonPathConf);
+    assertEquals(ids, JsonPath.compile("$.inserted").read(insertResponse, jsonPathConf));
+
+    // =========== INSERT an existing feature together with a new one ==========
+    final List<Map> features = JsonPath.compile("$.features").read(insertResponse, jsonPathConf);
+    final Map<String, Object> newFeature = new HashMap<>(features.get(1));
+    newFeature.put("id", "batched-new-feature");
+    final DocumentContext mixedEventDoc = getEventFromResource("/events/InsertFeaturesEvent.json");
+    mixedEventDoc.put("$", "connectorParams", connectorParams);
+    mixedEventDoc.put("$", "transaction", false);
+    mixedEventDoc.put("$", "insertFeatures", Arrays.asList(features.get(0), newFeature));
+    final String mixedResponse = invokeLambda(mixedEventDoc.jsonString());
+
+    assertEquals(Collections.singletonList("batched-new-feature"), JsonPath.compile("$.inserted").read(mixedResponse, jsonPathConf));
+    assertEquals(Collections.singletonList(ids.get(0)), JsonPath.compile("$.failed..id").read(mixedResponse, jsonPathConf));
+    logger.info("Batched non-transactional writes tested successfully");
+  }
+
+  @Test
+  public void testSetBasedWrites() throws Exception {
+    final Map<String, Object> connectorParams = Collections.singletonMap(PSQLConfig.SET_BASED_WRITES, true);
+
+    // =========== INSERT ==========
+    final DocumentContext insertFeaturesEventDoc = getEventFromResource("/events/InsertNullGeometry.json");
+    insertFeaturesEventDoc.put("$", "connectorParams", connectorParams);
+    final String insertRequest = insertFeaturesEventDoc.jsonString();
+    final String insertResponse = invokeLambda(insertRequest);
+    assertNoErrorInResponse(insertResponse);
+    assertRead(insertRequest, insertResponse, false);
+
+    // =========== UPDATE ==========
+    final DocumentContext updateFeaturesEventDoc = getEventFromResource("/events/InsertNullGeometry.json");
+    updateFeaturesEventDoc.put("$", "connectorParams", connectorParams);
+    updateFeaturesEventDoc.delete("$.insertFeatures");
+    final List<Map> updateFeatures = JsonPath.compile("$.features").read(insertResponse, jsonPathConf);
+    updateFeatures.forEach((Map feature) -> {
+      @SuppressWarnings("unchecked") final Map<String, Object> properties = (Map<String, Object>) feature.get("properties");
+      properties.put("name", "updated");
+    });
+    updateFeaturesEventDoc.put("$", "updateFeatures", updateFeatures);
+    final String updateRequest = updateFeaturesEventDoc.jsonString();
+    final String updateResponse = invokeLambda(updateRequest);
+    assertNoErrorInResponse(updateResponse);
+    assertUpdate(updateRequest, updateResponse, false);
+
+    final String response = invokeLambdaFromFile("/events/GetFeaturesByIdEvent.json");
+    assertTrue(response.indexOf("\"geometry\":null") > 0);
+    assertTrue(response.indexOf("\"updated\"") > 0);
+    logger.info("Set based writes tested successfully");
+  }
+
+  @Test
+  public void testSetBasedWritesWithMismatches() throws Exception {
+    final String insertResponse = invokeLambdaFromFile("/events/InsertFeaturesEvent.json");
+    assertNoErrorInResponse(insertResponse);
+    final List<String> ids = JsonPath.read(insertResponse, "$.features[*].id");
+    final String existing = ids.get(0);
+    final String updated = ids.get(1);
+    final String existingName = JsonPath.read(insertResponse, "$.features[0].properties.name");
+
+    // =========== NOT TRANSACTIONAL ==========
+    // The insert of an existing feature and the update of a missing feature fail, the feature, which is updated twice, is written once
+    final String event = "{\"type\": \"ModifyFeaturesEvent\", \"space\": \"foo\", \"transaction\": %s, \"params\": {},"
+        + " \"connectorParams\": {\"" + PSQLConfig.SET_BASED_WRITES + "\": true},"
+        + " \"insertFeatures\": [" + pointFeature(existing, "overwritten") + ", " + pointFeature("new", "inserted") + "],"
+        + " \"updateFeatures\": [" + pointFeature("missing", "inserted") + ", " + pointFeature(updated, "updated") + ", "
+        + pointFeature(updated, "updated twice") + "]}";
+    final String response = invokeLambda(String.format(event, false));
+    assertNoErrorInResponse(response);
+    final List<String> failed = JsonPath.read(response, "$.failed[*].id");
+    assertEquals(new HashSet<>(Arrays.asList(existing, "missing")), new HashSet<>(failed));
+    assertEquals(Collections.singletonList("new"), JsonPath.read(response, "$.inserted"));
+    assertEquals(Collections.singletonList(updated), JsonPath.read(response, "$.updated"));
+
+    final String readEvent = "{\"type\": \"GetFeaturesByIdEvent\", \"space\": \"foo\", \"ids\": [\"" + existing + "\", \"new\","
+        + " \"missing\", \"" + updated + "\"]}";
+    String readResponse = invokeLambda(readEvent);
+    assertEquals(3, (int) JsonPath.read(readResponse, "$.features.length()"));
+    assertEquals(Collections.singletonList(existingName), JsonPath.read(readResponse, "$.features[?(@.id == '" + existing + "')].properties.name"));
+    assertEquals(Collections.singletonList("updated twice"),
+        JsonPath.read(readResponse, "$.features[?(@.id == '" + updated + "')].properties.name"));
+
+    // =========== TRANSACTIONAL ==========
+    // A mismatch fails the whole transaction
+    assertEquals("ErrorResponse", JsonPath.read(invokeLambda(String.format(event, true)), "$.type"));
+    readResponse = invokeLambda(readEvent);
+    assertEquals(Collections.singletonList(existingName), JsonPath.read(readResponse, "$.features[?(@.id == '" + existing + "')].properties.name"));
+    assertEquals(Collections.singletonList("updated twice"),
+        JsonPath.read(readResponse, "$.features[?(@.id == '" + updated + "')].properties.name"));
+    logger.info("Set based writes with mismatches tested successfully");
+  }
+
+  private static String pointFeature(String id, String name) {
+    return "{\"type\": \"Feature\", \"id\": \"" + id + "\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [14.3, -2.3]},"
+        + " \"properties\": {\"name\": \"" + name + "\"}}";
+  }
+
+  @Test
+  public void testOldStatesOfUpdatesAndDeletes() throws Exception {
+    assertOldStates(Collections.emptyMap(), true);
+  }
+
+  @Test
+  public void testOldStatesWithNonTransactionalWrites() throws Exception {
+    assertOldStates(Collections.emptyMap(), false);
+  }
+
+  @Test
+  public void testOldStatesWithSetBasedWrites() throws Exception {
+    assertOldStates(Collections.singletonMap(PSQLConfig.SET_BASED_WRITES, true), true);
+  }
+
+  @Test
+  public void testOldStatesWithBatchedNonTransactionalWrites() throws Exception {
+    assertOldStates(Collections.singletonMap(PSQLConfig.NON_TRANSACTIONAL_BATCH_SIZE, 2), false);
+  }
+
+  /**
+   * Reads the aggregated values of the clusters in the response by the properties, which identify the clusters.
+   */
+  private Map<String, Object> readAggregation(String response, String key, String value) {
+    final List<String> keys = JsonPath.read(response, "$.features[*].properties." + key);
+    final List<Object> values = JsonPath.read(response, "$.features[*].properties." + value);
+    final Map<String, Object> aggregation = new HashMap<>();
+    for (int i = 0; i < keys.size(); i++) {
+      aggregation.put(keys.get(i), values.get(i));
+    }
+    return aggregation;
+  }
+
+  private boolean hasValidIndex(String index) throws Exception {
+    try (final Connection connection = lambda.dataSource.getConnection()) {
+      final PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM pg_index WHERE indexrelid = to_regclass(?) AND indisvalid");
+      stmt.setString(1, "public.\"" + index + "\"");
+      return stmt.executeQuery().next();
+    }
+  }
+
+  private void assertOldStates(Map<String, Object> connectorParams, boolean transaction) throws Exception {
+    // =========== INSERT ==========
+    final DocumentContext insertFeaturesEventDoc = getEventFromResource("/events/InsertFeaturesEvent.json");
+    insertFeaturesEventDoc.put("$", "connectorParams", connectorParams);
+    final String insertResponse = invokeLambda(insertFeaturesEventDoc.jsonString());
+    assertNoErrorInResponse(insertResponse);
+    final List<Map> features = JsonPath.compile("$.features").read(insertResponse, jsonPathConf);
+    assertEquals(2, features.size());
+
+    // =========== UPDATE the first and DELETE the second feature ==========
+    final Map<String, Object> updateFeature = new HashMap<>(features.get(0));
+    @SuppressWarnings("unchecked") final Map<String, Object> properties = new HashMap<>((Map<String, Object>) updateFeature.get("properties"));
+    final String oldName = (String) properties.get("name");
+    properties.put("name", "updated");
+    updateFeature.put("properties", properties);
+    final String deleteId = (String) features.get(1).get("id");
+    final String deletedName = (String) ((Map) features.get(1).get("properties")).get("name");
+
+    final DocumentContext modifyEventDoc = getEventFromResource("/events/InsertFeaturesEvent.json");
+    modifyEventDoc.delete("$.insertFeatures");
+    modifyEventDoc.put("$", "connectorParams", connectorParams);
+    modifyEventDoc.put("$", "transaction", transaction);
+    modifyEventDoc.put("$", "params", Collections.singletonMap(PSQLConfig.INCLUDE_OLD_STATES, true));
+    modifyEventDoc.put("$", "updateFeatures", Collections.singletonList(updateFeature));
+    modifyEventDoc.put("$", "deleteFeatures", Collections.singletonMap(deleteId, null));
+    final String modifyResponse = invokeLambda(modifyEventDoc.jsonString());
+    assertNoErrorInResponse(modifyResponse);
+
+    final List<String> oldIds = JsonPath.compile("$.oldFeatures..id").read(modifyResponse, jsonPathConf);
+    final List<String> oldNames = JsonPath.compile("$.oldFeatures..properties.name").read(modifyResponse, jsonPathConf);
+    assertEquals(2, oldIds.size());
+    assertEquals(oldName, oldNames.get(oldIds.indexOf(updateFeature.get("id"))));
+    assertEquals(deletedName, oldNames.get(oldIds.indexOf(deleteId)));
+    assertEquals(Collections.singletonList(updateFeature.get("id")), JsonPath.compile("$.updated").read(modifyResponse, jsonPathConf));
+    assertEquals(Collections.singletonList(deleteId), JsonPath.compile("$.deleted").read(modifyResponse, jsonPathConf));
+    logger.info("Old states of updates and deletes tested successfully");
+  }
+
   @Test
   public void testNullGeometry() throws Exception {
 
@@ -1121,6 +1834,89 @@ public class PSQLXyzConnectorIT {
     assertTrue(response.indexOf("\"geometry\":null") > 0);
   }
 
+  @Test
+  public void testExactCount() throws Exception {
+    final String insertJsonFile = "/events/InsertFeaturesEventTransactional.json";
+    final String insertRequest = IOUtils.toString(GSContext.class.getResourceAsStream(insertJsonFile));
+    assertRead(insertRequest, invokeLambdaFromFile(insertJsonFile), true);
+
+    final DocumentContext countEventDoc = getEventFromResource("/events/CountFeaturesEvent.json");
+    countEventDoc.delete("$.tags");
+    countEventDoc.put("$", "connectorParams", Collections.singletonMap(PSQLConfig.EXACT_COUNTS, true));
+    final String countEvent = countEventDoc.jsonString();
+
+    // The count falls back to the estimation, as long as the counter is not initialized
+    String countResponse = invokeLambda(countEvent);
+    assertEquals(3, (int) JsonPath.read(countResponse, "$.count"));
+    assertTrue(JsonPath.read(countResponse, "$.estimated"));
+
+    // The index maintenance initializes the counter
+    final IndexMaintenanceEvent maintenance = new IndexMaintenanceEvent();
+    maintenance.setConnectorParams(Collections.singletonMap(PSQLConfig.EXACT_COUNTS, true));
+    assertNoErrorInResponse(invokeLambda(maintenance.serialize()));
+    countResponse = invokeLambda(countEvent);
+    assertEquals(3, (int) JsonPath.read(countResponse, "$.count"));
+    assertFalse(JsonPath.read(countResponse, "$.estimated"));
+
+    // =========== DELETE ALL FEATURES ==========
+    final DocumentContext deleteByTagEventDoc = getEventFromResource("/events/DeleteFeaturesByTagEvent.json");
+    deleteByTagEventDoc.put("$", "tags", null);
+    assertNoErrorInResponse(invokeLambda(deleteByTagEventDoc.jsonString()));
+
+    countResponse = invokeLambda(countEvent);
+    assertEquals(0, (int) JsonPath.read(countResponse, "$.count"));
+    assertFalse(JsonPath.read(countResponse, "$.estimated"));
+
+    // The triggers record the changes, which are counted before and after the index maintenance folded them
+    assertRead(insertRequest, invokeLambdaFromFile(insertJsonFile), true);
+    countResponse = invokeLambda(countEvent);
+    assertEquals(3, (int) JsonPath.read(countResponse, "$.count"));
+    assertNoErrorInResponse(invokeLambda(maintenance.serialize()));
+    try (final Connection connection = lambda.dataSource.getConnection()) {
+      final ResultSet rs = connection.createStatement().executeQuery("SELECT count(*) FROM public.xyz_feature_count_delta"
+          + " WHERE relid = 'public.\"foo\"'::regclass");
+      rs.next();
+      assertEquals(0, rs.getInt(1));
+    }
+    countResponse = invokeLambda(countEvent);
+    assertEquals(3, (int) JsonPath.read(countResponse, "$.count"));
+    assertFalse(JsonPath.read(countResponse, "$.estimated"));
+    logger.info("Exact count tested successfully");
+  }
+
+  @Test
+  public void testDeleteFeaturesByTagInChunks() throws Exception {
+    String insertResponse = invokeLambdaFromFile("/events/InsertFeaturesEvent.json");
+    assertNoErrorInResponse(insertResponse);
+
+    final DocumentContext deleteByTagEventDoc = getEventFromResource("/events/DeleteFeaturesByTagEvent.json");
+    deleteByTagEventDoc.put("$", "connectorParams", Collections.<String, Object>singletonMap(PSQLConfig.DELETE_CHUNK_SIZE, 2));
+    deleteByTagEventDoc.put("$", "tags", new String[][]{{"yellow"}});
+    deleteByTagEventDoc.put("$", "limit", 3);
+
+    // Delete the tagged features in chunks until no handle is returned anymore
+    String handle = null;
+    int deleted = 0;
+    do {
+      deleteByTagEventDoc.put("$", "handle", handle);
+      final String deleteByTagResponse = invokeLambda(deleteByTagEventDoc.jsonString());
+      assertNoErrorInResponse(deleteByTagResponse);
+      final Integer count = JsonPath.read(deleteByTagResponse, "$.count");
+      assertTrue(count <= 3);
+      deleted += count;
+      handle = JsonPath.compile("$.handle").read(deleteByTagResponse, jsonPathConf);
+    }
+    while (handle != null);
+    assertTrue(deleted > 0);
+
+    // No tagged feature is left for a deletion without chunks
+    deleteByTagEventDoc.delete("$.limit");
+    deleteByTagEventDoc.delete("$.handle");
+    final String deleteByTagResponse = invokeLambda(deleteByTagEventDoc.jsonString());
+    assertNoErrorInResponse(deleteByTagResponse);
+    assertEquals(0, ((Integer) JsonPath.read(deleteByTagResponse, "$.count")).intValue());
+  }
+
   private void testDeleteFeaturesByTag(boolean includeOldStates) throws Exception {
     // =========== INSERT ==========
     String insertJsonFile = "/events/InsertFeaturesEvent.json";
@@ -1357,10 +2153,14 @@ public class PSQLXyzConnectorIT {
   }
 
   private String invokeLambda(String request) throws Exception {
+    return invokeLambda(lambda, request);
+  }
+
+  private static String invokeLambda(PSQLXyzConnector handler, String request) throws Exception {
     logger.info("Request to lambda - {}", request);
     InputStream jsonStream = new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8));
     ByteArrayOutputStream os = new ByteArrayOutputStream();
-    lambda.handleRequest(jsonStream, os, GSContext.newLocal());
+    handler.handleRequest(jsonStream, os, GSContext.newLocal());
     String response = IOUtils.toString(
         Payload.prepareInputStream(new ByteArrayInputStream(os.toByteArray())));
     logger.info("Response from lambda - {}", response);
@@ -1373,4 +2173,122 @@ public class PSQLXyzConnectorIT {
     JsonNode tree2 = mapper.convertValue(o2, JsonNode.class);
     return tree1.equals(tree2);
   }
+
+  /**
+   * The contents of the single layer of a MapBox Vector Tile, decoded from the protocol buffer without a dependency to a decoder.
+   */
+  private static class MvtLayer {
+
+    String name;
+    long extent;
+    final List<String> keys = new ArrayList<>();
+    final List<String> stringValues = new ArrayList<>();
+    final List<Integer> geometryTypes = new ArrayList<>();
+
+    static MvtLayer read(byte[] tile) {
+      final MvtLayer layer = new MvtLayer();
+      final ByteBuffer tileBuffer = ByteBuffer.wrap(tile);
+      while (tileBuffer.hasRemaining()) {
+        final long tileKey = readVarint(tileBuffer);
+        // Tile.layers = 3
+        if (tileKey >>> 3 == 3) {
+          layer.readLayer(readMessage(tileBuffer));
+        } else {
+          skip(tileBuffer, (int) (tileKey & 7));
+        }
+      }
+      return layer;
+    }
+
+    private void readLayer(ByteBuffer buffer) {
+      while (buffer.hasRemaining()) {
+        final long key = readVarint(buffer);
+        final int field = (int) (key >>> 3);
+        if (field == 1) {
+          name = readString(buffer);
+        } else if (field == 2) {
+          readFeature(readMessage(buffer));
+        } else if (field == 3) {
+          keys.add(readString(buffer));
+        } else if (field == 4) {
+          readValue(readMessage(buffer));
+        } else if (field == 5) {
+          extent = readVarint(buffer);
+        } else {
+          skip(buffer, (int) (key & 7));
+        }
+      }
+    }
+
+    private void readFeature(ByteBuffer buffer) {
+      while (buffer.hasRemaining()) {
+        final long key = readVarint(buffer);
+        // Feature.type = 3
+        if (key >>> 3 == 3) {
+          geometryTypes.add((int) readVarint(buffer));
+        } else {
+          skip(buffer, (int) (key & 7));
+        }
+      }
+    }
+
+    private void readValue(ByteBuffer buffer) {
+      while (buffer.hasRemaining()) {
+        final long key = readVarint(buffer);
+        // Value.string_value = 1
+        if (key >>> 3 == 1) {
+          stringValues.add(readString(buffer));
+        } else {
+          skip(buffer, (int) (key & 7));
+        }
+      }
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer.get();
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      }
+      while ((b & 0x80) != 0);
+      return value;
+    }
+
+    private static ByteBuffer readMessage(ByteBuffer buffer) {
+      final int length = (int) readVarint(buffer);
+      final ByteBuffer message = buffer.slice();
+      message.limit(length);
+      buffer.position(buffer.position() + length);
+      return message;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+      final ByteBuffer message = readMessage(buffer);
+      final byte[] bytes = new byte[message.remaining()];
+      message.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skip(ByteBuffer buffer, int wireType) {
+      switch (wireType) {
+        case 0:
+          readVarint(buffer);
+          break;
+        case 1:
+          buffer.position(buffer.position() + 8);
+          break;
+        case 2:
+          readMessage(buffer);
+          break;
+        case 5:
+          buffer.position(buffer.position() + 4);
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported wire type " + wireType);
+      }
+    }
+  }
 }
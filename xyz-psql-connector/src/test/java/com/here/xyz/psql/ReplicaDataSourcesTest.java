@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2017-2019 HERE Europe B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * License-Filename: LICENSE
+ */
+
+package com.here.xyz.psql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.here.xyz.psql.ReplicaDataSources.Replica;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.junit.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+
+public class ReplicaDataSourcesTest {
+
+  private static TestReplica replica(long lagMillis, int busyConnections) {
+    final TestReplica replica = new TestReplica(lagMillis, busyConnections);
+    replica.update(lagMillis);
+    return replica;
+  }
+
+  private static Map<DataSource, Integer> select(ReplicaDataSources replicas, int times) {
+    final Map<DataSource, Integer> selections = new HashMap<>();
+    for (int i = 0; i < times; i++) {
+      selections.merge(replicas.select(), 1, Integer::sum);
+    }
+    return selections;
+  }
+
+  @Test
+  public void testSelectLessBusyReplica() {
+    final TestReplica idle = replica(0, 0);
+    final TestReplica busy = replica(0, 5);
+    final TestReplica busiest = replica(0, 10);
+    final ReplicaDataSources replicas = new ReplicaDataSources(Arrays.asList(busiest, idle, busy), 1000);
+
+    // Out of two randomly picked replicas the less busy one is used, so the busiest one is never used
+    final Map<DataSource, Integer> selections = select(replicas, 3000);
+    assertEquals(null, selections.get(busiest.dataSource));
+    assertTrue(selections.get(idle.dataSource) > selections.get(busy.dataSource));
+    assertEquals(3000, selections.get(idle.dataSource) + selections.get(busy.dataSource));
+
+    // Of two replicas, the less busy one is always used
+    final ReplicaDataSources two = new ReplicaDataSources(Arrays.asList(busy, idle), 1000);
+    assertEquals(Integer.valueOf(100), select(two, 100).get(idle.dataSource));
+  }
+
+  @Test
+  public void testSkipLaggingReplicas() {
+    final TestReplica lagging = replica(5000, 0);
+    final TestReplica unavailable = replica(Replica.UNAVAILABLE, 0);
+    final TestReplica upToDate = replica(500, 10);
+
+    final Map<DataSource, Integer> selections = select(new ReplicaDataSources(Arrays.asList(lagging, unavailable, upToDate), 1000), 100);
+    assertEquals(Integer.valueOf(100), selections.get(upToDate.dataSource));
+
+    // Without a bound for the lag only the replicas, which are not reachable, are skipped
+    final Map<DataSource, Integer> unbounded = select(new ReplicaDataSources(Arrays.asList(lagging, unavailable, upToDate), 0), 100);
+    assertEquals(Integer.valueOf(100), unbounded.get(lagging.dataSource));
+
+    assertNull(new ReplicaDataSources(Arrays.asList(lagging, unavailable), 1000).select());
+  }
+
+  @Test
+  public void testCheckInBackground() throws Exception {
+    final TestReplica replica = new TestReplica(100, 0);
+    final ReplicaDataSources replicas = new ReplicaDataSources(Arrays.asList(replica), 1000);
+
+    // A replica is not used before it was checked
+    assertNull(replicas.select());
+    replicas.check();
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (replicas.select() == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertSame(replica.dataSource, replicas.select());
+
+    // A check, which does not complete in time, marks the replica as not reachable without blocking
+    replica.hang = new CountDownLatch(1);
+    replicas.check();
+    assertSame(replica.dataSource, replicas.select());
+    Thread.sleep(ReplicaDataSources.LAG_CHECK_TIMEOUT_MS + 100);
+    replicas.check();
+    assertNull(replicas.select());
+    replica.hang.countDown();
+  }
+
+  private static class TestReplica extends Replica {
+
+    private final long lagMillis;
+    private final int busyConnections;
+    volatile CountDownLatch hang;
+
+    TestReplica(long lagMillis, int busyConnections) {
+      super(new PGSimpleDataSource());
+      this.lagMillis = lagMillis;
+      this.busyConnections = busyConnections;
+    }
+
+    @Override
+    long queryLag() {
+      if (hang != null) {
+        try {
+          hang.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+        }
+      }
+      return lagMillis;
+    }
+
+    @Override
+    int busyConnections() {
+      return busyConnections;
+    }
+  }
+}